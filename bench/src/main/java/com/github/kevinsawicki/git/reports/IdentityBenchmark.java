@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.lib.PersonIdent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.kevinsawicki.git.reports.TotalHistoryReport.LineStats;
+import com.github.kevinsawicki.git.reports.TotalHistoryReport.PersonSummary;
+
+/**
+ * Benchmarks of merging identities and sorting author summaries
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IdentityBenchmark {
+
+	/**
+	 * Number of distinct persons
+	 */
+	@Param("5000")
+	public int persons;
+
+	private List<PersonIdent> idents;
+
+	private List<PersonSummary> summaries;
+
+	/**
+	 * Create persons with name and email variants and their summaries
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(1);
+		idents = new ArrayList<PersonIdent>();
+		summaries = new ArrayList<PersonSummary>(persons);
+		for (int i = 0; i < persons; i++) {
+			String name = "Person " + i;
+			String email = "person" + i + "@example.com";
+			idents.add(new PersonIdent(name, email));
+			switch (random.nextInt(4)) {
+			case 0:
+				idents.add(new PersonIdent(name.toUpperCase(), email));
+				break;
+			case 1:
+				idents.add(new PersonIdent(name, "person" + i
+						+ "@users.example.com"));
+				break;
+			case 2:
+				if (i > 0)
+					idents.add(new PersonIdent("Person " + (i - 1), email));
+				break;
+			}
+			summaries.add(new PersonSummary(name, random.nextInt(1000),
+					random.nextInt(1000), new LineStats().include(
+							random.nextInt(10000), random.nextInt(10000),
+							random.nextInt(10000)), new LineStats().include(
+							random.nextInt(100), random.nextInt(100),
+							random.nextInt(100))));
+		}
+		Collections.shuffle(idents, random);
+	}
+
+	/**
+	 * Merge persons into identities
+	 *
+	 * @return identities
+	 */
+	@Benchmark
+	public Map<String, Set<String>> mergeIdentities() {
+		return Identities.merge(idents);
+	}
+
+	/**
+	 * Sort summaries by commits
+	 *
+	 * @return sorted summaries
+	 */
+	@Benchmark
+	public List<PersonSummary> sortByCommits() {
+		return sort(TotalHistoryReport.MOST_COMMITS);
+	}
+
+	/**
+	 * Sort summaries by line impact
+	 *
+	 * @return sorted summaries
+	 */
+	@Benchmark
+	public List<PersonSummary> sortByLines() {
+		return sort(TotalHistoryReport.MOST_LINES);
+	}
+
+	/**
+	 * Sort summaries by file impact
+	 *
+	 * @return sorted summaries
+	 */
+	@Benchmark
+	public List<PersonSummary> sortByFiles() {
+		return sort(TotalHistoryReport.MOST_FILES);
+	}
+
+	private List<PersonSummary> sort(Comparator<PersonSummary> comparator) {
+		List<PersonSummary> sorted = new ArrayList<PersonSummary>(summaries);
+		Collections.sort(sorted, comparator);
+		return sorted;
+	}
+}
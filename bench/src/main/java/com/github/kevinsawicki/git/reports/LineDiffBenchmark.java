@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.lib.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of full and count only line diffs of a single blob
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LineDiffBenchmark {
+
+	/**
+	 * Number of lines of the old blob
+	 */
+	@Param({ "2000", "20000", "200000" })
+	public int lines;
+
+	/**
+	 * Diff algorithm
+	 */
+	@Param({ "HISTOGRAM", "MYERS" })
+	public SupportedAlgorithm algorithm;
+
+	private byte[] oldContent;
+
+	private byte[] newContent;
+
+	private LineDiff edits;
+
+	private LineDiff counts;
+
+	private static String line(Random random) {
+		switch (random.nextInt(8)) {
+		case 0:
+			return "";
+		case 1:
+			return "\t}";
+		default:
+			return "\tint value" + random.nextInt(lines(random)) + " = "
+					+ random.nextInt(1000) + ";";
+		}
+	}
+
+	private static int lines(Random random) {
+		return 1 + random.nextInt(100000);
+	}
+
+	/**
+	 * Create source-like blob and a copy with about one in twenty lines
+	 * inserted, replaced or deleted
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(1);
+		StringBuilder oldText = new StringBuilder();
+		StringBuilder newText = new StringBuilder();
+		for (int i = 0; i < lines; i++) {
+			String line = line(random);
+			oldText.append(line).append('\n');
+			switch (random.nextInt(60)) {
+			case 0:
+				newText.append(line(random)).append('\n');
+				break;
+			case 1:
+				newText.append(line).append('\n');
+				newText.append(line(random)).append('\n');
+				break;
+			case 2:
+				break;
+			default:
+				newText.append(line).append('\n');
+			}
+		}
+		oldContent = Constants.encode(oldText.toString());
+		newContent = Constants.encode(newText.toString());
+		edits = new LineDiff(algorithm, false);
+		counts = new LineDiff(algorithm, true);
+	}
+
+	/**
+	 * Diff blob producing all edits
+	 *
+	 * @return edits
+	 */
+	@Benchmark
+	public Collection<Edit> edits() {
+		return edits.diff(oldContent, newContent);
+	}
+
+	/**
+	 * Diff blob only counting edits
+	 *
+	 * @return totals
+	 */
+	@Benchmark
+	public Collection<Edit> counts() {
+		return counts.diff(oldContent, newContent);
+	}
+}
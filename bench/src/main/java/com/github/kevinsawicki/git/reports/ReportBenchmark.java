@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Repository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of running and rendering reports of a synthetic repository
+ * <p>
+ * The shape of the repository and the report settings are parameters so they
+ * can be varied with <code>-p name=value</code> on the command line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportBenchmark {
+
+	private static final Linker LINKER = new GitHubLinker()
+			.setBase("https://github.com/example/synthetic");
+
+	/**
+	 * Number of commits
+	 */
+	@Param("2000")
+	public int commits;
+
+	/**
+	 * Number of authors
+	 */
+	@Param("50")
+	public int authors;
+
+	/**
+	 * Number of files in the initial commit
+	 */
+	@Param("500")
+	public int files;
+
+	/**
+	 * Number of master branch commits between merges, zero for none
+	 */
+	@Param("25")
+	public int mergeInterval;
+
+	/**
+	 * Number of lines of new files
+	 */
+	@Param("100")
+	public int lines;
+
+	/**
+	 * Number of lines of every fiftieth new file
+	 */
+	@Param("5000")
+	public int largeLines;
+
+	/**
+	 * Number of threads diffing the total history
+	 */
+	@Param("1")
+	public int threads;
+
+	/**
+	 * Whether lines are diffed with a count only histogram diff
+	 */
+	@Param("false")
+	public boolean countOnly;
+
+	/**
+	 * Whether the release report uses a commit graph of the repository
+	 */
+	@Param("false")
+	public boolean commitGraph;
+
+	private File directory;
+
+	private Repository repository;
+
+	private String releaseBase;
+
+	private TotalHistoryReport totalHistory;
+
+	private ReleaseReport release;
+
+	/**
+	 * Create repository and the reports rendered by the render benchmarks
+	 *
+	 * @throws IOException
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = File.createTempFile("git-reports-bench", "");
+		if (!directory.delete() || !directory.mkdir())
+			throw new IOException("Unable to create " + directory);
+		repository = new SyntheticRepository().setCommits(commits)
+				.setAuthors(authors).setFiles(files)
+				.setMergeInterval(mergeInterval).setLines(lines)
+				.setLargeFiles(largeLines, 50).create(directory);
+		releaseBase = createRelease().getMergeBase(repository,
+				Constants.MASTER, SyntheticRepository.RELEASE_TAG).name();
+		totalHistory = totalHistory();
+		release = release();
+	}
+
+	/**
+	 * Delete repository
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		repository.close();
+		delete(directory);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null)
+			for (File child : children)
+				delete(child);
+		file.delete();
+	}
+
+	private LineDiff getLineDiff() {
+		return countOnly ? new LineDiff(SupportedAlgorithm.HISTOGRAM, true)
+				: null;
+	}
+
+	/**
+	 * Run total history report
+	 *
+	 * @return report
+	 * @throws IOException
+	 */
+	@Benchmark
+	public TotalHistoryReport totalHistory() throws IOException {
+		TotalHistoryReport report = new TotalHistoryReport();
+		report.setProjectName("synthetic");
+		report.setProjectVersion(Constants.MASTER);
+		report.setLinker(LINKER);
+		report.setThreads(threads);
+		report.setLineDiff(getLineDiff());
+		report.run(repository, Constants.MASTER);
+		return report;
+	}
+
+	/**
+	 * Run release report between the master branch and the release tag
+	 *
+	 * @return report
+	 * @throws IOException
+	 */
+	@Benchmark
+	public ReleaseReport release() throws IOException {
+		ReleaseReport report = createRelease();
+		report.run(repository, Constants.MASTER, releaseBase);
+		return report;
+	}
+
+	private ReleaseReport createRelease() {
+		ReleaseReport report = new ReleaseReport();
+		report.setProjectName("synthetic");
+		report.setProjectVersion(SyntheticRepository.RELEASE_TAG);
+		report.setLinker(LINKER);
+		report.setLineDiff(getLineDiff());
+		if (commitGraph)
+			report.setCommitGraph(new CommitGraph(repository));
+		return report;
+	}
+
+	/**
+	 * Render total history report
+	 *
+	 * @return rendered report
+	 * @throws IOException
+	 * @throws TemplateException
+	 */
+	@Benchmark
+	public String renderTotalHistory() throws IOException, TemplateException {
+		return render("total-history", totalHistory);
+	}
+
+	/**
+	 * Render release report
+	 *
+	 * @return rendered report
+	 * @throws IOException
+	 * @throws TemplateException
+	 */
+	@Benchmark
+	public String renderRelease() throws IOException, TemplateException {
+		return render("release", release);
+	}
+
+	private static String render(String name, Object report)
+			throws IOException, TemplateException {
+		Template template = Templates.getTemplate(name);
+		StringWriter writer = new StringWriter();
+		template.process(report, writer);
+		return writer.toString();
+	}
+}
@@ -0,0 +1,427 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.storage.file.FileRepository;
+
+/**
+ * Generator of repositories with a configurable history shape
+ * <p>
+ * Files are spread over top-level directories and every commit edits, adds
+ * and deletes lines of a few files. Some authors commit under a second email
+ * or a differently cased name so their identities have to be merged. Merges
+ * join short side branches back into the master branch. The tag
+ * {@link #RELEASE_TAG} marks the commit halfway through the master branch.
+ * The same settings and seed always generate the same history.
+ */
+public class SyntheticRepository {
+
+	/**
+	 * Tag created halfway through the history
+	 */
+	public static final String RELEASE_TAG = "v1";
+
+	private static final int FILES_PER_DIRECTORY = 50;
+
+	private static final long START_TIME = 1300000000000L;
+
+	private static final long COMMIT_INTERVAL = 60 * 60 * 1000L;
+
+	/**
+	 * Paths, blobs and contents of all files at a commit
+	 */
+	private static class Snapshot {
+
+		final TreeMap<String, ObjectId> blobs;
+
+		final Map<String, List<String>> contents;
+
+		Snapshot(TreeMap<String, ObjectId> blobs,
+				Map<String, List<String>> contents) {
+			this.blobs = blobs;
+			this.contents = contents;
+		}
+
+		Snapshot copy() {
+			return new Snapshot(new TreeMap<String, ObjectId>(blobs),
+					new HashMap<String, List<String>>(contents));
+		}
+	}
+
+	private int commits = 1000;
+
+	private int authors = 20;
+
+	private int files = 200;
+
+	private int mergeInterval = 50;
+
+	private int branchLength = 4;
+
+	private int changesPerCommit = 3;
+
+	private int lines = 100;
+
+	private int largeLines = 5000;
+
+	private int largeInterval = 50;
+
+	private long seed = 1;
+
+	private Random random;
+
+	private ObjectInserter inserter;
+
+	private int fileCount;
+
+	private int lineCount;
+
+	private long time;
+
+	/**
+	 * Set number of commits
+	 *
+	 * @param commits
+	 * @return this generator
+	 */
+	public SyntheticRepository setCommits(int commits) {
+		this.commits = commits;
+		return this;
+	}
+
+	/**
+	 * Set number of authors
+	 *
+	 * @param authors
+	 * @return this generator
+	 */
+	public SyntheticRepository setAuthors(int authors) {
+		this.authors = authors;
+		return this;
+	}
+
+	/**
+	 * Set number of files in the initial commit
+	 *
+	 * @param files
+	 * @return this generator
+	 */
+	public SyntheticRepository setFiles(int files) {
+		this.files = files;
+		return this;
+	}
+
+	/**
+	 * Set number of master branch commits between merges
+	 *
+	 * @param mergeInterval
+	 *            zero for a linear history
+	 * @return this generator
+	 */
+	public SyntheticRepository setMergeInterval(int mergeInterval) {
+		this.mergeInterval = mergeInterval;
+		return this;
+	}
+
+	/**
+	 * Set number of commits on each merged side branch
+	 *
+	 * @param branchLength
+	 * @return this generator
+	 */
+	public SyntheticRepository setBranchLength(int branchLength) {
+		this.branchLength = branchLength;
+		return this;
+	}
+
+	/**
+	 * Set number of files changed by each commit
+	 *
+	 * @param changesPerCommit
+	 * @return this generator
+	 */
+	public SyntheticRepository setChangesPerCommit(int changesPerCommit) {
+		this.changesPerCommit = changesPerCommit;
+		return this;
+	}
+
+	/**
+	 * Set number of lines of a new file
+	 *
+	 * @param lines
+	 * @return this generator
+	 */
+	public SyntheticRepository setLines(int lines) {
+		this.lines = lines;
+		return this;
+	}
+
+	/**
+	 * Set number of lines of a new large file and how many new files are
+	 * created for each large one
+	 *
+	 * @param largeLines
+	 * @param largeInterval
+	 *            zero for no large files
+	 * @return this generator
+	 */
+	public SyntheticRepository setLargeFiles(int largeLines, int largeInterval) {
+		this.largeLines = largeLines;
+		this.largeInterval = largeInterval;
+		return this;
+	}
+
+	/**
+	 * Set seed of the generated history
+	 *
+	 * @param seed
+	 * @return this generator
+	 */
+	public SyntheticRepository setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * Create repository with a generated history in the given directory
+	 *
+	 * @param directory
+	 * @return repository
+	 * @throws IOException
+	 */
+	public Repository create(File directory) throws IOException {
+		Repository repository = new FileRepository(new File(directory,
+				Constants.DOT_GIT));
+		repository.create();
+		random = new Random(seed);
+		fileCount = 0;
+		lineCount = 0;
+		time = START_TIME;
+		inserter = repository.newObjectInserter();
+		try {
+			Snapshot snapshot = new Snapshot(new TreeMap<String, ObjectId>(),
+					new HashMap<String, List<String>>());
+			for (int i = 0; i < files; i++)
+				addFile(snapshot);
+			ObjectId head = commit(snapshot);
+			int created = 1;
+			int master = 1;
+			ObjectId release = null;
+			while (created < commits) {
+				if (mergeInterval > 0 && master % mergeInterval == 0
+						&& commits - created > branchLength + 1) {
+					Snapshot side = snapshot.copy();
+					Set<String> changed = new HashSet<String>();
+					ObjectId sideHead = head;
+					for (int i = 0; i < branchLength; i++) {
+						changed.addAll(change(side));
+						sideHead = commit(side, sideHead);
+					}
+					change(snapshot);
+					head = commit(snapshot, head);
+					for (String path : changed)
+						if (side.blobs.containsKey(path)) {
+							snapshot.blobs.put(path, side.blobs.get(path));
+							snapshot.contents.put(path, side.contents.get(path));
+						} else {
+							snapshot.blobs.remove(path);
+							snapshot.contents.remove(path);
+						}
+					head = commit(snapshot, head, sideHead);
+					created += branchLength + 2;
+				} else {
+					change(snapshot);
+					head = commit(snapshot, head);
+					created++;
+				}
+				master++;
+				if (release == null && created >= commits / 2)
+					release = head;
+			}
+			inserter.flush();
+			update(repository, Constants.R_HEADS + Constants.MASTER, head);
+			update(repository, Constants.R_TAGS + RELEASE_TAG,
+					release != null ? release : head);
+		} finally {
+			inserter.release();
+			inserter = null;
+		}
+		return repository;
+	}
+
+	private static void update(Repository repository, String ref, ObjectId id)
+			throws IOException {
+		RefUpdate update = repository.updateRef(ref);
+		update.setNewObjectId(id);
+		update.setForceUpdate(true);
+		update.update();
+	}
+
+	private String nextLine() {
+		return "line " + (lineCount++) + ' ' + Long.toHexString(random.nextLong())
+				+ '\n';
+	}
+
+	private void addFile(Snapshot snapshot) throws IOException {
+		int index = fileCount++;
+		String path = String.format("dir%03d/file%05d.txt", index
+				/ FILES_PER_DIRECTORY, index);
+		int count = largeInterval > 0 && index % largeInterval == largeInterval - 1 ? largeLines
+				: lines;
+		List<String> content = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++)
+			content.add(nextLine());
+		write(snapshot, path, content);
+	}
+
+	private void write(Snapshot snapshot, String path, List<String> content)
+			throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (String line : content)
+			text.append(line);
+		snapshot.contents.put(path, content);
+		snapshot.blobs.put(path, inserter.insert(Constants.OBJ_BLOB,
+				Constants.encode(text.toString())));
+	}
+
+	/**
+	 * Change files of snapshot
+	 *
+	 * @return paths changed
+	 */
+	private List<String> change(Snapshot snapshot) throws IOException {
+		List<String> changed = new ArrayList<String>();
+		int action = random.nextInt(20);
+		if (action == 0 || snapshot.blobs.isEmpty()) {
+			addFile(snapshot);
+			changed.add(snapshot.blobs.lastKey());
+		} else if (action == 1 && snapshot.blobs.size() > 1) {
+			String path = pick(snapshot);
+			snapshot.blobs.remove(path);
+			snapshot.contents.remove(path);
+			changed.add(path);
+		}
+		for (int i = 0; i < changesPerCommit && !snapshot.blobs.isEmpty(); i++) {
+			String path = pick(snapshot);
+			List<String> content = new ArrayList<String>(
+					snapshot.contents.get(path));
+			int edits = 1 + random.nextInt(3);
+			for (int j = 0; j < edits; j++) {
+				int line = content.isEmpty() ? 0 : random.nextInt(content
+						.size());
+				switch (random.nextInt(3)) {
+				case 0:
+					for (int k = random.nextInt(5); k >= 0; k--)
+						content.add(line, nextLine());
+					break;
+				case 1:
+					for (int k = random.nextInt(3); k >= 0
+							&& line < content.size(); k--)
+						content.set(line++, nextLine());
+					break;
+				default:
+					for (int k = random.nextInt(3); k >= 0
+							&& line < content.size(); k--)
+						content.remove(line);
+				}
+			}
+			write(snapshot, path, content);
+			changed.add(path);
+		}
+		return changed;
+	}
+
+	private String pick(Snapshot snapshot) {
+		int index = random.nextInt(snapshot.blobs.size());
+		for (String path : snapshot.blobs.keySet())
+			if (index-- == 0)
+				return path;
+		return snapshot.blobs.firstKey();
+	}
+
+	private PersonIdent nextPerson() {
+		int author = random.nextInt(authors);
+		String name = "Author " + author;
+		String email = "author" + author + "@example.com";
+		switch (random.nextInt(10)) {
+		case 0:
+			email = "author" + author + "@users.example.com";
+			break;
+		case 1:
+			name = name.toLowerCase();
+			break;
+		}
+		time += COMMIT_INTERVAL;
+		return new PersonIdent(name, email, time, 0);
+	}
+
+	private ObjectId commit(Snapshot snapshot, ObjectId... parents)
+			throws IOException {
+		Map<String, TreeFormatter> directories = new TreeMap<String, TreeFormatter>();
+		for (Entry<String, ObjectId> file : snapshot.blobs.entrySet()) {
+			String path = file.getKey();
+			int slash = path.indexOf('/');
+			String directory = path.substring(0, slash);
+			TreeFormatter tree = directories.get(directory);
+			if (tree == null) {
+				tree = new TreeFormatter();
+				directories.put(directory, tree);
+			}
+			tree.append(path.substring(slash + 1), FileMode.REGULAR_FILE,
+					file.getValue());
+		}
+		TreeFormatter root = new TreeFormatter();
+		for (Entry<String, TreeFormatter> directory : directories.entrySet())
+			root.append(directory.getKey(), FileMode.TREE, directory
+					.getValue().insertTo(inserter));
+
+		PersonIdent person = nextPerson();
+		CommitBuilder commit = new CommitBuilder();
+		commit.setTreeId(root.insertTo(inserter));
+		commit.setParentIds(parents);
+		commit.setAuthor(person);
+		commit.setCommitter(person);
+		commit.setMessage("Commit " + time + '\n');
+		return inserter.insert(commit);
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reader of data written by a {@link BinaryReportWriter}
+ * <p>
+ * Objects are read as {@link Map} instances with their members in written
+ * order, arrays as {@link List} instances, numbers as {@link Long} instances
+ * and strings as {@link String} instances.
+ */
+public class BinaryReportReader {
+
+	private final DataInputStream input;
+
+	private final List<String> strings = new ArrayList<String>();
+
+	/**
+	 * Create reader of binary data from stream
+	 *
+	 * @param input
+	 */
+	public BinaryReportReader(InputStream input) {
+		if (input == null)
+			throw new IllegalArgumentException("Input cannot be null");
+		this.input = new DataInputStream(new BufferedInputStream(input));
+	}
+
+	/**
+	 * Read the top-level value
+	 *
+	 * @return value, may be null
+	 * @throws IOException
+	 */
+	public Object read() throws IOException {
+		if (input.readInt() != BinaryReportWriter.MAGIC)
+			throw new IOException("Invalid binary report data");
+		int version = input.readInt();
+		if (version != BinaryReportWriter.VERSION)
+			throw new IOException("Unsupported binary report version: "
+					+ version);
+		strings.clear();
+		return readValue(readTag());
+	}
+
+	private int readTag() throws IOException {
+		int tag = input.read();
+		if (tag == -1)
+			throw new EOFException();
+		return tag;
+	}
+
+	private long readNumber() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = readTag();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Malformed number");
+	}
+
+	private String readString(int tag) throws IOException {
+		switch (tag) {
+		case BinaryReportWriter.STRING:
+			byte[] bytes = new byte[(int) readNumber()];
+			input.readFully(bytes);
+			String value = new String(bytes, Templates.ENCODING);
+			strings.add(value);
+			return value;
+		case BinaryReportWriter.STRING_REF:
+			int index = (int) readNumber();
+			if (index < 0 || index >= strings.size())
+				throw new IOException("Invalid string reference: " + index);
+			return strings.get(index);
+		default:
+			throw new IOException("Expected string but was tag " + tag);
+		}
+	}
+
+	private Object readValue(int tag) throws IOException {
+		switch (tag) {
+		case BinaryReportWriter.BEGIN_OBJECT:
+			Map<String, Object> object = new LinkedHashMap<String, Object>();
+			while ((tag = readTag()) != BinaryReportWriter.END_OBJECT)
+				object.put(readString(tag), readValue(readTag()));
+			return object;
+		case BinaryReportWriter.BEGIN_ARRAY:
+			List<Object> array = new ArrayList<Object>();
+			while ((tag = readTag()) != BinaryReportWriter.END_ARRAY)
+				array.add(readValue(tag));
+			return array;
+		case BinaryReportWriter.NUMBER:
+			long value = readNumber();
+			return Long.valueOf((value >>> 1) ^ -(value & 1));
+		case BinaryReportWriter.NULL:
+			return null;
+		case BinaryReportWriter.STRING:
+		case BinaryReportWriter.STRING_REF:
+			return readString(tag);
+		default:
+			throw new IOException("Unknown tag " + tag);
+		}
+	}
+}
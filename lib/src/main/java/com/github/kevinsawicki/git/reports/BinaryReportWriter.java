@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Report writer that writes a compact tagged binary form
+ * <p>
+ * Every distinct string is written once and later occurrences refer back to
+ * it, numbers are written as variable length integers. Data written by this
+ * class can be read back with a {@link BinaryReportReader}.
+ */
+public class BinaryReportWriter implements ReportWriter {
+
+	static final int MAGIC = 0x47525250;
+
+	static final int VERSION = 1;
+
+	static final int BEGIN_OBJECT = 1;
+
+	static final int END_OBJECT = 2;
+
+	static final int BEGIN_ARRAY = 3;
+
+	static final int END_ARRAY = 4;
+
+	static final int STRING = 5;
+
+	static final int STRING_REF = 6;
+
+	static final int NUMBER = 7;
+
+	static final int NULL = 8;
+
+	private final DataOutputStream output;
+
+	private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+	/**
+	 * Create writer of binary data to stream
+	 *
+	 * @param output
+	 * @throws IOException
+	 */
+	public BinaryReportWriter(OutputStream output) throws IOException {
+		if (output == null)
+			throw new IllegalArgumentException("Output cannot be null");
+		this.output = new DataOutputStream(new BufferedOutputStream(output));
+		this.output.writeInt(MAGIC);
+		this.output.writeInt(VERSION);
+	}
+
+	public ReportWriter beginObject() throws IOException {
+		output.write(BEGIN_OBJECT);
+		return this;
+	}
+
+	public ReportWriter endObject() throws IOException {
+		output.write(END_OBJECT);
+		return this;
+	}
+
+	public ReportWriter beginArray() throws IOException {
+		output.write(BEGIN_ARRAY);
+		return this;
+	}
+
+	public ReportWriter endArray() throws IOException {
+		output.write(END_ARRAY);
+		return this;
+	}
+
+	public ReportWriter name(String name) throws IOException {
+		if (name == null)
+			throw new IllegalArgumentException("Name cannot be null");
+		return value(name);
+	}
+
+	public ReportWriter value(String value) throws IOException {
+		if (value == null) {
+			output.write(NULL);
+			return this;
+		}
+		Integer index = strings.get(value);
+		if (index != null) {
+			output.write(STRING_REF);
+			writeNumber(index.intValue());
+			return this;
+		}
+		strings.put(value, Integer.valueOf(strings.size()));
+		byte[] bytes = value.getBytes(Templates.ENCODING);
+		output.write(STRING);
+		writeNumber(bytes.length);
+		output.write(bytes);
+		return this;
+	}
+
+	public ReportWriter value(long value) throws IOException {
+		output.write(NUMBER);
+		writeNumber((value << 1) ^ (value >> 63));
+		return this;
+	}
+
+	public ReportWriter flush() throws IOException {
+		output.flush();
+		return this;
+	}
+
+	private void writeNumber(long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			output.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		output.write((int) value);
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+
+/**
+ * Object reader that keeps the contents of recently read small blobs in memory
+ * <p>
+ * Blobs are evicted least recently used first once the total size of the
+ * cached blobs exceeds the configured limit. All other objects are read
+ * directly from the wrapped reader.
+ */
+public class BlobCachingReader extends ObjectReader {
+
+	/**
+	 * Default total size in bytes of all cached blobs
+	 */
+	public static final long DEFAULT_CACHE_SIZE = 32 * 1024 * 1024;
+
+	/**
+	 * Largest blob in bytes that will be cached
+	 */
+	public static final int MAX_BLOB_SIZE = 1024 * 1024;
+
+	private final ObjectReader reader;
+
+	private final long limit;
+
+	private final LinkedHashMap<ObjectId, ObjectLoader> blobs = new LinkedHashMap<ObjectId, ObjectLoader>(
+			16, 0.75F, true);
+
+	private long size;
+
+	private int hits;
+
+	private int misses;
+
+	/**
+	 * Create caching reader wrapping the given reader
+	 *
+	 * @param reader
+	 */
+	public BlobCachingReader(ObjectReader reader) {
+		this(reader, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Create caching reader wrapping the given reader
+	 *
+	 * @param reader
+	 * @param limit
+	 *            total size in bytes of all cached blobs
+	 */
+	public BlobCachingReader(ObjectReader reader, long limit) {
+		if (reader == null)
+			throw new IllegalArgumentException("Reader cannot be null");
+		this.reader = reader;
+		this.limit = limit;
+	}
+
+	/**
+	 * @return number of blob reads served from the cache
+	 */
+	public int getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return number of blob reads that were not served from the cache
+	 */
+	public int getMisses() {
+		return misses;
+	}
+
+	public ObjectReader newReader() {
+		return new BlobCachingReader(reader.newReader(), limit);
+	}
+
+	public Collection<ObjectId> resolve(AbbreviatedObjectId id)
+			throws IOException {
+		return reader.resolve(id);
+	}
+
+	public boolean has(AnyObjectId objectId, int typeHint) throws IOException {
+		if (blobs.containsKey(objectId))
+			return typeHint == OBJ_ANY || typeHint == Constants.OBJ_BLOB;
+		return reader.has(objectId, typeHint);
+	}
+
+	public ObjectLoader open(AnyObjectId objectId, int typeHint)
+			throws MissingObjectException, IncorrectObjectTypeException,
+			IOException {
+		if (typeHint != OBJ_ANY && typeHint != Constants.OBJ_BLOB)
+			return reader.open(objectId, typeHint);
+
+		ObjectLoader loader = blobs.get(objectId);
+		if (loader != null) {
+			hits++;
+			return loader;
+		}
+		loader = reader.open(objectId, typeHint);
+		if (loader.getType() != Constants.OBJ_BLOB)
+			return loader;
+		misses++;
+		if (loader.isLarge() || loader.getSize() > MAX_BLOB_SIZE)
+			return loader;
+
+		loader = new ObjectLoader.SmallObject(Constants.OBJ_BLOB,
+				loader.getCachedBytes());
+		blobs.put(objectId.copy(), loader);
+		size += loader.getSize();
+		Iterator<Map.Entry<ObjectId, ObjectLoader>> eldest = blobs.entrySet()
+				.iterator();
+		while (size > limit && eldest.hasNext()) {
+			size -= eldest.next().getValue().getSize();
+			eldest.remove();
+		}
+		return loader;
+	}
+
+	public long getObjectSize(AnyObjectId objectId, int typeHint)
+			throws MissingObjectException, IncorrectObjectTypeException,
+			IOException {
+		ObjectLoader loader = blobs.get(objectId);
+		if (loader != null
+				&& (typeHint == OBJ_ANY || typeHint == Constants.OBJ_BLOB))
+			return loader.getSize();
+		return reader.getObjectSize(objectId, typeHint);
+	}
+
+	public void release() {
+		blobs.clear();
+		size = 0;
+		reader.release();
+	}
+}
@@ -0,0 +1,565 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Reachability index of the commits of a repository
+ * <p>
+ * Every indexed commit is assigned a position such that all of its parents
+ * have lower positions, and is stored with its generation number, commit time,
+ * author email and a compact table of its parent positions. Merge bases and
+ * ranges can then be computed from the index alone without parsing any commit
+ * objects, and walks are pruned by generation number instead of by commit
+ * time.
+ * <p>
+ * The index is stored in a file in the repository directory and is extended
+ * with any new commits each time it is updated.
+ */
+public class CommitGraph {
+
+	/**
+	 * Name of the index file in the repository directory
+	 */
+	public static final String FILE_NAME = "reports-commit-graph";
+
+	private static final int MAGIC = 0x47524347;
+
+	private static final int VERSION = 1;
+
+	private static final int FLAG_START = 1;
+
+	private static final int FLAG_END = 2;
+
+	private static final int FLAG_QUEUED = 4;
+
+	private static final int FLAG_BOTH = FLAG_START | FLAG_END;
+
+	private static class Node extends ObjectId {
+
+		private static final long serialVersionUID = 4542930962012395871L;
+
+		private final int position;
+
+		Node(AnyObjectId id, int position) {
+			super(id);
+			this.position = position;
+		}
+	}
+
+	/**
+	 * Get index file of repository
+	 *
+	 * @param repository
+	 * @return file
+	 */
+	public static File getFile(Repository repository) {
+		return new File(repository.getDirectory(), FILE_NAME);
+	}
+
+	private final File file;
+
+	private final ObjectIdSubclassMap<Node> nodes = new ObjectIdSubclassMap<Node>();
+
+	private final List<String> emails = new ArrayList<String>();
+
+	private final Map<String, Integer> emailPositions = new HashMap<String, Integer>();
+
+	private Node[] ids = new Node[64];
+
+	private int[] generations = new int[64];
+
+	private int[] times = new int[64];
+
+	private int[] authors = new int[64];
+
+	private int[] parentStarts = new int[65];
+
+	private int[] parents = new int[64];
+
+	private int size;
+
+	private boolean loaded;
+
+	private boolean dirty;
+
+	/**
+	 * Create commit graph backed by file
+	 *
+	 * @param file
+	 */
+	public CommitGraph(File file) {
+		if (file == null)
+			throw new IllegalArgumentException("File cannot be null");
+		this.file = file;
+	}
+
+	/**
+	 * Create commit graph backed by the index file of the repository
+	 *
+	 * @param repository
+	 */
+	public CommitGraph(Repository repository) {
+		this(getFile(repository));
+	}
+
+	/**
+	 * @return file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return number of indexed commits
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Is commit indexed?
+	 *
+	 * @param commit
+	 * @return true if indexed, false otherwise
+	 */
+	public boolean contains(AnyObjectId commit) {
+		return nodes.get(commit) != null;
+	}
+
+	/**
+	 * Get generation number of commit
+	 * <p>
+	 * Root commits have a generation of one and every other commit has a
+	 * generation one more than the highest generation of its parents.
+	 *
+	 * @param commit
+	 * @return generation or zero if not indexed
+	 */
+	public int getGeneration(AnyObjectId commit) {
+		Node node = nodes.get(commit);
+		return node != null ? generations[node.position] : 0;
+	}
+
+	private int position(AnyObjectId commit) {
+		Node node = nodes.get(commit);
+		if (node == null)
+			throw new IllegalArgumentException("Commit not indexed: "
+					+ commit.name());
+		return node.position;
+	}
+
+	private static int[] grow(int[] array, int length) {
+		if (array.length >= length)
+			return array;
+		int[] grown = new int[Math.max(length, array.length * 2)];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	private int email(String email) {
+		if (email == null)
+			email = "";
+		Integer position = emailPositions.get(email);
+		if (position == null) {
+			position = Integer.valueOf(emails.size());
+			emailPositions.put(email, position);
+			emails.add(email);
+		}
+		return position.intValue();
+	}
+
+	private void add(AnyObjectId id, int time, int author, int[] parentPositions) {
+		if (size == ids.length) {
+			Node[] grown = new Node[ids.length * 2];
+			System.arraycopy(ids, 0, grown, 0, size);
+			ids = grown;
+		}
+		generations = grow(generations, size + 1);
+		times = grow(times, size + 1);
+		authors = grow(authors, size + 1);
+		parentStarts = grow(parentStarts, size + 2);
+		int start = parentStarts[size];
+		parents = grow(parents, start + parentPositions.length);
+
+		int generation = 0;
+		for (int i = 0; i < parentPositions.length; i++) {
+			parents[start + i] = parentPositions[i];
+			generation = Math.max(generation, generations[parentPositions[i]]);
+		}
+		Node node = new Node(id, size);
+		nodes.add(node);
+		ids[size] = node;
+		generations[size] = generation + 1;
+		times[size] = time;
+		authors[size] = author;
+		parentStarts[size + 1] = start + parentPositions.length;
+		size++;
+	}
+
+	private void add(RevCommit commit) {
+		RevCommit[] commitParents = commit.getParents();
+		int[] parentPositions = new int[commitParents.length];
+		for (int i = 0; i < commitParents.length; i++)
+			parentPositions[i] = position(commitParents[i]);
+		PersonIdent author = commit.getAuthorIdent();
+		add(commit, commit.getCommitTime(),
+				email(author != null ? author.getEmailAddress() : null),
+				parentPositions);
+		dirty = true;
+	}
+
+	/**
+	 * Index all commits reachable from the given commits that are not already
+	 * indexed
+	 * <p>
+	 * Only the commits that are not indexed are parsed, the walk stops at the
+	 * first indexed commit along each line of history.
+	 *
+	 * @param repository
+	 * @param commits
+	 * @return this graph
+	 * @throws IOException
+	 */
+	public CommitGraph update(Repository repository, AnyObjectId... commits)
+			throws IOException {
+		RevWalk walk = new RevWalk(repository);
+		try {
+			List<RevCommit> stack = new ArrayList<RevCommit>();
+			for (AnyObjectId commit : commits) {
+				if (commit == null || contains(commit))
+					continue;
+				stack.add(walk.parseCommit(commit));
+				while (!stack.isEmpty()) {
+					RevCommit current = stack.get(stack.size() - 1);
+					if (contains(current)) {
+						stack.remove(stack.size() - 1);
+						continue;
+					}
+					RevCommit missing = null;
+					for (RevCommit parent : current.getParents())
+						if (!contains(parent)) {
+							missing = walk.parseCommit(parent);
+							break;
+						}
+					if (missing != null)
+						stack.add(missing);
+					else {
+						add(current);
+						stack.remove(stack.size() - 1);
+					}
+				}
+			}
+		} finally {
+			walk.release();
+		}
+		return this;
+	}
+
+	private PriorityQueue<Integer> createQueue() {
+		return new PriorityQueue<Integer>(64, new Comparator<Integer>() {
+
+			public int compare(Integer p1, Integer p2) {
+				int generationDiff = generations[p2.intValue()]
+						- generations[p1.intValue()];
+				if (generationDiff != 0)
+					return generationDiff;
+				return p2.intValue() - p1.intValue();
+			}
+		});
+	}
+
+	/**
+	 * Paint all commits reachable from start and end with the flags of the
+	 * commits they are reachable from
+	 * <p>
+	 * Commits are visited in descending generation order so the flags of a
+	 * commit are final once it is visited. The walk stops once every queued
+	 * commit is reachable from both commits when stopOnBoth is true, or from
+	 * the end commit when it is false.
+	 */
+	private byte[] paint(int start, int end, boolean stopOnBoth,
+			List<Integer> visited) {
+		byte[] flags = new byte[size];
+		PriorityQueue<Integer> queue = createQueue();
+		flags[start] |= FLAG_START | FLAG_QUEUED;
+		queue.add(Integer.valueOf(start));
+		if ((flags[end] & FLAG_QUEUED) == 0)
+			queue.add(Integer.valueOf(end));
+		flags[end] |= FLAG_END | FLAG_QUEUED;
+		int stopFlags = stopOnBoth ? FLAG_BOTH : FLAG_END;
+		int pending = 0;
+		for (Integer position : queue)
+			if ((flags[position.intValue()] & stopFlags) != stopFlags)
+				pending++;
+		while (!queue.isEmpty()) {
+			int current = queue.poll().intValue();
+			int paint = flags[current] & FLAG_BOTH;
+			if ((paint & stopFlags) != stopFlags)
+				pending--;
+			visited.add(Integer.valueOf(current));
+			if (stopOnBoth && paint == FLAG_BOTH)
+				break;
+			for (int i = parentStarts[current]; i < parentStarts[current + 1]; i++) {
+				int parent = parents[i];
+				int before = flags[parent];
+				int after = before | paint | FLAG_QUEUED;
+				if ((before & FLAG_QUEUED) == 0) {
+					queue.add(Integer.valueOf(parent));
+					if ((after & stopFlags) != stopFlags)
+						pending++;
+				} else if ((before & stopFlags) != stopFlags
+						&& (after & stopFlags) == stopFlags)
+					pending--;
+				flags[parent] = (byte) after;
+			}
+			if (pending == 0 && !stopOnBoth)
+				break;
+		}
+		return flags;
+	}
+
+	/**
+	 * Get a best common ancestor of the given commits
+	 * <p>
+	 * The common ancestor with the highest generation is returned, which can
+	 * never be an ancestor of any other common ancestor.
+	 *
+	 * @param commit1
+	 * @param commit2
+	 * @return merge base or null if the commits share no history
+	 */
+	public ObjectId getMergeBase(AnyObjectId commit1, AnyObjectId commit2) {
+		List<Integer> visited = new ArrayList<Integer>();
+		byte[] flags = paint(position(commit1), position(commit2), true,
+				visited);
+		int last = visited.get(visited.size() - 1).intValue();
+		if ((flags[last] & FLAG_BOTH) != FLAG_BOTH)
+			return null;
+		return ids[last].copy();
+	}
+
+	/**
+	 * Get all commits reachable from start but not reachable from end
+	 * <p>
+	 * Commits are returned newest commit time first, ties are broken by
+	 * returning descendants before their ancestors.
+	 *
+	 * @param start
+	 * @param end
+	 *            may be null to return all commits reachable from start
+	 * @return non-null but possibly empty list of commit ids
+	 */
+	public List<ObjectId> getRange(AnyObjectId start, AnyObjectId end) {
+		int startPosition = position(start);
+		List<Integer> range = new ArrayList<Integer>();
+		if (end != null) {
+			List<Integer> visited = new ArrayList<Integer>();
+			byte[] flags = paint(startPosition, position(end), false, visited);
+			for (Integer position : visited)
+				if ((flags[position.intValue()] & FLAG_BOTH) == FLAG_START)
+					range.add(position);
+		} else {
+			boolean[] seen = new boolean[size];
+			int[] stack = new int[16];
+			int depth = 0;
+			stack[depth++] = startPosition;
+			while (depth > 0) {
+				int current = stack[--depth];
+				if (seen[current])
+					continue;
+				seen[current] = true;
+				range.add(Integer.valueOf(current));
+				for (int i = parentStarts[current]; i < parentStarts[current + 1]; i++) {
+					stack = grow(stack, depth + 1);
+					stack[depth++] = parents[i];
+				}
+			}
+		}
+
+		Collections.sort(range, new Comparator<Integer>() {
+
+			public int compare(Integer p1, Integer p2) {
+				int timeDiff = times[p2.intValue()] - times[p1.intValue()];
+				if (timeDiff != 0)
+					return timeDiff;
+				return p2.intValue() - p1.intValue();
+			}
+		});
+		List<ObjectId> commits = new ArrayList<ObjectId>(range.size());
+		for (Integer position : range)
+			commits.add(ids[position.intValue()].copy());
+		return commits;
+	}
+
+	/**
+	 * Get which of the given author emails have authored any commit reachable
+	 * from the given commit
+	 * <p>
+	 * The walk stops as soon as every email has been found.
+	 *
+	 * @param commit
+	 * @param authorEmails
+	 * @return non-null but possibly empty set of found emails
+	 */
+	public Set<String> findAuthors(AnyObjectId commit,
+			Collection<String> authorEmails) {
+		Set<String> found = new HashSet<String>();
+		Set<Integer> remaining = new HashSet<Integer>();
+		for (String email : authorEmails) {
+			Integer position = emailPositions.get(email);
+			if (position != null)
+				remaining.add(position);
+		}
+		if (remaining.isEmpty())
+			return found;
+
+		boolean[] seen = new boolean[size];
+		int[] stack = new int[16];
+		int depth = 0;
+		stack[depth++] = position(commit);
+		while (depth > 0) {
+			int current = stack[--depth];
+			if (seen[current])
+				continue;
+			seen[current] = true;
+			if (remaining.remove(Integer.valueOf(authors[current]))) {
+				found.add(emails.get(authors[current]));
+				if (remaining.isEmpty())
+					break;
+			}
+			for (int i = parentStarts[current]; i < parentStarts[current + 1]; i++) {
+				stack = grow(stack, depth + 1);
+				stack[depth++] = parents[i];
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Load graph from file if it has not already been loaded
+	 * <p>
+	 * A missing file is treated as an empty graph
+	 *
+	 * @return this graph
+	 * @throws IOException
+	 */
+	public CommitGraph load() throws IOException {
+		if (loaded)
+			return this;
+		loaded = true;
+		if (!file.exists())
+			return this;
+
+		DataInputStream input = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			if (input.readInt() != MAGIC)
+				throw new IOException("Invalid commit graph file: " + file);
+			if (input.readInt() != VERSION)
+				return this;
+
+			int count = input.readInt();
+			for (int i = 0; i < count; i++)
+				email(input.readUTF());
+
+			byte[] id = new byte[Constants.OBJECT_ID_LENGTH];
+			int commits = input.readInt();
+			for (int i = 0; i < commits; i++) {
+				input.readFully(id);
+				int time = input.readInt();
+				int author = input.readInt();
+				int[] parentPositions = new int[input.readUnsignedShort()];
+				for (int j = 0; j < parentPositions.length; j++)
+					parentPositions[j] = input.readInt();
+				add(ObjectId.fromRaw(id), time, author, parentPositions);
+			}
+		} finally {
+			input.close();
+		}
+		return this;
+	}
+
+	/**
+	 * Save graph to file if any commits were indexed since it was loaded
+	 * <p>
+	 * The graph is written to a unique temporary file in the same directory
+	 * that then replaces the existing file
+	 *
+	 * @return this graph
+	 * @throws IOException
+	 */
+	public CommitGraph save() throws IOException {
+		if (!dirty)
+			return this;
+
+		DataFile.write(file, "commit graph", new DataFile.Contents() {
+
+			public void write(DataOutputStream output) throws IOException {
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				output.writeInt(emails.size());
+				for (String email : emails)
+					output.writeUTF(email);
+
+				output.writeInt(size);
+				for (int i = 0; i < size; i++) {
+					ids[i].copyRawTo(output);
+					output.writeInt(times[i]);
+					output.writeInt(authors[i]);
+					int start = parentStarts[i];
+					int end = parentStarts[i + 1];
+					output.writeShort(end - start);
+					for (int j = start; j < end; j++)
+						output.writeInt(parents[j]);
+				}
+			}
+		});
+		dirty = false;
+		return this;
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.gitective.core.filter.commit.CommitImpact;
+
+/**
+ * Diff statistics of a single commit
+ */
+public class CommitStats extends ObjectId {
+
+	private static final long serialVersionUID = -4264462553447454416L;
+
+	int linesAdded;
+
+	int linesEdited;
+
+	int linesDeleted;
+
+	int filesAdded;
+
+	int filesEdited;
+
+	int filesDeleted;
+
+	int parents;
+
+	boolean mergeConflict;
+
+	int dupes;
+
+	String authorName;
+
+	String authorEmail;
+
+	String committerName;
+
+	String committerEmail;
+
+	String[] scopes;
+
+	int[] scopeCounts;
+
+	/**
+	 * Create stats for commit
+	 *
+	 * @param commit
+	 */
+	public CommitStats(AnyObjectId commit) {
+		super(commit);
+	}
+
+	/**
+	 * @return linesAdded
+	 */
+	public int getLinesAdded() {
+		return linesAdded;
+	}
+
+	/**
+	 * @return linesEdited
+	 */
+	public int getLinesEdited() {
+		return linesEdited;
+	}
+
+	/**
+	 * @return linesDeleted
+	 */
+	public int getLinesDeleted() {
+		return linesDeleted;
+	}
+
+	/**
+	 * @return filesAdded
+	 */
+	public int getFilesAdded() {
+		return filesAdded;
+	}
+
+	/**
+	 * @return filesEdited
+	 */
+	public int getFilesEdited() {
+		return filesEdited;
+	}
+
+	/**
+	 * @return filesDeleted
+	 */
+	public int getFilesDeleted() {
+		return filesDeleted;
+	}
+
+	/**
+	 * @return parents
+	 */
+	public int getParents() {
+		return parents;
+	}
+
+	/**
+	 * @return true if merge commit with content changes, false otherwise
+	 */
+	public boolean isMergeConflict() {
+		return mergeConflict;
+	}
+
+	/**
+	 * @return number of duplicate blobs introduced by commit
+	 */
+	public int getDupes() {
+		return dupes;
+	}
+
+	/**
+	 * @return authorName
+	 */
+	public String getAuthorName() {
+		return authorName;
+	}
+
+	/**
+	 * @return authorEmail
+	 */
+	public String getAuthorEmail() {
+		return authorEmail;
+	}
+
+	/**
+	 * @return committerName
+	 */
+	public String getCommitterName() {
+		return committerName;
+	}
+
+	/**
+	 * @return committerEmail
+	 */
+	public String getCommitterEmail() {
+		return committerEmail;
+	}
+
+	/**
+	 * Get paths of the {@link PathBreakdown} scopes changed by commit
+	 *
+	 * @return scopes or null if the commit was not broken down by path
+	 */
+	public String[] getScopes() {
+		return scopes;
+	}
+
+	/**
+	 * Get lines added, edited and deleted and files added, edited and deleted
+	 * in each scope, in the same order as {@link #getScopes()}
+	 *
+	 * @return counts or null if the commit was not broken down by path
+	 */
+	public int[] getScopeCounts() {
+		return scopeCounts;
+	}
+
+	/**
+	 * @return line impact of commit
+	 */
+	public CommitImpact getLineImpact() {
+		return new CommitImpact(this, linesAdded, linesEdited, linesDeleted);
+	}
+
+	/**
+	 * @return file impact of commit
+	 */
+	public CommitImpact getFileImpact() {
+		return new CommitImpact(this, filesAdded, filesEdited, filesDeleted);
+	}
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+
+/**
+ * On-disk cache of {@link CommitStats} keyed by commit id
+ * <p>
+ * The cache file is a compact binary file made up of a table of all the
+ * distinct identity strings followed by one fixed layout row per commit that
+ * references identities by their index in the string table. Rows of commits
+ * broken down by path also reference the paths of their scopes in the string
+ * table.
+ * <p>
+ * The file also records a fingerprint of the diff settings the stats were
+ * computed with. Files of another version or fingerprint are discarded and
+ * rebuilt rather than loaded, see {@link #getDiscards()}.
+ * <p>
+ * Lookups and additions are synchronized so a single cache can be shared by
+ * concurrent diff workers.
+ * <p>
+ * Stats are held on the heap, see {@link OffHeapCommitStatsCache} for a cache
+ * that holds them in direct buffers instead.
+ */
+public class CommitStatsCache {
+
+	private static final int MAGIC = 0x47525343;
+
+	private static final int VERSION = 3;
+
+	private static final int FLAG_MERGE_CONFLICT = 1;
+
+	private final File file;
+
+	private final ObjectIdSubclassMap<CommitStats> stats = new ObjectIdSubclassMap<CommitStats>();
+
+	private boolean loaded;
+
+	private boolean dirty;
+
+	private String fingerprint = "";
+
+	private int discards;
+
+	/**
+	 * Create cache backed by file
+	 *
+	 * @param file
+	 */
+	public CommitStatsCache(File file) {
+		if (file == null)
+			throw new IllegalArgumentException("File cannot be null");
+		this.file = file;
+	}
+
+	/**
+	 * @return file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Set fingerprint of the diff settings that cached stats are computed with
+	 * <p>
+	 * Stats already held that were computed with another fingerprint are
+	 * discarded.
+	 *
+	 * @param fingerprint
+	 * @return this cache
+	 */
+	public synchronized CommitStatsCache setFingerprint(String fingerprint) {
+		if (fingerprint == null)
+			fingerprint = "";
+		if (!fingerprint.equals(this.fingerprint)) {
+			this.fingerprint = fingerprint;
+			if (count() > 0)
+				discard();
+		}
+		return this;
+	}
+
+	/**
+	 * @return fingerprint
+	 */
+	public synchronized String getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Get number of times cached stats were discarded because they were of
+	 * another version or fingerprint
+	 *
+	 * @return discards
+	 */
+	public synchronized int getDiscards() {
+		return discards;
+	}
+
+	private void discard() {
+		clear();
+		discards++;
+		dirty = true;
+	}
+
+	/**
+	 * Get stats for commit
+	 *
+	 * @param commit
+	 * @return stats or null if not cached
+	 */
+	public synchronized CommitStats get(AnyObjectId commit) {
+		return find(commit);
+	}
+
+	/**
+	 * Add stats to cache
+	 * <p>
+	 * Per-path counts of stats that are already cached without them are
+	 * replaced with the counts of the given stats.
+	 *
+	 * @param commit
+	 * @return this cache
+	 */
+	public synchronized CommitStatsCache add(CommitStats commit) {
+		if (store(commit))
+			dirty = true;
+		return this;
+	}
+
+	/**
+	 * @return number of cached commits
+	 */
+	public synchronized int size() {
+		return count();
+	}
+
+	/**
+	 * Find stored stats of commit
+	 *
+	 * @param commit
+	 * @return stats or null if not stored
+	 */
+	CommitStats find(AnyObjectId commit) {
+		return stats.get(commit);
+	}
+
+	/**
+	 * Store stats, replacing the per-path counts of stats already stored
+	 * without them
+	 *
+	 * @param commit
+	 * @return true if the stored stats changed, false otherwise
+	 */
+	boolean store(CommitStats commit) {
+		CommitStats cached = stats.addIfAbsent(commit);
+		if (cached == commit)
+			return true;
+		if (cached.scopes == null && commit.scopes != null) {
+			cached.scopes = commit.scopes;
+			cached.scopeCounts = commit.scopeCounts;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return number of stored stats
+	 */
+	int count() {
+		return stats.size();
+	}
+
+	/**
+	 * Remove all stored stats
+	 */
+	void clear() {
+		stats.clear();
+	}
+
+	/**
+	 * @return all stored stats
+	 */
+	Iterable<CommitStats> rows() {
+		return stats;
+	}
+
+	/**
+	 * Load cache from file if it has not already been loaded
+	 * <p>
+	 * A missing file is treated as an empty cache and a file of another
+	 * version or fingerprint is discarded
+	 *
+	 * @return this cache
+	 * @throws IOException
+	 */
+	public synchronized CommitStatsCache load() throws IOException {
+		if (loaded)
+			return this;
+		loaded = true;
+		if (!file.exists())
+			return this;
+
+		DataInputStream input = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			if (input.readInt() != MAGIC)
+				throw new IOException("Invalid stats cache file: " + file);
+			if (input.readInt() != VERSION
+					|| !fingerprint.equals(input.readUTF())) {
+				discard();
+				return this;
+			}
+
+			String[] strings = new String[input.readInt()];
+			for (int i = 0; i < strings.length; i++)
+				strings[i] = input.readUTF();
+
+			byte[] id = new byte[Constants.OBJECT_ID_LENGTH];
+			int rows = input.readInt();
+			for (int i = 0; i < rows; i++) {
+				input.readFully(id);
+				CommitStats commit = new CommitStats(ObjectId.fromRaw(id));
+				commit.linesAdded = input.readInt();
+				commit.linesEdited = input.readInt();
+				commit.linesDeleted = input.readInt();
+				commit.filesAdded = input.readInt();
+				commit.filesEdited = input.readInt();
+				commit.filesDeleted = input.readInt();
+				commit.parents = input.readUnsignedByte();
+				commit.mergeConflict = (input.readUnsignedByte() & FLAG_MERGE_CONFLICT) != 0;
+				commit.dupes = input.readInt();
+				commit.authorName = strings[input.readInt()];
+				commit.authorEmail = strings[input.readInt()];
+				commit.committerName = strings[input.readInt()];
+				commit.committerEmail = strings[input.readInt()];
+				int scopes = input.readInt();
+				if (scopes >= 0) {
+					commit.scopes = new String[scopes];
+					commit.scopeCounts = new int[scopes * PathBreakdown.ROW];
+					for (int j = 0; j < scopes; j++) {
+						commit.scopes[j] = strings[input.readInt()];
+						for (int k = 0; k < PathBreakdown.ROW; k++)
+							commit.scopeCounts[j * PathBreakdown.ROW + k] = input
+									.readInt();
+					}
+				}
+				store(commit);
+			}
+		} finally {
+			input.close();
+		}
+		return this;
+	}
+
+	private int index(Map<String, Integer> strings, String value) {
+		if (value == null)
+			value = "";
+		Integer index = strings.get(value);
+		if (index == null) {
+			index = Integer.valueOf(strings.size());
+			strings.put(value, index);
+		}
+		return index.intValue();
+	}
+
+	/**
+	 * Save cache to file if any stats were added since it was loaded
+	 * <p>
+	 * The cache is written to a unique temporary file in the same directory
+	 * that then replaces the existing file
+	 *
+	 * @return this cache
+	 * @throws IOException
+	 */
+	public synchronized CommitStatsCache save() throws IOException {
+		if (!dirty)
+			return this;
+
+		final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+		for (CommitStats commit : rows()) {
+			index(strings, commit.authorName);
+			index(strings, commit.authorEmail);
+			index(strings, commit.committerName);
+			index(strings, commit.committerEmail);
+			if (commit.scopes != null)
+				for (String scope : commit.scopes)
+					index(strings, scope);
+		}
+
+		DataFile.write(file, "stats cache", new DataFile.Contents() {
+
+			public void write(DataOutputStream output) throws IOException {
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				output.writeUTF(fingerprint);
+				output.writeInt(strings.size());
+				for (String value : strings.keySet())
+					output.writeUTF(value);
+
+				output.writeInt(count());
+				for (CommitStats commit : rows()) {
+					commit.copyRawTo(output);
+					output.writeInt(commit.linesAdded);
+					output.writeInt(commit.linesEdited);
+					output.writeInt(commit.linesDeleted);
+					output.writeInt(commit.filesAdded);
+					output.writeInt(commit.filesEdited);
+					output.writeInt(commit.filesDeleted);
+					output.writeByte(Math.min(commit.parents, 255));
+					output.writeByte(commit.mergeConflict ? FLAG_MERGE_CONFLICT
+							: 0);
+					output.writeInt(commit.dupes);
+					output.writeInt(index(strings, commit.authorName));
+					output.writeInt(index(strings, commit.authorEmail));
+					output.writeInt(index(strings, commit.committerName));
+					output.writeInt(index(strings, commit.committerEmail));
+					if (commit.scopes != null) {
+						output.writeInt(commit.scopes.length);
+						for (int i = 0; i < commit.scopes.length; i++) {
+							output.writeInt(index(strings,
+									commit.scopes[i]));
+							for (int j = 0; j < PathBreakdown.ROW; j++)
+								output.writeInt(commit.scopeCounts[i
+										* PathBreakdown.ROW + j]);
+						}
+					} else
+						output.writeInt(-1);
+				}
+			}
+		});
+		dirty = false;
+		return this;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.util.Date;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/**
+ * Lightweight summary of a commit captured while walking so reports can be
+ * rendered without reading commits again
+ */
+public class CommitSummary extends ObjectId {
+
+	private static final long serialVersionUID = 6129380575271645236L;
+
+	private final String authorName;
+
+	private final String authorEmail;
+
+	private final long authorTime;
+
+	private final String shortMessage;
+
+	/**
+	 * Create summary of commit
+	 * <p>
+	 * The commit must have been parsed with its body retained
+	 *
+	 * @param commit
+	 */
+	public CommitSummary(RevCommit commit) {
+		super(commit);
+		PersonIdent author = commit.getAuthorIdent();
+		if (author != null) {
+			authorName = author.getName();
+			authorEmail = author.getEmailAddress();
+			authorTime = author.getWhen().getTime();
+		} else {
+			authorName = null;
+			authorEmail = null;
+			authorTime = 0;
+		}
+		shortMessage = commit.getShortMessage();
+	}
+
+	/**
+	 * @return authorName
+	 */
+	public String getAuthorName() {
+		return authorName;
+	}
+
+	/**
+	 * @return authorEmail
+	 */
+	public String getAuthorEmail() {
+		return authorEmail;
+	}
+
+	/**
+	 * @return author date
+	 */
+	public Date getAuthorDate() {
+		return new Date(authorTime);
+	}
+
+	/**
+	 * @return shortMessage
+	 */
+	public String getShortMessage() {
+		return shortMessage;
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writer of binary files that replaces a file only once its new contents have
+ * been written completely
+ */
+class DataFile {
+
+	/**
+	 * Contents of a file
+	 */
+	interface Contents {
+
+		/**
+		 * Write contents to output
+		 *
+		 * @param output
+		 * @throws IOException
+		 */
+		void write(DataOutputStream output) throws IOException;
+	}
+
+	/**
+	 * Write contents to file
+	 * <p>
+	 * The contents are written to a unique temporary file in the same
+	 * directory that then replaces the existing file
+	 *
+	 * @param file
+	 * @param description
+	 *            description of the file used in error messages
+	 * @param contents
+	 * @throws IOException
+	 */
+	static void write(File file, String description, Contents contents)
+			throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+			throw new IOException("Unable to create directory: " + parent);
+		File temp = File.createTempFile(file.getName(), ".tmp", parent);
+		try {
+			DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				contents.write(output);
+			} finally {
+				output.close();
+			}
+			if (!temp.renameTo(file)
+					&& !(file.delete() && temp.renameTo(file)))
+				throw new IOException("Unable to write " + description + ": "
+						+ file);
+		} finally {
+			temp.delete();
+		}
+	}
+}
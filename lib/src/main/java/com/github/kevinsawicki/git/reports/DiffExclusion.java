@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+
+/**
+ * Exclusion of files from line diffs by path, blob size and binary content
+ * <p>
+ * Paths are matched against glob patterns before any blob is read and sizes
+ * are checked against the object headers before any blob is loaded. Binary
+ * blobs are never diffed by a {@link LineDiff}, large blobs are detected as
+ * binary from their first bytes without being loaded. Excluded files are still
+ * counted as added, modified or deleted files, they only contribute no line
+ * changes.
+ * <p>
+ * Instances should be configured before use and are then safe to share
+ * between the concurrent diff workers of a report and between reports.
+ */
+public class DiffExclusion {
+
+	/**
+	 * Patterns of commonly generated, minified and vendored files
+	 */
+	public static final List<String> GENERATED_PATTERNS = Collections
+			.unmodifiableList(Arrays.asList("*.min.js", "*.min.css",
+					"*.map", "package-lock.json", "yarn.lock",
+					"npm-shrinkwrap.json", "Gemfile.lock", "composer.lock",
+					"Cargo.lock", "vendor/", "node_modules/", "third_party/"));
+
+	/**
+	 * Convert glob pattern to a regular expression matching full paths
+	 * <p>
+	 * A pattern with a slash other than a trailing one is matched from the
+	 * root, other patterns match at any depth. A trailing slash only matches
+	 * directories. A single star does not match slashes while a double star
+	 * does.
+	 */
+	static String toRegex(String glob) {
+		if (glob == null)
+			throw new IllegalArgumentException("Pattern cannot be null");
+		boolean directory = glob.endsWith("/");
+		int end = glob.length();
+		while (end > 0 && glob.charAt(end - 1) == '/')
+			end--;
+		int start = 0;
+		while (start < end && glob.charAt(start) == '/')
+			start++;
+		if (start == end)
+			throw new IllegalArgumentException("Pattern cannot be empty");
+		boolean anchored = glob.lastIndexOf('/', end - 1) != -1;
+
+		StringBuilder regex = new StringBuilder();
+		if (!anchored)
+			regex.append("(?:.*/)?");
+		int literal = start;
+		for (int i = start; i < end; i++) {
+			char c = glob.charAt(i);
+			if (c != '*' && c != '?')
+				continue;
+			if (literal < i)
+				regex.append(Pattern.quote(glob.substring(literal, i)));
+			if (c == '?')
+				regex.append("[^/]");
+			else if (i + 1 < end && glob.charAt(i + 1) == '*') {
+				i++;
+				if (i + 1 < end && glob.charAt(i + 1) == '/') {
+					i++;
+					regex.append("(?:.*/)?");
+				} else
+					regex.append(".*");
+			} else
+				regex.append("[^/]*");
+			literal = i + 1;
+		}
+		if (literal < end)
+			regex.append(Pattern.quote(glob.substring(literal, end)));
+		regex.append(directory ? "/.*" : "(?:/.*)?");
+		return regex.toString();
+	}
+
+	private final List<String> patterns = new ArrayList<String>();
+
+	private Pattern matcher;
+
+	private long maxBlobSize = Long.MAX_VALUE;
+
+	private final AtomicLong pathSkips = new AtomicLong();
+
+	private final AtomicLong sizeSkips = new AtomicLong();
+
+	private final AtomicLong binarySkips = new AtomicLong();
+
+	private final AtomicLong skippedBlobs = new AtomicLong();
+
+	private final AtomicLong skippedBytes = new AtomicLong();
+
+	/**
+	 * Create exclusion that only skips binary blobs
+	 */
+	public DiffExclusion() {
+	}
+
+	/**
+	 * Create exclusion of the given path patterns
+	 *
+	 * @param patterns
+	 */
+	public DiffExclusion(String... patterns) {
+		for (String pattern : patterns)
+			addPattern(pattern);
+	}
+
+	/**
+	 * Add glob pattern of paths to exclude
+	 * <p>
+	 * Patterns without a slash, such as <code>*.min.js</code>, match file and
+	 * directory names at any depth. Patterns ending in a slash, such as
+	 * <code>vendor/</code>, only match directories and patterns with any other
+	 * slash, such as <code>lib/generated/**</code>, are matched from the root.
+	 *
+	 * @param pattern
+	 * @return this exclusion
+	 */
+	public DiffExclusion addPattern(String pattern) {
+		String regex = toRegex(pattern);
+		patterns.add(pattern);
+		matcher = Pattern.compile(matcher != null ? matcher.pattern() + '|'
+				+ regex : regex);
+		return this;
+	}
+
+	/**
+	 * Add glob patterns of paths to exclude
+	 *
+	 * @param patterns
+	 * @return this exclusion
+	 */
+	public DiffExclusion addPatterns(Collection<String> patterns) {
+		for (String pattern : patterns)
+			addPattern(pattern);
+		return this;
+	}
+
+	/**
+	 * @return patterns
+	 */
+	public List<String> getPatterns() {
+		return Collections.unmodifiableList(patterns);
+	}
+
+	/**
+	 * Set size in bytes of the largest blob that is diffed
+	 *
+	 * @param maxBlobSize
+	 * @return this exclusion
+	 */
+	public DiffExclusion setMaxBlobSize(long maxBlobSize) {
+		if (maxBlobSize < 0)
+			throw new IllegalArgumentException(
+					"Max blob size cannot be negative");
+		this.maxBlobSize = maxBlobSize;
+		return this;
+	}
+
+	/**
+	 * @return maxBlobSize
+	 */
+	public long getMaxBlobSize() {
+		return maxBlobSize;
+	}
+
+	public String toString() {
+		return "EXCLUDE(" + patterns + " " + maxBlobSize + ")";
+	}
+
+	/**
+	 * Is the path excluded by a pattern?
+	 *
+	 * @param path
+	 * @return true if excluded, false otherwise
+	 */
+	public boolean isExcluded(String path) {
+		Pattern matcher = this.matcher;
+		return matcher != null && matcher.matcher(path).matches();
+	}
+
+	/**
+	 * @return number of files skipped since their path is excluded
+	 */
+	public long getPathSkips() {
+		return pathSkips.get();
+	}
+
+	/**
+	 * @return number of files skipped since a blob exceeds the max size
+	 */
+	public long getSizeSkips() {
+		return sizeSkips.get();
+	}
+
+	/**
+	 * @return number of files skipped since a blob is binary
+	 */
+	public long getBinarySkips() {
+		return binarySkips.get();
+	}
+
+	/**
+	 * @return number of blobs of all skipped files
+	 */
+	public long getSkippedBlobs() {
+		return skippedBlobs.get();
+	}
+
+	/**
+	 * @return total size in bytes of the blobs of all skipped files
+	 */
+	public long getSkippedBytes() {
+		return skippedBytes.get();
+	}
+
+	/**
+	 * Is the file with the given old and new blob excluded by its path or the
+	 * size of a blob?
+	 *
+	 * @param reader
+	 * @param path
+	 * @param oldId
+	 * @param newId
+	 * @return true if excluded, false otherwise
+	 * @throws IOException
+	 */
+	boolean exclude(ObjectReader reader, String path, ObjectId oldId,
+			ObjectId newId) throws IOException {
+		if (isExcluded(path)) {
+			skipped(pathSkips, reader, oldId, newId);
+			return true;
+		}
+		if (maxBlobSize != Long.MAX_VALUE
+				&& (getSize(reader, oldId) > maxBlobSize || getSize(reader,
+						newId) > maxBlobSize)) {
+			skipped(sizeSkips, reader, oldId, newId);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Record file skipped since a blob is binary
+	 *
+	 * @param reader
+	 * @param oldId
+	 * @param newId
+	 * @throws IOException
+	 */
+	void excludeBinary(ObjectReader reader, ObjectId oldId, ObjectId newId)
+			throws IOException {
+		skipped(binarySkips, reader, oldId, newId);
+	}
+
+	private static long getSize(ObjectReader reader, ObjectId id)
+			throws IOException {
+		if (ObjectId.zeroId().equals(id))
+			return 0;
+		return reader.getObjectSize(id, Constants.OBJ_BLOB);
+	}
+
+	private void skipped(AtomicLong reason, ObjectReader reader,
+			ObjectId oldId, ObjectId newId) throws IOException {
+		reason.incrementAndGet();
+		long bytes = 0;
+		int blobs = 0;
+		if (!ObjectId.zeroId().equals(oldId)) {
+			bytes += getSize(reader, oldId);
+			blobs++;
+		}
+		if (!ObjectId.zeroId().equals(newId)) {
+			bytes += getSize(reader, newId);
+			blobs++;
+		}
+		skippedBlobs.addAndGet(blobs);
+		skippedBytes.addAndGet(bytes);
+	}
+}
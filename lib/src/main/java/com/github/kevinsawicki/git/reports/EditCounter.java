@@ -0,0 +1,581 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+/**
+ * Counter of the lines inserted, replaced and deleted between two sequences of
+ * line ids
+ * <p>
+ * The sequences are compared with histogram or Myers diff the same way
+ * {@link org.eclipse.jgit.diff.HistogramDiff} and
+ * {@link org.eclipse.jgit.diff.MyersDiff} compare them, but each region of
+ * differing lines is only added to the totals so no edits are created. Line
+ * ids are dense so the histogram of a region is kept in arrays indexed by id
+ * instead of a hash table.
+ */
+class EditCounter {
+
+	/**
+	 * Maximum number of occurrences of a line that histogram diff anchors on
+	 * before falling back to Myers diff
+	 */
+	private static final int MAX_CHAIN_LENGTH = 64;
+
+	private static int[] grow(int[] array, int length) {
+		if (array.length >= length)
+			return array;
+		int[] grown = new int[Math.max(length, array.length * 2)];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	private final int[] a;
+
+	private final int aSize;
+
+	private final int[] b;
+
+	private final int bSize;
+
+	private final int ids;
+
+	/**
+	 * Lines only in the new sequence
+	 */
+	int added;
+
+	/**
+	 * Lines of the old sequence replaced by other lines
+	 */
+	int replacedA;
+
+	/**
+	 * Lines of the new sequence replacing other lines
+	 */
+	int replacedB;
+
+	/**
+	 * Lines only in the old sequence
+	 */
+	int deleted;
+
+	private int[] counts;
+
+	private int[] firsts;
+
+	private int[] next;
+
+	private int cnt;
+
+	private boolean hasCommon;
+
+	private int lcsBeginA;
+
+	private int lcsEndA;
+
+	private int lcsBeginB;
+
+	private int lcsEndB;
+
+	private final ForwardEditPaths forward = new ForwardEditPaths();
+
+	private final BackwardEditPaths backward = new BackwardEditPaths();
+
+	private int beginA;
+
+	private int endA;
+
+	private int beginB;
+
+	private int endB;
+
+	private int editBeginA;
+
+	private int editEndA;
+
+	private int editBeginB;
+
+	private int editEndB;
+
+	/**
+	 * Create counter of sequences of ids
+	 *
+	 * @param a
+	 * @param aSize
+	 * @param b
+	 * @param bSize
+	 * @param ids
+	 *            number of distinct ids in both sequences
+	 */
+	EditCounter(int[] a, int aSize, int[] b, int bSize, int ids) {
+		this.a = a;
+		this.aSize = aSize;
+		this.b = b;
+		this.bSize = bSize;
+		this.ids = ids;
+	}
+
+	/**
+	 * Add region of differing lines to the totals
+	 */
+	private void edit(int lengthA, int lengthB) {
+		if (lengthA > 0 && lengthB > 0) {
+			replacedA += lengthA;
+			replacedB += lengthB;
+		} else if (lengthA > 0)
+			deleted += lengthA;
+		else if (lengthB > 0)
+			added += lengthB;
+	}
+
+	/**
+	 * Count edits with histogram diff
+	 *
+	 * @return this counter
+	 */
+	EditCounter histogram() {
+		int aStart = 0;
+		int bStart = 0;
+		while (aStart < aSize && bStart < bSize && a[aStart] == b[bStart]) {
+			aStart++;
+			bStart++;
+		}
+		int aEnd = aSize;
+		int bEnd = bSize;
+		while (aEnd > aStart && bEnd > bStart && a[aEnd - 1] == b[bEnd - 1]) {
+			aEnd--;
+			bEnd--;
+		}
+
+		counts = new int[ids];
+		firsts = new int[ids];
+		next = new int[aSize];
+		int[] regions = new int[64];
+		int top = 0;
+		regions[top++] = aStart;
+		regions[top++] = aEnd;
+		regions[top++] = bStart;
+		regions[top++] = bEnd;
+		while (top > 0) {
+			int bE = regions[--top];
+			int bS = regions[--top];
+			int aE = regions[--top];
+			int aS = regions[--top];
+			if (aS == aE || bS == bE)
+				edit(aE - aS, bE - bS);
+			else if (!findLongestCommon(aS, aE, bS, bE))
+				myers(aS, aE, bS, bE);
+			else if (lcsBeginA == lcsEndA)
+				edit(aE - aS, bE - bS);
+			else {
+				regions = grow(regions, top + 8);
+				regions[top++] = lcsEndA;
+				regions[top++] = aE;
+				regions[top++] = lcsEndB;
+				regions[top++] = bE;
+				regions[top++] = aS;
+				regions[top++] = lcsBeginA;
+				regions[top++] = bS;
+				regions[top++] = lcsBeginB;
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Find longest common sequence of a region whose lines occur the least
+	 * often in the old sequence
+	 *
+	 * @return false if all common lines occur too often, true otherwise with
+	 *         an empty sequence if there are no common lines
+	 */
+	private boolean findLongestCommon(int aS, int aE, int bS, int bE) {
+		for (int i = aE - 1; i >= aS; i--) {
+			int id = a[i];
+			next[i] = counts[id] > 0 ? firsts[id] : -1;
+			firsts[id] = i;
+			counts[id]++;
+		}
+		cnt = MAX_CHAIN_LENGTH + 1;
+		hasCommon = false;
+		lcsBeginA = lcsEndA = aS;
+		lcsBeginB = lcsEndB = bS;
+		for (int i = bS; i < bE;)
+			i = tryLongestCommon(i, aS, aE, bS, bE);
+		for (int i = aS; i < aE; i++)
+			counts[a[i]] = 0;
+		return !hasCommon || cnt <= MAX_CHAIN_LENGTH;
+	}
+
+	private int tryLongestCommon(int bPtr, int aS, int aE, int bS, int bE) {
+		int bNext = bPtr + 1;
+		int id = b[bPtr];
+		if (counts[id] == 0)
+			return bNext;
+		hasCommon = true;
+		if (counts[id] > cnt)
+			return bNext;
+		int as = firsts[id];
+		for (;;) {
+			int np = next[as];
+			int bs = bPtr;
+			int ae = as + 1;
+			int be = bs + 1;
+			int rc = counts[id];
+			while (aS < as && bS < bs && a[as - 1] == b[bs - 1]) {
+				as--;
+				bs--;
+				if (1 < rc)
+					rc = Math.min(rc, counts[a[as]]);
+			}
+			while (ae < aE && be < bE && a[ae] == b[be]) {
+				if (1 < rc)
+					rc = Math.min(rc, counts[a[ae]]);
+				ae++;
+				be++;
+			}
+			if (bNext < be)
+				bNext = be;
+			if (lcsEndA - lcsBeginA < ae - as || rc < cnt) {
+				lcsBeginA = as;
+				lcsEndA = ae;
+				lcsBeginB = bs;
+				lcsEndB = be;
+				cnt = rc;
+			}
+			while (np != -1 && np < ae)
+				np = next[np];
+			if (np == -1)
+				return bNext;
+			as = np;
+		}
+	}
+
+	/**
+	 * Count edits with Myers diff
+	 *
+	 * @return this counter
+	 */
+	EditCounter myers() {
+		myers(0, aSize, 0, bSize);
+		return this;
+	}
+
+	private void myers(int aS, int aE, int bS, int bE) {
+		beginA = aS;
+		endA = aE;
+		beginB = bS;
+		endB = bE;
+		int k = bS - aS;
+		beginA = forward.snake(k, aS);
+		beginB = k + beginA;
+		k = bE - aE;
+		endA = backward.snake(k, aE);
+		endB = k + endA;
+		if (beginA < endA || beginB < endB)
+			myersEdits(beginA, endA, beginB, endB);
+	}
+
+	private void myersEdits(int aS, int aE, int bS, int bE) {
+		middleEdit(aS, aE, bS, bE);
+		int editA = editBeginA;
+		int editEndA = this.editEndA;
+		int editB = editBeginB;
+		int editEndB = this.editEndB;
+		if (aS < editA || bS < editB) {
+			int k = editB - editA;
+			int x = backward.snake(k, editA);
+			myersEdits(aS, x, bS, k + x);
+		}
+		edit(editEndA - editA, editEndB - editB);
+		if (aE > editEndA || bE > editEndB) {
+			int k = editEndB - editEndA;
+			int x = forward.snake(k, editEndA);
+			myersEdits(x, aE, k + x, bE);
+		}
+	}
+
+	/**
+	 * Find the edit in the middle of the shortest edit script of a region
+	 */
+	private void middleEdit(int aS, int aE, int bS, int bE) {
+		if (aS == aE || bS == bE) {
+			setEdit(aS, aE, bS, bE);
+			return;
+		}
+		beginA = aS;
+		endA = aE;
+		beginB = bS;
+		endB = bE;
+		int minK = bS - aE;
+		int maxK = bE - aS;
+		forward.initialize(bS - aS, aS, minK, maxK);
+		backward.initialize(bE - aE, aE, minK, maxK);
+		for (int d = 1;; d++)
+			if (forward.calculate(d) || backward.calculate(d))
+				return;
+	}
+
+	private void setEdit(int aS, int aE, int bS, int bE) {
+		editBeginA = aS;
+		editEndA = aE;
+		editBeginB = bS;
+		editEndB = bE;
+	}
+
+	private static long newSnake(int k, int x) {
+		return ((long) x) << 32 | (k + x);
+	}
+
+	private static int snakeX(long snake) {
+		return (int) (snake >>> 32);
+	}
+
+	private static int snakeY(long snake) {
+		return (int) snake;
+	}
+
+	/**
+	 * Set middle edit between the end of a forward and a backward snake
+	 */
+	private void makeEdit(long snake1, long snake2) {
+		int x1 = snakeX(snake1);
+		int x2 = snakeX(snake2);
+		int y1 = snakeY(snake1);
+		int y2 = snakeY(snake2);
+		if (x1 > x2 || y1 > y2) {
+			x1 = x2;
+			y1 = y2;
+		}
+		setEdit(x1, x2, y1, y2);
+	}
+
+	/**
+	 * Furthest reaching edit paths of each diagonal in one direction
+	 */
+	private abstract class EditPaths {
+
+		private int[] xs = new int[16];
+
+		private long[] snakes = new long[16];
+
+		private int count;
+
+		int beginK;
+
+		int endK;
+
+		int middleK;
+
+		int prevBeginK;
+
+		int prevEndK;
+
+		int minK;
+
+		int maxK;
+
+		final int getIndex(int d, int k) {
+			return (d + k - middleK) / 2;
+		}
+
+		final int getX(int d, int k) {
+			return xs[getIndex(d, k)];
+		}
+
+		final long getSnake(int d, int k) {
+			return snakes[getIndex(d, k)];
+		}
+
+		private void set(int index, int x, long snake) {
+			if (index == count) {
+				xs = grow(xs, count + 1);
+				if (snakes.length <= count) {
+					long[] grown = new long[xs.length];
+					System.arraycopy(snakes, 0, grown, 0, count);
+					snakes = grown;
+				}
+				count++;
+			}
+			xs[index] = x;
+			snakes[index] = snake;
+		}
+
+		private int forceKIntoRange(int k) {
+			if (k < minK)
+				return minK + ((k ^ minK) & 1);
+			else if (k > maxK)
+				return maxK - ((k ^ maxK) & 1);
+			return k;
+		}
+
+		void initialize(int k, int x, int minK, int maxK) {
+			this.minK = minK;
+			this.maxK = maxK;
+			beginK = endK = middleK = k;
+			count = 0;
+			set(0, x, newSnake(k, x));
+		}
+
+		abstract int snake(int k, int x);
+
+		abstract int getLeft(int x);
+
+		abstract int getRight(int x);
+
+		abstract boolean isBetter(int left, int right);
+
+		abstract void adjustMinMaxK(int k, int x);
+
+		abstract boolean meets(int d, int k, int x, long snake);
+
+		boolean calculate(int d) {
+			prevBeginK = beginK;
+			prevEndK = endK;
+			beginK = forceKIntoRange(middleK - d);
+			endK = forceKIntoRange(middleK + d);
+			for (int k = endK; k >= beginK; k -= 2) {
+				int left = -1;
+				int right = -1;
+				long leftSnake = -1L;
+				long rightSnake = -1L;
+				if (k > prevBeginK) {
+					int i = getIndex(d - 1, k - 1);
+					left = xs[i];
+					int end = snake(k - 1, left);
+					leftSnake = left != end ? newSnake(k - 1, end) : snakes[i];
+					if (meets(d, k - 1, end, leftSnake))
+						return true;
+					left = getLeft(end);
+				}
+				if (k < prevEndK) {
+					int i = getIndex(d - 1, k + 1);
+					right = xs[i];
+					int end = snake(k + 1, right);
+					rightSnake = right != end ? newSnake(k + 1, end)
+							: snakes[i];
+					if (meets(d, k + 1, end, rightSnake))
+						return true;
+					right = getRight(end);
+				}
+				int newX;
+				long newSnake;
+				if (k >= prevEndK || (k > prevBeginK && isBetter(left, right))) {
+					newX = left;
+					newSnake = leftSnake;
+				} else {
+					newX = right;
+					newSnake = rightSnake;
+				}
+				if (meets(d, k, newX, newSnake))
+					return true;
+				adjustMinMaxK(k, newX);
+				set(getIndex(d, k), newX, newSnake);
+			}
+			return false;
+		}
+	}
+
+	private class ForwardEditPaths extends EditPaths {
+
+		int snake(int k, int x) {
+			for (; x < endA && k + x < endB; x++)
+				if (a[x] != b[k + x])
+					break;
+			return x;
+		}
+
+		int getLeft(int x) {
+			return x;
+		}
+
+		int getRight(int x) {
+			return x + 1;
+		}
+
+		boolean isBetter(int left, int right) {
+			return left > right;
+		}
+
+		void adjustMinMaxK(int k, int x) {
+			if (x >= endA || k + x >= endB) {
+				if (k > backward.middleK)
+					maxK = k;
+				else
+					minK = k;
+			}
+		}
+
+		boolean meets(int d, int k, int x, long snake) {
+			if (k < backward.beginK || k > backward.endK)
+				return false;
+			if (((d - 1 + k - backward.middleK) % 2) != 0)
+				return false;
+			if (x < backward.getX(d - 1, k))
+				return false;
+			makeEdit(snake, backward.getSnake(d - 1, k));
+			return true;
+		}
+	}
+
+	private class BackwardEditPaths extends EditPaths {
+
+		int snake(int k, int x) {
+			for (; x > beginA && k + x > beginB; x--)
+				if (a[x - 1] != b[k + x - 1])
+					break;
+			return x;
+		}
+
+		int getLeft(int x) {
+			return x - 1;
+		}
+
+		int getRight(int x) {
+			return x;
+		}
+
+		boolean isBetter(int left, int right) {
+			return left < right;
+		}
+
+		void adjustMinMaxK(int k, int x) {
+			if (x <= beginA || k + x <= beginB) {
+				if (k > forward.middleK)
+					maxK = k;
+				else
+					minK = k;
+			}
+		}
+
+		boolean meets(int d, int k, int x, long snake) {
+			if (k < forward.beginK || k > forward.endK)
+				return false;
+			if (((d + k - forward.middleK) % 2) != 0)
+				return false;
+			if (x > forward.getX(d, k))
+				return false;
+			makeEdit(forward.getSnake(d, k), snake);
+			return true;
+		}
+	}
+}
@@ -0,0 +1,456 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Commit, line, file and active author counts of a history bucketed by week
+ * or month
+ * <p>
+ * Counts are stored in primitive arrays indexed by bucket so the cost of
+ * collecting them does not depend on how many commits fall into a bucket.
+ * Weeks start on Monday and both weeks and months are computed in UTC from
+ * the author date of each commit. Active authors are counted by email
+ * address.
+ */
+public class HistoryBuckets {
+
+	/**
+	 * Bucket commits by week
+	 */
+	public static final int WEEK = 0;
+
+	/**
+	 * Bucket commits by month
+	 */
+	public static final int MONTH = 1;
+
+	static final int COMMITS = 0;
+
+	static final int AUTHORS = 1;
+
+	static final int LINES_ADDED = 2;
+
+	static final int LINES_EDITED = 3;
+
+	static final int LINES_DELETED = 4;
+
+	static final int FILES_ADDED = 5;
+
+	static final int FILES_EDITED = 6;
+
+	static final int FILES_DELETED = 7;
+
+	private static final int COLUMNS = 8;
+
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+
+	/**
+	 * Day number of the first Monday after the epoch
+	 */
+	private static final int MONDAY = 4;
+
+	private static long floorDiv(long value, long divisor) {
+		long quotient = value / divisor;
+		if ((value % divisor) < 0)
+			quotient--;
+		return quotient;
+	}
+
+	/**
+	 * Get bucket of time
+	 *
+	 * @param unit
+	 * @param time
+	 *            milliseconds since the epoch
+	 * @return bucket number
+	 */
+	public static int getBucket(int unit, long time) {
+		long day = floorDiv(time, DAY);
+		if (unit == WEEK)
+			return (int) floorDiv(day - MONDAY, 7);
+
+		// Convert days since the epoch to a civil year and month
+		day += 719468;
+		long era = floorDiv(day, 146097);
+		long dayOfEra = day - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra
+				/ 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long monthPrime = (5 * dayOfYear + 2) / 153;
+		long month = monthPrime < 10 ? monthPrime + 3 : monthPrime - 9;
+		long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		return (int) (year * 12 + month - 1);
+	}
+
+	/**
+	 * Get start time of bucket
+	 *
+	 * @param unit
+	 * @param bucket
+	 * @return milliseconds since the epoch
+	 */
+	public static long getStart(int unit, int bucket) {
+		if (unit == WEEK)
+			return ((long) bucket * 7 + MONDAY) * DAY;
+
+		long year = floorDiv(bucket, 12);
+		long month = bucket - year * 12 + 1;
+		if (month <= 2)
+			year--;
+		long era = floorDiv(year, 400);
+		long yearOfEra = year - era * 400;
+		long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100
+				+ dayOfYear;
+		return (era * 146097 + dayOfEra - 719468) * DAY;
+	}
+
+	private final int unit;
+
+	private int base;
+
+	private int first;
+
+	private int last;
+
+	private int length;
+
+	private int[][] columns = new int[COLUMNS][];
+
+	private final Map<String, Integer> authorIds = new HashMap<String, Integer>();
+
+	private final List<String> authors = new ArrayList<String>();
+
+	private long[] activeAuthors = new long[64];
+
+	private int activeAuthorCount;
+
+	/**
+	 * Create buckets
+	 *
+	 * @param unit
+	 *            {@link #WEEK} or {@link #MONTH}
+	 */
+	public HistoryBuckets(int unit) {
+		if (unit != WEEK && unit != MONTH)
+			throw new IllegalArgumentException("Invalid unit: " + unit);
+		this.unit = unit;
+		for (int i = 0; i < COLUMNS; i++)
+			columns[i] = new int[0];
+	}
+
+	/**
+	 * @return unit
+	 */
+	public int getUnit() {
+		return unit;
+	}
+
+	/**
+	 * Get index of bucket in the columns, growing them if needed
+	 * <p>
+	 * Columns are grown with room on the side the new bucket was added since
+	 * walks usually visit buckets in descending or ascending order.
+	 */
+	private int index(int bucket) {
+		if (length == 0) {
+			base = bucket - 7;
+			first = bucket;
+			last = bucket;
+			length = 1;
+			if (columns[0].length < 16)
+				for (int i = 0; i < COLUMNS; i++)
+					columns[i] = new int[16];
+			return bucket - base;
+		}
+		if (bucket < base || bucket - base >= columns[0].length) {
+			int newFirst = Math.min(first, bucket);
+			int newLast = Math.max(last, bucket);
+			int capacity = Math.max(16, (newLast - newFirst + 1) * 2);
+			int newBase = bucket < first ? newLast + 1 - capacity : newFirst;
+			for (int i = 0; i < COLUMNS; i++) {
+				int[] grown = new int[capacity];
+				System.arraycopy(columns[i], first - base, grown, first
+						- newBase, length);
+				columns[i] = grown;
+			}
+			base = newBase;
+		}
+		if (bucket < first)
+			first = bucket;
+		else if (bucket > last)
+			last = bucket;
+		length = last - first + 1;
+		return bucket - base;
+	}
+
+	/**
+	 * Include commit in bucket of time
+	 *
+	 * @param time
+	 * @param authorEmail
+	 * @return this buckets
+	 */
+	public HistoryBuckets includeCommit(long time, String authorEmail) {
+		int bucket = getBucket(unit, time);
+		int index = index(bucket);
+		columns[COMMITS][index]++;
+		if (authorEmail != null && addActiveAuthor(getAuthorId(authorEmail),
+				bucket))
+			columns[AUTHORS][index]++;
+		return this;
+	}
+
+	/**
+	 * Include line and file counts in bucket of time
+	 *
+	 * @param time
+	 * @param stats
+	 * @return this buckets
+	 */
+	public HistoryBuckets includeStats(long time, CommitStats stats) {
+		int index = index(getBucket(unit, time));
+		columns[LINES_ADDED][index] += stats.linesAdded;
+		columns[LINES_EDITED][index] += stats.linesEdited;
+		columns[LINES_DELETED][index] += stats.linesDeleted;
+		columns[FILES_ADDED][index] += stats.filesAdded;
+		columns[FILES_EDITED][index] += stats.filesEdited;
+		columns[FILES_DELETED][index] += stats.filesDeleted;
+		return this;
+	}
+
+	/**
+	 * Add all counts of the given buckets to these buckets
+	 * <p>
+	 * Authors active in a bucket of both are only counted once.
+	 *
+	 * @param buckets
+	 * @return this buckets
+	 */
+	public HistoryBuckets include(HistoryBuckets buckets) {
+		if (buckets.unit != unit)
+			throw new IllegalArgumentException("Buckets must have same unit");
+		for (int i = 0; i < buckets.length; i++) {
+			int index = index(buckets.first + i);
+			int source = buckets.first - buckets.base + i;
+			for (int column = 0; column < COLUMNS; column++)
+				if (column != AUTHORS)
+					columns[column][index] += buckets.columns[column][source];
+		}
+		for (long entry : buckets.activeAuthors)
+			if (entry != 0) {
+				int bucket = (int) (entry - 1);
+				int author = getAuthorId(buckets.authors
+						.get((int) ((entry - 1) >>> 32)));
+				if (addActiveAuthor(author, bucket)) {
+					int index = index(bucket);
+					columns[AUTHORS][index]++;
+				}
+			}
+		return this;
+	}
+
+	private int getAuthorId(String email) {
+		Integer id = authorIds.get(email);
+		if (id == null) {
+			id = Integer.valueOf(authors.size());
+			authorIds.put(email, id);
+			authors.add(email);
+		}
+		return id.intValue();
+	}
+
+	/**
+	 * Add author to set of authors active in bucket
+	 *
+	 * @return true if added, false if already active
+	 */
+	private boolean addActiveAuthor(int author, int bucket) {
+		long key = ((long) author << 32) | (bucket & 0xFFFFFFFFL);
+		long entry = key + 1;
+		int mask = activeAuthors.length - 1;
+		int slot = (int) ((entry * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+		while (activeAuthors[slot] != 0) {
+			if (activeAuthors[slot] == entry)
+				return false;
+			slot = (slot + 1) & mask;
+		}
+		activeAuthors[slot] = entry;
+		if (++activeAuthorCount * 2 > activeAuthors.length) {
+			long[] old = activeAuthors;
+			activeAuthors = new long[old.length * 2];
+			activeAuthorCount = 0;
+			for (long value : old)
+				if (value != 0)
+					addActiveAuthor((int) ((value - 1) >>> 32),
+							(int) (value - 1));
+		}
+		return true;
+	}
+
+	void write(DataOutputStream output) throws IOException {
+		output.writeInt(first);
+		output.writeInt(length);
+		for (int column = 0; column < COLUMNS; column++)
+			for (int i = 0; i < length; i++)
+				output.writeInt(columns[column][first - base + i]);
+		output.writeInt(authors.size());
+		for (String author : authors)
+			output.writeUTF(author);
+		output.writeInt(activeAuthorCount);
+		for (long entry : activeAuthors)
+			if (entry != 0)
+				output.writeLong(entry - 1);
+	}
+
+	HistoryBuckets read(DataInputStream input) throws IOException {
+		clear();
+		int start = input.readInt();
+		int count = input.readInt();
+		for (int column = 0; column < COLUMNS; column++)
+			for (int i = 0; i < count; i++) {
+				int value = input.readInt();
+				if (column == 0 || value != 0) {
+					int index = index(start + i);
+					columns[column][index] = value;
+				}
+			}
+		int authorCount = input.readInt();
+		for (int i = 0; i < authorCount; i++)
+			getAuthorId(input.readUTF());
+		int pairs = input.readInt();
+		for (int i = 0; i < pairs; i++) {
+			long key = input.readLong();
+			addActiveAuthor((int) (key >>> 32), (int) key);
+		}
+		return this;
+	}
+
+	/**
+	 * Clear all buckets
+	 *
+	 * @return this buckets
+	 */
+	public HistoryBuckets clear() {
+		base = 0;
+		first = 0;
+		last = 0;
+		length = 0;
+		for (int i = 0; i < COLUMNS; i++)
+			columns[i] = new int[0];
+		authorIds.clear();
+		authors.clear();
+		activeAuthors = new long[64];
+		activeAuthorCount = 0;
+		return this;
+	}
+
+	/**
+	 * @return number of buckets from the first to the last bucket with commits
+	 */
+	public int getSize() {
+		return length;
+	}
+
+	/**
+	 * Get start date of bucket at index
+	 *
+	 * @param index
+	 * @return date
+	 */
+	public Date getDate(int index) {
+		return new Date(getStart(unit, first + index));
+	}
+
+	/**
+	 * @param index
+	 * @return number of commits in bucket at index
+	 */
+	public int getCommits(int index) {
+		return columns[COMMITS][first - base + index];
+	}
+
+	/**
+	 * @param index
+	 * @return number of distinct authors in bucket at index
+	 */
+	public int getAuthors(int index) {
+		return columns[AUTHORS][first - base + index];
+	}
+
+	/**
+	 * @param index
+	 * @return lines added in bucket at index
+	 */
+	public int getLinesAdded(int index) {
+		return columns[LINES_ADDED][first - base + index];
+	}
+
+	/**
+	 * @param index
+	 * @return lines edited in bucket at index
+	 */
+	public int getLinesEdited(int index) {
+		return columns[LINES_EDITED][first - base + index];
+	}
+
+	/**
+	 * @param index
+	 * @return lines deleted in bucket at index
+	 */
+	public int getLinesDeleted(int index) {
+		return columns[LINES_DELETED][first - base + index];
+	}
+
+	/**
+	 * @param index
+	 * @return files added in bucket at index
+	 */
+	public int getFilesAdded(int index) {
+		return columns[FILES_ADDED][first - base + index];
+	}
+
+	/**
+	 * @param index
+	 * @return files edited in bucket at index
+	 */
+	public int getFilesEdited(int index) {
+		return columns[FILES_EDITED][first - base + index];
+	}
+
+	/**
+	 * @param index
+	 * @return files deleted in bucket at index
+	 */
+	public int getFilesDeleted(int index) {
+		return columns[FILES_DELETED][first - base + index];
+	}
+}
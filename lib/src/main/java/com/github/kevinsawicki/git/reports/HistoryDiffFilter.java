@@ -0,0 +1,672 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.gitective.core.filter.commit.AllCommitFilter;
+import org.gitective.core.filter.commit.AllDiffFilter;
+import org.gitective.core.filter.commit.AndCommitFilter;
+import org.gitective.core.filter.commit.CommitFilter;
+import org.gitective.core.filter.commit.CommitImpact;
+import org.gitective.core.filter.commit.CommitListFilter;
+import org.gitective.core.filter.commit.DiffFileCountFilter;
+import org.gitective.core.filter.commit.DiffFileSizeFilter;
+import org.gitective.core.filter.commit.DiffLineCountFilter;
+import org.gitective.core.filter.commit.DuplicateBlobFilter;
+import org.gitective.core.filter.commit.DuplicateContainer;
+import org.gitective.core.filter.commit.ParentCountFilter;
+
+import com.github.kevinsawicki.git.reports.TotalHistoryReport.LineStats;
+
+/**
+ * Filter that computes all the tree and blob diff based statistics of a
+ * {@link TotalHistoryReport}
+ * <p>
+ * Each visited commit is reduced to a {@link CommitStats} that is then
+ * combined into the totals of this filter. Only the commits with the most
+ * changes are retained, the impact of all other commits is only tracked as
+ * part of the per-author totals. Commits already present in the configured
+ * {@link CommitStatsCache} are not diffed again. When a {@link PathBreakdown}
+ * is configured the paths of the same diffs are also counted in its scopes.
+ * <p>
+ * Each instance holds its own state so separate instances can be run against
+ * separate ranges of commits and then combined in walk order.
+ */
+public class HistoryDiffFilter extends CommitFilter {
+
+	/**
+	 * Number of commits retained with the most line and file changes
+	 */
+	public static final int IMPACT_LIMIT = 100;
+
+	private final DiffLineCountFilter diffLineCountFilter;
+
+	private final DiffFileCountFilter diffFileCountFilter;
+
+	private final CommitListFilter mergeConflictFilter = new CommitListFilter();
+
+	private final DuplicateBlobFilter dupesFilter;
+
+	private final AllCommitFilter diffs = new AllCommitFilter();
+
+	private final CommitStatsCache cache;
+
+	private final PathBreakdown breakdown;
+
+	private final ImpactHeap lineImpacts = new ImpactHeap(IMPACT_LIMIT);
+
+	private final ImpactHeap fileImpacts = new ImpactHeap(IMPACT_LIMIT);
+
+	private final Map<String, LineStats> authorLineImpacts = new HashMap<String, LineStats>();
+
+	private final Map<String, LineStats> authorFileImpacts = new HashMap<String, LineStats>();
+
+	private final List<RevCommit> mergeConflicts = new ArrayList<RevCommit>();
+
+	private final Map<RevCommit, Integer> duplicates = new LinkedHashMap<RevCommit, Integer>();
+
+	private final ObjectIdSubclassMap<CommitSummary> summaries = new ObjectIdSubclassMap<CommitSummary>();
+
+	private final HistoryBuckets weeks = new HistoryBuckets(
+			HistoryBuckets.WEEK);
+
+	private final HistoryBuckets months = new HistoryBuckets(
+			HistoryBuckets.MONTH);
+
+	private TotalHistoryListener listener;
+
+	private DiffExclusion exclusion;
+
+	private LineDiff lineDiff;
+
+	private ReportMetrics metrics;
+
+	private boolean retainCommits = true;
+
+	private int mergeConflictCount;
+
+	private int duplicateCount;
+
+	private long linesAdded;
+
+	private long linesEdited;
+
+	private long linesDeleted;
+
+	private long added;
+
+	private long modified;
+
+	private long deleted;
+
+	/**
+	 * Create history diff filter
+	 */
+	public HistoryDiffFilter() {
+		this(null);
+	}
+
+	/**
+	 * Create history diff filter that reads and populates given cache
+	 *
+	 * @param cache
+	 *            may be null
+	 */
+	public HistoryDiffFilter(CommitStatsCache cache) {
+		this(cache, null);
+	}
+
+	/**
+	 * Create history diff filter that only diffs paths matching the path
+	 * filter
+	 * <p>
+	 * The cache must only hold stats computed with the same path filter.
+	 *
+	 * @param cache
+	 *            may be null
+	 * @param pathFilter
+	 *            may be null to diff all paths
+	 */
+	public HistoryDiffFilter(CommitStatsCache cache, TreeFilter pathFilter) {
+		this(cache, pathFilter, null);
+	}
+
+	/**
+	 * Create history diff filter that only diffs paths matching the path
+	 * filter and breaks down the diffs of each commit by path
+	 * <p>
+	 * The cache must only hold stats computed with the same path filter and
+	 * breakdown configuration.
+	 *
+	 * @param cache
+	 *            may be null
+	 * @param pathFilter
+	 *            may be null to diff all paths
+	 * @param breakdown
+	 *            breakdown whose configuration is copied, may be null
+	 */
+	public HistoryDiffFilter(CommitStatsCache cache, TreeFilter pathFilter,
+			PathBreakdown breakdown) {
+		this(cache, pathFilter, breakdown, null);
+	}
+
+	/**
+	 * Create history diff filter that only diffs paths matching the path
+	 * filter, breaks down the diffs of each commit by path and detects renames
+	 * with the given detection
+	 * <p>
+	 * The cache must only hold stats computed with the same path filter,
+	 * breakdown configuration and rename detection.
+	 *
+	 * @param cache
+	 *            may be null
+	 * @param pathFilter
+	 *            may be null to diff all paths
+	 * @param breakdown
+	 *            breakdown whose configuration is copied, may be null
+	 * @param renames
+	 *            may be null to use the default rename detection of the diffs
+	 */
+	public HistoryDiffFilter(CommitStatsCache cache,
+			final TreeFilter pathFilter, PathBreakdown breakdown,
+			final RenameDetection renames) {
+		this.cache = cache;
+		this.breakdown = breakdown != null ? breakdown.copy() : null;
+		diffLineCountFilter = new DiffLineCountFilter() {
+
+			public boolean include(RevWalk walker, RevCommit commit,
+					Collection<DiffEntry> diffs) {
+				DiffExclusion exclusion = HistoryDiffFilter.this.exclusion;
+				LineDiff lineDiff = HistoryDiffFilter.this.lineDiff;
+				ReportMetrics metrics = HistoryDiffFilter.this.metrics;
+				if (exclusion == null && lineDiff == null && metrics == null)
+					return super.include(walker, commit, diffs);
+				if (lineDiff == null)
+					lineDiff = LineDiff.DEFAULT;
+				return lineDiff.diff(walker, commit, diffs, exclusion,
+						metrics, repository, new LineDiff.FileEdits() {
+
+							public void start(RevCommit commit) {
+								markStart(commit);
+							}
+
+							public boolean file(RevCommit commit,
+									DiffEntry diff, Collection<Edit> edits) {
+								return include(commit, diff, edits);
+							}
+
+							public void end(RevCommit commit) {
+								markEnd(commit);
+							}
+						}) || include(false);
+			}
+
+			protected boolean include(RevCommit commit, DiffEntry diff,
+					Collection<Edit> edits) {
+				if (HistoryDiffFilter.this.breakdown != null)
+					includeLines(diff, edits);
+				return super.include(commit, diff, edits);
+			}
+		};
+		if (this.breakdown != null)
+			diffFileCountFilter = new DiffFileCountFilter() {
+
+				public boolean include(RevCommit commit,
+						Collection<DiffEntry> diffs) {
+					for (DiffEntry diff : diffs)
+						HistoryDiffFilter.this.breakdown.addFile(diff);
+					return super.include(commit, diffs);
+				}
+			};
+		else
+			diffFileCountFilter = new DiffFileCountFilter();
+		dupesFilter = new DuplicateBlobFilter() {
+
+			protected TreeWalk createTreeWalk(RevWalk walker, RevCommit commit) {
+				return PathScopeFilter.apply(
+						super.createTreeWalk(walker, commit), pathFilter);
+			}
+		};
+		diffs.add(dupesFilter);
+		diffs.add(new AllDiffFilter(renames == null, diffFileCountFilter,
+				diffLineCountFilter) {
+
+			protected TreeWalk createTreeWalk(RevWalk walker, RevCommit commit) {
+				return PathScopeFilter.apply(
+						super.createTreeWalk(walker, commit), pathFilter);
+			}
+
+			public boolean include(RevWalk walker, RevCommit commit,
+					Collection<DiffEntry> diffs) throws IOException {
+				if (renames != null)
+					diffs = renames.compute(walker.getObjectReader(), diffs);
+				return super.include(walker, commit, diffs);
+			}
+		});
+		diffs.add(new AndCommitFilter(new ParentCountFilter(2),
+				new DiffFileSizeFilter(true, 1) {
+
+					protected TreeWalk createTreeWalk(RevWalk walker,
+							RevCommit commit) {
+						return PathScopeFilter.apply(
+								super.createTreeWalk(walker, commit),
+								pathFilter);
+					}
+				}, mergeConflictFilter));
+	}
+
+	/**
+	 * Set listener to notify of merge conflicts and duplicate blobs as they
+	 * are found
+	 *
+	 * @param listener
+	 *            may be null
+	 * @return this filter
+	 */
+	public HistoryDiffFilter setListener(TotalHistoryListener listener) {
+		this.listener = listener;
+		return this;
+	}
+
+	/**
+	 * Set exclusion of files from the line diffs
+	 * <p>
+	 * Excluded files are still counted as changed files. The cache must only
+	 * hold stats computed with the same exclusion settings.
+	 *
+	 * @param exclusion
+	 *            may be null to diff all files
+	 * @return this filter
+	 */
+	public HistoryDiffFilter setExclusion(DiffExclusion exclusion) {
+		this.exclusion = exclusion;
+		return this;
+	}
+
+	/**
+	 * Set line diff of changed files
+	 * <p>
+	 * The cache must only hold stats computed with the same line diff.
+	 *
+	 * @param lineDiff
+	 *            may be null to use the default histogram diff
+	 * @return this filter
+	 */
+	public HistoryDiffFilter setLineDiff(LineDiff lineDiff) {
+		this.lineDiff = lineDiff;
+		return this;
+	}
+
+	/**
+	 * Set metrics to record the blobs read for line diffs in
+	 *
+	 * @param metrics
+	 *            may be null
+	 * @return this filter
+	 */
+	public HistoryDiffFilter setMetrics(ReportMetrics metrics) {
+		this.metrics = metrics;
+		return this;
+	}
+
+	/**
+	 * Set whether merge conflicts and commits with duplicate blobs are
+	 * retained by this filter
+	 * <p>
+	 * Commits that are not retained are only counted and passed to the
+	 * listener.
+	 *
+	 * @param retainCommits
+	 * @return this filter
+	 */
+	public HistoryDiffFilter setRetainCommits(boolean retainCommits) {
+		this.retainCommits = retainCommits;
+		return this;
+	}
+
+	public CommitFilter setRepository(Repository repository) {
+		diffs.setRepository(repository);
+		return super.setRepository(repository);
+	}
+
+	/**
+	 * Count the lines of a changed path in the breakdown
+	 */
+	private void includeLines(DiffEntry diff, Collection<Edit> edits) {
+		int add = 0;
+		int edit = 0;
+		int delete = 0;
+		for (Edit change : edits)
+			switch (change.getType()) {
+			case INSERT:
+				add += change.getLengthB();
+				break;
+			case REPLACE:
+				edit += change.getLengthB();
+				break;
+			case DELETE:
+				delete += change.getLengthA();
+				break;
+			default:
+				break;
+			}
+		breakdown.addLines(diff.getChangeType() == DiffEntry.ChangeType.DELETE
+				? diff.getOldPath() : diff.getNewPath(), add, edit, delete);
+	}
+
+	public boolean include(RevWalk walker, RevCommit commit) throws IOException {
+		CommitStats stats = cache != null ? cache.get(commit) : null;
+		if (stats == null || (breakdown != null && stats.scopes == null)) {
+			stats = diff(walker, commit);
+			if (cache != null)
+				cache.add(stats);
+		}
+		include(commit, stats);
+		return true;
+	}
+
+	/**
+	 * Compute the stats of a single commit
+	 *
+	 * @param walker
+	 * @param commit
+	 * @return stats
+	 * @throws IOException
+	 */
+	protected CommitStats diff(RevWalk walker, RevCommit commit)
+			throws IOException {
+		diffs.include(walker, commit);
+
+		CommitStats stats = new CommitStats(commit);
+		if (breakdown != null)
+			breakdown.collect(stats);
+		stats.linesAdded = (int) diffLineCountFilter.getAdded();
+		stats.linesEdited = (int) diffLineCountFilter.getEdited();
+		stats.linesDeleted = (int) diffLineCountFilter.getDeleted();
+		stats.filesAdded = (int) diffFileCountFilter.getAdded();
+		stats.filesEdited = (int) diffFileCountFilter.getEdited();
+		stats.filesDeleted = (int) diffFileCountFilter.getDeleted();
+		stats.parents = commit.getParentCount();
+		stats.mergeConflict = !mergeConflictFilter.getCommits().isEmpty();
+		DuplicateContainer dupes = dupesFilter.getDuplicates().get(commit);
+		if (dupes != null)
+			stats.dupes = dupes.getTotal();
+		PersonIdent author = commit.getAuthorIdent();
+		if (author != null) {
+			stats.authorName = author.getName();
+			stats.authorEmail = author.getEmailAddress();
+		}
+		PersonIdent committer = commit.getCommitterIdent();
+		if (committer != null) {
+			stats.committerName = committer.getName();
+			stats.committerEmail = committer.getEmailAddress();
+		}
+		diffs.reset();
+		return stats;
+	}
+
+	/**
+	 * Include stats of commit in the totals of this filter
+	 *
+	 * @param commit
+	 * @param stats
+	 * @return this filter
+	 * @throws IOException
+	 */
+	protected HistoryDiffFilter include(RevCommit commit, CommitStats stats)
+			throws IOException {
+		boolean retained = lineImpacts.add(stats.getLineImpact());
+		retained |= fileImpacts.add(stats.getFileImpact());
+		CommitSummary summary = null;
+		if (stats.mergeConflict) {
+			mergeConflictCount++;
+			summary = new CommitSummary(commit);
+			if (listener != null)
+				listener.mergeConflict(summary);
+			if (retainCommits) {
+				mergeConflicts.add(commit);
+				retained = true;
+			}
+		}
+		if (stats.dupes > 0) {
+			duplicateCount++;
+			if (summary == null)
+				summary = new CommitSummary(commit);
+			if (listener != null)
+				listener.duplicateBlobs(summary, stats.dupes);
+			if (retainCommits) {
+				duplicates.put(commit, Integer.valueOf(stats.dupes));
+				retained = true;
+			}
+		}
+		if (retained)
+			summaries.addIfAbsent(summary != null ? summary
+					: new CommitSummary(commit));
+		getStats(authorLineImpacts, stats.authorEmail).include(
+				stats.linesAdded, stats.linesEdited, stats.linesDeleted);
+		getStats(authorFileImpacts, stats.authorEmail).include(
+				stats.filesAdded, stats.filesEdited, stats.filesDeleted);
+
+		PersonIdent author = commit.getAuthorIdent();
+		long time = author != null ? author.getWhen().getTime() : commit
+				.getCommitTime() * 1000L;
+		weeks.includeStats(time, stats);
+		months.includeStats(time, stats);
+		if (breakdown != null)
+			breakdown.include(stats);
+
+		added += stats.filesAdded;
+		modified += stats.filesEdited;
+		deleted += stats.filesDeleted;
+		linesAdded += stats.linesAdded;
+		linesEdited += stats.linesEdited;
+		linesDeleted += stats.linesDeleted;
+		return this;
+	}
+
+	/**
+	 * Get the stats for the given key, creating it if missing
+	 *
+	 * @param stats
+	 * @param key
+	 * @return non-null stats
+	 */
+	static LineStats getStats(Map<String, LineStats> stats, String key) {
+		LineStats value = stats.get(key);
+		if (value == null) {
+			value = new LineStats();
+			stats.put(key, value);
+		}
+		return value;
+	}
+
+	public CommitFilter reset() {
+		diffs.reset();
+		lineImpacts.clear();
+		fileImpacts.clear();
+		authorLineImpacts.clear();
+		authorFileImpacts.clear();
+		mergeConflicts.clear();
+		duplicates.clear();
+		summaries.clear();
+		weeks.clear();
+		months.clear();
+		if (breakdown != null)
+			breakdown.clear();
+		mergeConflictCount = 0;
+		duplicateCount = 0;
+		linesAdded = 0;
+		linesEdited = 0;
+		linesDeleted = 0;
+		added = 0;
+		modified = 0;
+		deleted = 0;
+		return super.reset();
+	}
+
+	/**
+	 * @return line impacts of the commits with the most lines changed
+	 */
+	public Iterable<CommitImpact> getLineImpacts() {
+		return lineImpacts;
+	}
+
+	/**
+	 * @return file impacts of the commits with the most files changed
+	 */
+	public Iterable<CommitImpact> getFileImpacts() {
+		return fileImpacts;
+	}
+
+	/**
+	 * @return total line impact of all commits visited keyed by author email
+	 */
+	public Map<String, LineStats> getAuthorLineImpacts() {
+		return authorLineImpacts;
+	}
+
+	/**
+	 * @return total file impact of all commits visited keyed by author email
+	 */
+	public Map<String, LineStats> getAuthorFileImpacts() {
+		return authorFileImpacts;
+	}
+
+	/**
+	 * @return linesAdded
+	 */
+	public long getLinesAdded() {
+		return linesAdded;
+	}
+
+	/**
+	 * @return linesEdited
+	 */
+	public long getLinesEdited() {
+		return linesEdited;
+	}
+
+	/**
+	 * @return linesDeleted
+	 */
+	public long getLinesDeleted() {
+		return linesDeleted;
+	}
+
+	/**
+	 * @return added
+	 */
+	public long getAdded() {
+		return added;
+	}
+
+	/**
+	 * @return modified
+	 */
+	public long getModified() {
+		return modified;
+	}
+
+	/**
+	 * @return deleted
+	 */
+	public long getDeleted() {
+		return deleted;
+	}
+
+	/**
+	 * @return merge commits with content changes, in walk order
+	 */
+	public List<RevCommit> getMergeConflicts() {
+		return mergeConflicts;
+	}
+
+	/**
+	 * Get summaries of the commits this filter has retained
+	 * <p>
+	 * This includes any commit that was ever retained as one of the commits
+	 * with the most changes, even if it was later displaced by another commit.
+	 *
+	 * @return summaries
+	 */
+	public ObjectIdSubclassMap<CommitSummary> getSummaries() {
+		return summaries;
+	}
+
+	/**
+	 * @return line and file counts by week
+	 */
+	public HistoryBuckets getWeeks() {
+		return weeks;
+	}
+
+	/**
+	 * @return line and file counts by month
+	 */
+	public HistoryBuckets getMonths() {
+		return months;
+	}
+
+	/**
+	 * @return line, file and commit counts by path, null if not configured
+	 */
+	public PathBreakdown getBreakdown() {
+		return breakdown;
+	}
+
+	/**
+	 * @return number of merge commits with content changes found
+	 */
+	public int getMergeConflictCount() {
+		return mergeConflictCount;
+	}
+
+	/**
+	 * @return number of commits with duplicate blobs found
+	 */
+	public int getDuplicateCount() {
+		return duplicateCount;
+	}
+
+	/**
+	 * @return duplicate blob counts of commits with duplicates, in walk order
+	 */
+	public Map<RevCommit, Integer> getDuplicates() {
+		return duplicates;
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.jgit.lib.PersonIdent;
+import org.gitective.core.RepositoryUtils;
+
+/**
+ * Utilities for merging the names and emails of persons into identities
+ */
+public class Identities {
+
+	private static final Comparator<String> CASE_INSENSITIVE = new Comparator<String>() {
+
+		public int compare(String s1, String s2) {
+			return s1.compareToIgnoreCase(s2);
+		}
+	};
+
+	private static int find(int[] parents, int index) {
+		int root = index;
+		while (parents[root] != root)
+			root = parents[root];
+		while (parents[index] != root) {
+			int next = parents[index];
+			parents[index] = root;
+			index = next;
+		}
+		return root;
+	}
+
+	private static void union(int[] parents, int index1, int index2) {
+		int root1 = find(parents, index1);
+		int root2 = find(parents, index2);
+		if (root1 < root2)
+			parents[root2] = root1;
+		else if (root2 < root1)
+			parents[root1] = root2;
+	}
+
+	/**
+	 * Merge persons into identities
+	 * <p>
+	 * Names that only differ by case are the same identity and any names that
+	 * share an email address, directly or through other names, are merged into
+	 * a single identity. Each identity is keyed by the case-insensitively
+	 * lowest of its names.
+	 *
+	 * @param persons
+	 * @return map of identity names to all the emails of that identity
+	 */
+	public static Map<String, Set<String>> merge(
+			Collection<PersonIdent> persons) {
+		Map<String, Set<String>> namesToEmails = new TreeMap<String, Set<String>>(
+				CASE_INSENSITIVE);
+		namesToEmails.putAll(RepositoryUtils.mapNamesToEmails(persons));
+		Map<String, Set<String>> emailsToNames = RepositoryUtils
+				.mapEmailsToNames(persons);
+		for (Entry<String, Set<String>> entry : emailsToNames.entrySet())
+			for (String name : entry.getValue())
+				namesToEmails.get(name).add(entry.getKey());
+
+		List<Entry<String, Set<String>>> entries = new ArrayList<Entry<String, Set<String>>>(
+				namesToEmails.entrySet());
+		int[] parents = new int[entries.size()];
+		for (int i = 0; i < parents.length; i++)
+			parents[i] = i;
+		Map<String, Integer> emailOwners = new HashMap<String, Integer>();
+		for (int i = 0; i < entries.size(); i++)
+			for (String email : entries.get(i).getValue()) {
+				Integer owner = emailOwners.get(email);
+				if (owner != null)
+					union(parents, i, owner.intValue());
+				else
+					emailOwners.put(email, Integer.valueOf(i));
+			}
+
+		Map<String, Set<String>> identities = new TreeMap<String, Set<String>>(
+				CASE_INSENSITIVE);
+		for (int i = 0; i < entries.size(); i++) {
+			Entry<String, Set<String>> entry = entries.get(i);
+			int root = find(parents, i);
+			if (root == i)
+				identities.put(entry.getKey(), entry.getValue());
+			else
+				identities.get(entries.get(root).getKey()).addAll(
+						entry.getValue());
+		}
+		return identities;
+	}
+}
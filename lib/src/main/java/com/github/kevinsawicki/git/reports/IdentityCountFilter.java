@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.IOException;
+
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.gitective.core.filter.commit.CommitFilter;
+
+/**
+ * Filter that counts the commits authored and committed by each email of the
+ * visited commits in an {@link IdentityTable}
+ */
+public class IdentityCountFilter extends CommitFilter {
+
+	private final IdentityTable table = new IdentityTable();
+
+	public boolean include(RevWalk walker, RevCommit commit) throws IOException {
+		PersonIdent author = commit.getAuthorIdent();
+		if (author != null)
+			table.addAuthored(author.getEmailAddress(), 1);
+		PersonIdent committer = commit.getCommitterIdent();
+		if (committer != null)
+			table.addCommitted(committer.getEmailAddress(), 1);
+		return true;
+	}
+
+	public CommitFilter reset() {
+		table.clear();
+		return super.reset();
+	}
+
+	/**
+	 * @return table
+	 */
+	public IdentityTable getTable() {
+		return table;
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table of identity emails interned to int ids with the number of commits
+ * authored and committed by each
+ * <p>
+ * Ids are assigned in the order emails are first seen and counts are kept in
+ * int arrays indexed by id so nothing is retained per commit, unlike a
+ * {@link org.gitective.core.stat.CommitHistogram} that keeps the id and time
+ * of every commit of every user.
+ */
+public class IdentityTable {
+
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+	private final List<String> emails = new ArrayList<String>();
+
+	private int[] authored = new int[64];
+
+	private int[] committed = new int[64];
+
+	private static int[] grow(int[] array, int length) {
+		if (array.length >= length)
+			return array;
+		int[] grown = new int[Math.max(length, array.length * 2)];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	/**
+	 * Get id of email, assigning the next id if the email is new
+	 *
+	 * @param email
+	 *            may be null to use the empty email
+	 * @return id
+	 */
+	public int intern(String email) {
+		if (email == null)
+			email = "";
+		Integer id = ids.get(email);
+		if (id == null) {
+			id = Integer.valueOf(emails.size());
+			ids.put(email, id);
+			emails.add(email);
+			authored = grow(authored, emails.size());
+			committed = grow(committed, emails.size());
+		}
+		return id.intValue();
+	}
+
+	/**
+	 * Get id of email
+	 *
+	 * @param email
+	 * @return id or -1 if the email is not in this table
+	 */
+	public int getId(String email) {
+		Integer id = ids.get(email != null ? email : "");
+		return id != null ? id.intValue() : -1;
+	}
+
+	/**
+	 * @param id
+	 * @return email of id
+	 */
+	public String getEmail(int id) {
+		return emails.get(id);
+	}
+
+	/**
+	 * @return number of emails in this table
+	 */
+	public int size() {
+		return emails.size();
+	}
+
+	/**
+	 * Add commits authored by email
+	 *
+	 * @param email
+	 * @param count
+	 * @return this table
+	 */
+	public IdentityTable addAuthored(String email, int count) {
+		authored[intern(email)] += count;
+		return this;
+	}
+
+	/**
+	 * Add commits committed by email
+	 *
+	 * @param email
+	 * @param count
+	 * @return this table
+	 */
+	public IdentityTable addCommitted(String email, int count) {
+		committed[intern(email)] += count;
+		return this;
+	}
+
+	/**
+	 * @param id
+	 * @return number of commits authored by id
+	 */
+	public int getAuthored(int id) {
+		return authored[id];
+	}
+
+	/**
+	 * @param id
+	 * @return number of commits committed by id
+	 */
+	public int getCommitted(int id) {
+		return committed[id];
+	}
+
+	/**
+	 * Get number of commits authored by all emails
+	 *
+	 * @param emails
+	 * @return commit count
+	 */
+	public int getAuthored(Collection<String> emails) {
+		int count = 0;
+		for (String email : emails) {
+			int id = getId(email);
+			if (id != -1)
+				count += authored[id];
+		}
+		return count;
+	}
+
+	/**
+	 * Get number of commits committed by all emails
+	 *
+	 * @param emails
+	 * @return commit count
+	 */
+	public int getCommitted(Collection<String> emails) {
+		int count = 0;
+		for (String email : emails) {
+			int id = getId(email);
+			if (id != -1)
+				count += committed[id];
+		}
+		return count;
+	}
+
+	/**
+	 * Include all counts of the given table in this table
+	 *
+	 * @param table
+	 * @return this table
+	 */
+	public IdentityTable include(IdentityTable table) {
+		for (int i = 0; i < table.emails.size(); i++) {
+			int id = intern(table.emails.get(i));
+			authored[id] += table.authored[i];
+			committed[id] += table.committed[i];
+		}
+		return this;
+	}
+
+	/**
+	 * Remove all emails and counts
+	 *
+	 * @return this table
+	 */
+	public IdentityTable clear() {
+		ids.clear();
+		emails.clear();
+		authored = new int[64];
+		committed = new int[64];
+		return this;
+	}
+
+	void write(DataOutputStream output) throws IOException {
+		output.writeInt(emails.size());
+		for (int i = 0; i < emails.size(); i++) {
+			output.writeUTF(emails.get(i));
+			output.writeInt(authored[i]);
+			output.writeInt(committed[i]);
+		}
+	}
+
+	IdentityTable read(DataInputStream input) throws IOException {
+		clear();
+		int count = input.readInt();
+		for (int i = 0; i < count; i++) {
+			int id = intern(input.readUTF());
+			authored[id] += input.readInt();
+			committed[id] += input.readInt();
+		}
+		return this;
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.gitective.core.filter.commit.CommitImpact;
+import org.gitective.core.filter.commit.CommitImpact.DescendingImpactComparator;
+
+/**
+ * Bounded heap of the commit impacts with the most changes
+ * <p>
+ * Only the configured number of impacts are retained no matter how many are
+ * added, and they are ordered the same as a {@link DescendingImpactComparator}
+ * sorted set would order them.
+ */
+public class ImpactHeap implements Iterable<CommitImpact> {
+
+	private final Comparator<CommitImpact> comparator = new DescendingImpactComparator();
+
+	private final int limit;
+
+	private final PriorityQueue<CommitImpact> heap;
+
+	/**
+	 * Create heap retaining at most limit impacts
+	 *
+	 * @param limit
+	 */
+	public ImpactHeap(int limit) {
+		if (limit < 1)
+			throw new IllegalArgumentException("Limit must be positive");
+		this.limit = limit;
+		heap = new PriorityQueue<CommitImpact>(limit + 1,
+				Collections.reverseOrder(comparator));
+	}
+
+	/**
+	 * @return limit
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @return number of impacts retained
+	 */
+	public int size() {
+		return heap.size();
+	}
+
+	/**
+	 * Add impact, dropping the smallest retained impact if the limit is
+	 * exceeded
+	 *
+	 * @param impact
+	 * @return true if the impact was retained, false otherwise
+	 */
+	public boolean add(CommitImpact impact) {
+		if (heap.size() < limit)
+			return heap.add(impact);
+		if (comparator.compare(impact, heap.peek()) >= 0)
+			return false;
+		heap.poll();
+		return heap.add(impact);
+	}
+
+	/**
+	 * Add all impacts
+	 *
+	 * @param impacts
+	 * @return this heap
+	 */
+	public ImpactHeap addAll(Iterable<CommitImpact> impacts) {
+		for (CommitImpact impact : impacts)
+			add(impact);
+		return this;
+	}
+
+	/**
+	 * Clear all retained impacts
+	 *
+	 * @return this heap
+	 */
+	public ImpactHeap clear() {
+		heap.clear();
+		return this;
+	}
+
+	/**
+	 * @return retained impacts ordered from most to least changes
+	 */
+	public List<CommitImpact> getImpacts() {
+		List<CommitImpact> impacts = new ArrayList<CommitImpact>(heap);
+		Collections.sort(impacts, comparator);
+		return impacts;
+	}
+
+	public Iterator<CommitImpact> iterator() {
+		return getImpacts().iterator();
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Report writer that writes compact JSON
+ */
+public class JsonReportWriter implements ReportWriter {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final Writer writer;
+
+	private boolean[] first = new boolean[16];
+
+	private int depth;
+
+	private boolean member;
+
+	/**
+	 * Create writer of JSON to writer
+	 *
+	 * @param writer
+	 */
+	public JsonReportWriter(Writer writer) {
+		if (writer == null)
+			throw new IllegalArgumentException("Writer cannot be null");
+		this.writer = writer;
+	}
+
+	private void separate() throws IOException {
+		if (member) {
+			member = false;
+			return;
+		}
+		if (depth > 0) {
+			if (!first[depth - 1])
+				writer.write(',');
+			first[depth - 1] = false;
+		}
+	}
+
+	private ReportWriter begin(char open) throws IOException {
+		separate();
+		writer.write(open);
+		if (depth == first.length) {
+			boolean[] grown = new boolean[depth * 2];
+			System.arraycopy(first, 0, grown, 0, depth);
+			first = grown;
+		}
+		first[depth++] = true;
+		return this;
+	}
+
+	private ReportWriter end(char close) throws IOException {
+		if (depth == 0)
+			throw new IllegalStateException("Nothing to end");
+		depth--;
+		writer.write(close);
+		return this;
+	}
+
+	public ReportWriter beginObject() throws IOException {
+		return begin('{');
+	}
+
+	public ReportWriter endObject() throws IOException {
+		return end('}');
+	}
+
+	public ReportWriter beginArray() throws IOException {
+		return begin('[');
+	}
+
+	public ReportWriter endArray() throws IOException {
+		return end(']');
+	}
+
+	public ReportWriter name(String name) throws IOException {
+		if (name == null)
+			throw new IllegalArgumentException("Name cannot be null");
+		separate();
+		string(name);
+		writer.write(':');
+		member = true;
+		return this;
+	}
+
+	public ReportWriter value(String value) throws IOException {
+		separate();
+		if (value != null)
+			string(value);
+		else
+			writer.write("null");
+		return this;
+	}
+
+	public ReportWriter value(long value) throws IOException {
+		separate();
+		writer.write(Long.toString(value));
+		return this;
+	}
+
+	public ReportWriter flush() throws IOException {
+		writer.flush();
+		return this;
+	}
+
+	private void string(String value) throws IOException {
+		writer.write('"');
+		int start = 0;
+		final int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c >= 0x20 && c != '"' && c != '\\' && c != 0x2028
+					&& c != 0x2029)
+				continue;
+			writer.write(value, start, i - start);
+			start = i + 1;
+			switch (c) {
+			case '"':
+				writer.write("\\\"");
+				break;
+			case '\\':
+				writer.write("\\\\");
+				break;
+			case '\n':
+				writer.write("\\n");
+				break;
+			case '\r':
+				writer.write("\\r");
+				break;
+			case '\t':
+				writer.write("\\t");
+				break;
+			default:
+				writer.write("\\u");
+				writer.write(HEX[(c >> 12) & 0xF]);
+				writer.write(HEX[(c >> 8) & 0xF]);
+				writer.write(HEX[(c >> 4) & 0xF]);
+				writer.write(HEX[c & 0xF]);
+			}
+		}
+		writer.write(value, start, length - start);
+		writer.write('"');
+	}
+}
@@ -0,0 +1,475 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffAlgorithm.SupportedAlgorithm;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.gitective.core.GitException;
+
+/**
+ * Line diff of the old and new blob of a changed file
+ * <p>
+ * The default line diff uses histogram diff and produces the same edits as
+ * {@link org.gitective.core.BlobUtils#diff(ObjectReader, ObjectId, ObjectId)}.
+ * A count only line diff produces at most one insert, one replace and one
+ * delete edit per file whose lengths are the totals of all edits of that type.
+ * The positions of these edits do not correspond to lines. Count only diffs
+ * assign ids to the distinct lines of both blobs in a single pass and run the
+ * algorithm over the id sequences, adding each region of differing lines to
+ * the totals instead of building an edit list. Lines are never compared byte
+ * by byte again and added and deleted files are counted without being diffed.
+ * <p>
+ * Instances are immutable and safe to share between threads.
+ */
+public class LineDiff {
+
+	/**
+	 * Histogram line diff producing all edits
+	 */
+	public static final LineDiff DEFAULT = new LineDiff();
+
+	private static final List<Edit> NO_EDITS = Collections.emptyList();
+
+	/**
+	 * Receiver of the edits of the files of a commit, usually forwarding to
+	 * the protected methods of a
+	 * {@link org.gitective.core.filter.commit.CommitDiffEditFilter}
+	 */
+	interface FileEdits {
+
+		/**
+		 * Start of the files of commit
+		 *
+		 * @param commit
+		 */
+		void start(RevCommit commit);
+
+		/**
+		 * Edits of file
+		 *
+		 * @param commit
+		 * @param diff
+		 * @param edits
+		 * @return true to continue, false to stop diffing the commit
+		 */
+		boolean file(RevCommit commit, DiffEntry diff, Collection<Edit> edits);
+
+		/**
+		 * End of the files of commit
+		 *
+		 * @param commit
+		 */
+		void end(RevCommit commit);
+	}
+
+	/**
+	 * Sequence of line ids
+	 */
+	private static class Lines {
+
+		final int[] ids;
+
+		final int size;
+
+		Lines(int[] ids, int size) {
+			this.ids = ids;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * Table assigning the same id to equal lines of two blobs
+	 */
+	private static class LineTable {
+
+		private final byte[][] contents;
+
+		private int[] slots;
+
+		private int[] hashes;
+
+		private int[] owners;
+
+		private int[] starts;
+
+		private int[] ends;
+
+		private int size;
+
+		LineTable(byte[] oldContent, byte[] newContent) {
+			contents = new byte[][] { oldContent, newContent };
+			int capacity = Integer.highestOneBit(Math.max(16,
+					(oldContent.length + newContent.length) / 16)) << 1;
+			slots = new int[capacity];
+			int ids = capacity >>> 1;
+			hashes = new int[ids];
+			owners = new int[ids];
+			starts = new int[ids];
+			ends = new int[ids];
+		}
+
+		/**
+		 * Get line ids of content
+		 *
+		 * @param owner
+		 *            0 for the old content, 1 for the new content
+		 * @return lines
+		 */
+		Lines lines(int owner) {
+			byte[] content = contents[owner];
+			int[] ids = new int[Math.max(16, content.length / 32)];
+			int count = 0;
+			int start = 0;
+			while (start < content.length) {
+				int hash = 5381;
+				int end = start;
+				while (end < content.length) {
+					byte b = content[end++];
+					hash = (hash << 5) + hash + (b & 0xff);
+					if (b == '\n')
+						break;
+				}
+				ids = grow(ids, count + 1);
+				ids[count++] = id(owner, start, end, hash);
+				start = end;
+			}
+			return new Lines(ids, count);
+		}
+
+		private int id(int owner, int start, int end, int hash) {
+			int mask = slots.length - 1;
+			int slot = mix(hash) & mask;
+			for (int id = slots[slot] - 1; id != -1; id = slots[slot] - 1) {
+				if (hashes[id] == hash
+						&& equals(contents[owners[id]], starts[id], ends[id],
+								contents[owner], start, end))
+					return id;
+				slot = (slot + 1) & mask;
+			}
+			int id = size++;
+			hashes[id] = hash;
+			owners[id] = owner;
+			starts[id] = start;
+			ends[id] = end;
+			slots[slot] = id + 1;
+			if (size == hashes.length)
+				grow();
+			return id;
+		}
+
+		private void grow() {
+			int capacity = slots.length << 1;
+			slots = new int[capacity];
+			int mask = capacity - 1;
+			for (int id = 0; id < size; id++) {
+				int slot = mix(hashes[id]) & mask;
+				while (slots[slot] != 0)
+					slot = (slot + 1) & mask;
+				slots[slot] = id + 1;
+			}
+			int ids = capacity >>> 1;
+			hashes = grow(hashes, ids);
+			owners = grow(owners, ids);
+			starts = grow(starts, ids);
+			ends = grow(ends, ids);
+		}
+
+		private static int[] grow(int[] array, int length) {
+			if (array.length >= length)
+				return array;
+			int[] grown = new int[Math.max(length, array.length * 2)];
+			System.arraycopy(array, 0, grown, 0, array.length);
+			return grown;
+		}
+
+		private static int mix(int hash) {
+			return (hash * 0x9e370001) >>> 7 ^ hash;
+		}
+
+		private static boolean equals(byte[] a, int aStart, int aEnd,
+				byte[] b, int bStart, int bEnd) {
+			if (aEnd - aStart != bEnd - bStart)
+				return false;
+			while (aStart < aEnd)
+				if (a[aStart++] != b[bStart++])
+					return false;
+			return true;
+		}
+	}
+
+	/**
+	 * Count lines of content
+	 */
+	private static int countLines(byte[] content) {
+		int lines = 0;
+		for (byte b : content)
+			if (b == '\n')
+				lines++;
+		if (content.length > 0 && content[content.length - 1] != '\n')
+			lines++;
+		return lines;
+	}
+
+	private static boolean isFile(FileMode mode) {
+		return (mode.getBits() & FileMode.TYPE_MASK) == FileMode.TYPE_FILE;
+	}
+
+	/**
+	 * Is diff of a regular file on each side it exists on?
+	 */
+	private static boolean isFileDiff(DiffEntry diff) {
+		switch (diff.getChangeType()) {
+		case DELETE:
+			return isFile(diff.getOldMode());
+		case ADD:
+			return isFile(diff.getNewMode());
+		default:
+			return isFile(diff.getOldMode()) && isFile(diff.getNewMode());
+		}
+	}
+
+	private static RawText toText(byte[] content) {
+		return content.length > 0 ? new RawText(content) : RawText.EMPTY_TEXT;
+	}
+
+	/**
+	 * Load content of blob
+	 *
+	 * @return content or null if binary
+	 */
+	private static byte[] load(ObjectReader reader, ObjectId id,
+			ReportMetrics metrics) throws IOException {
+		if (ObjectId.zeroId().equals(id))
+			return new byte[0];
+		ObjectLoader loader = reader.open(id, Constants.OBJ_BLOB);
+		if (metrics != null)
+			metrics.addBlob(loader.getSize());
+		if (loader.isLarge()) {
+			InputStream stream = loader.openStream();
+			try {
+				if (RawText.isBinary(stream))
+					return null;
+			} finally {
+				stream.close();
+			}
+		}
+		byte[] content = loader.getCachedBytes(Integer.MAX_VALUE);
+		return RawText.isBinary(content) ? null : content;
+	}
+
+	private final SupportedAlgorithm algorithm;
+
+	private final DiffAlgorithm diff;
+
+	private final boolean countOnly;
+
+	/**
+	 * Create histogram line diff producing all edits
+	 */
+	public LineDiff() {
+		this(SupportedAlgorithm.HISTOGRAM, false);
+	}
+
+	/**
+	 * Create line diff
+	 *
+	 * @param algorithm
+	 * @param countOnly
+	 *            true to only produce the totals of each type of edit
+	 */
+	public LineDiff(SupportedAlgorithm algorithm, boolean countOnly) {
+		if (algorithm == null)
+			throw new IllegalArgumentException("Algorithm cannot be null");
+		this.algorithm = algorithm;
+		this.countOnly = countOnly;
+		diff = DiffAlgorithm.getAlgorithm(algorithm);
+	}
+
+	/**
+	 * @return algorithm
+	 */
+	public SupportedAlgorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * @return countOnly
+	 */
+	public boolean isCountOnly() {
+		return countOnly;
+	}
+
+	public String toString() {
+		return "LINE_DIFF(" + algorithm + (countOnly ? " count" : "") + ")";
+	}
+
+	/**
+	 * Diff the old and new blob of a file unless it is excluded or binary
+	 *
+	 * @param reader
+	 * @param diff
+	 * @param exclusion
+	 *            may be null to only skip binary blobs
+	 * @return edits, empty if the file is excluded or binary
+	 * @throws IOException
+	 */
+	public Collection<Edit> diff(ObjectReader reader, DiffEntry diff,
+			DiffExclusion exclusion) throws IOException {
+		return diff(reader, diff, exclusion, null);
+	}
+
+	/**
+	 * Diff the old and new blob of a file unless it is excluded or binary and
+	 * record the blobs read
+	 *
+	 * @param reader
+	 * @param diff
+	 * @param exclusion
+	 *            may be null to only skip binary blobs
+	 * @param metrics
+	 *            may be null
+	 * @return edits, empty if the file is excluded or binary
+	 * @throws IOException
+	 */
+	public Collection<Edit> diff(ObjectReader reader, DiffEntry diff,
+			DiffExclusion exclusion, ReportMetrics metrics) throws IOException {
+		if (diff.getOldId() == null || diff.getNewId() == null)
+			return NO_EDITS;
+		ObjectId oldId = diff.getOldId().toObjectId();
+		ObjectId newId = diff.getNewId().toObjectId();
+		if (oldId.equals(newId))
+			return NO_EDITS;
+
+		String path = diff.getChangeType() == ChangeType.DELETE ? diff
+				.getOldPath() : diff.getNewPath();
+		if (exclusion != null && exclusion.exclude(reader, path, oldId, newId))
+			return NO_EDITS;
+
+		byte[] oldContent = load(reader, oldId, metrics);
+		byte[] newContent = oldContent != null ? load(reader, newId, metrics)
+				: null;
+		if (oldContent == null || newContent == null) {
+			if (exclusion != null)
+				exclusion.excludeBinary(reader, oldId, newId);
+			return NO_EDITS;
+		}
+		return diff(oldContent, newContent);
+	}
+
+	/**
+	 * Diff each file of a commit and hand its edits to the receiver the same
+	 * way {@link org.gitective.core.filter.commit.CommitDiffEditFilter} does
+	 *
+	 * @param walker
+	 * @param commit
+	 * @param diffs
+	 * @param exclusion
+	 *            may be null to only skip binary blobs
+	 * @param metrics
+	 *            may be null
+	 * @param repository
+	 * @param edits
+	 * @return true if all files were included, false if the receiver stopped
+	 * @throws GitException
+	 *             wrapping any exception reading the blobs
+	 */
+	boolean diff(RevWalk walker, RevCommit commit,
+			Collection<DiffEntry> diffs, DiffExclusion exclusion,
+			ReportMetrics metrics, Repository repository, FileEdits edits) {
+		edits.start(commit);
+		ObjectReader reader = walker.getObjectReader();
+		try {
+			for (DiffEntry diff : diffs)
+				if (isFileDiff(diff)
+						&& !edits.file(commit, diff,
+								diff(reader, diff, exclusion, metrics))) {
+					edits.end(commit);
+					return false;
+				}
+		} catch (IOException e) {
+			throw new GitException(e, repository);
+		}
+		edits.end(commit);
+		return true;
+	}
+
+	/**
+	 * Diff the lines of old and new content
+	 *
+	 * @param oldContent
+	 * @param newContent
+	 * @return edits
+	 */
+	public Collection<Edit> diff(byte[] oldContent, byte[] newContent) {
+		if (!countOnly)
+			return diff.diff(RawTextComparator.DEFAULT, toText(oldContent),
+					toText(newContent));
+
+		if (oldContent.length == 0 || newContent.length == 0) {
+			int added = countLines(newContent);
+			int deleted = countLines(oldContent);
+			if (added > 0)
+				return Collections.singletonList(new Edit(0, 0, 0, added));
+			if (deleted > 0)
+				return Collections.singletonList(new Edit(0, deleted, 0, 0));
+			return NO_EDITS;
+		}
+
+		LineTable table = new LineTable(oldContent, newContent);
+		Lines oldLines = table.lines(0);
+		Lines newLines = table.lines(1);
+		EditCounter counter = new EditCounter(oldLines.ids, oldLines.size,
+				newLines.ids, newLines.size, table.size);
+		if (algorithm == SupportedAlgorithm.MYERS)
+			counter.myers();
+		else
+			counter.histogram();
+		List<Edit> totals = new ArrayList<Edit>(3);
+		if (counter.added > 0)
+			totals.add(new Edit(0, 0, 0, counter.added));
+		if (counter.replacedA > 0)
+			totals.add(new Edit(0, counter.replacedA, 0, counter.replacedB));
+		if (counter.deleted > 0)
+			totals.add(new Edit(0, counter.deleted, 0, 0));
+		return totals;
+	}
+}
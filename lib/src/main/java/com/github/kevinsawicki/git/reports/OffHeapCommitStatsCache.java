@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Cache of {@link CommitStats} that holds its rows in direct buffers outside
+ * of the Java heap
+ * <p>
+ * Each commit is stored as one fixed layout row of its raw id, line and file
+ * counts, flags and the indexes of its identities in a string table. Rows are
+ * found through an open addressing table of row numbers keyed by commit id and
+ * per-path counts are appended to a separate buffer. Only the distinct
+ * identity and path strings are kept on the heap, so heap use does not grow
+ * with the number of cached commits and large caches add no garbage
+ * collection work. Stats returned from {@link #get(AnyObjectId)} are copies
+ * read from the row.
+ * <p>
+ * Direct buffers count against the JVM's direct memory limit, which may need
+ * to be raised with <code>-XX:MaxDirectMemorySize</code> for caches of
+ * millions of commits. Each buffer is limited to 2 GiB, which holds the rows
+ * of about 30 million commits. Per-path counts replaced by
+ * {@link #add(CommitStats)} are left in their buffer until the cache is
+ * cleared.
+ * <p>
+ * The cache file is the same as a {@link CommitStatsCache} file so either
+ * cache can be used with it.
+ */
+public class OffHeapCommitStatsCache extends CommitStatsCache {
+
+	private static final int ID = Constants.OBJECT_ID_LENGTH;
+
+	private static final int LINES_ADDED = ID;
+
+	private static final int LINES_EDITED = LINES_ADDED + 4;
+
+	private static final int LINES_DELETED = LINES_EDITED + 4;
+
+	private static final int FILES_ADDED = LINES_DELETED + 4;
+
+	private static final int FILES_EDITED = FILES_ADDED + 4;
+
+	private static final int FILES_DELETED = FILES_EDITED + 4;
+
+	private static final int DUPES = FILES_DELETED + 4;
+
+	private static final int AUTHOR_NAME = DUPES + 4;
+
+	private static final int AUTHOR_EMAIL = AUTHOR_NAME + 4;
+
+	private static final int COMMITTER_NAME = AUTHOR_EMAIL + 4;
+
+	private static final int COMMITTER_EMAIL = COMMITTER_NAME + 4;
+
+	private static final int SCOPES = COMMITTER_EMAIL + 4;
+
+	private static final int PARENTS = SCOPES + 4;
+
+	private static final int FLAGS = PARENTS + 1;
+
+	private static final int ROW = FLAGS + 1;
+
+	private static final int FLAG_MERGE_CONFLICT = 1;
+
+	private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+
+	private final List<String> strings = new ArrayList<String>();
+
+	private ByteBuffer rowData;
+
+	private ByteBuffer table;
+
+	private ByteBuffer scopeData;
+
+	private int size;
+
+	private int mask;
+
+	/**
+	 * Create cache backed by file
+	 *
+	 * @param file
+	 */
+	public OffHeapCommitStatsCache(File file) {
+		super(file);
+		rowData = ByteBuffer.allocateDirect(1024 * ROW);
+		table = ByteBuffer.allocateDirect(2048 * 4);
+		mask = 2047;
+		scopeData = ByteBuffer.allocateDirect(4096);
+	}
+
+	private static ByteBuffer grow(ByteBuffer buffer, long length) {
+		if (buffer.capacity() >= length)
+			return buffer;
+		if (length > Integer.MAX_VALUE)
+			throw new IllegalStateException(
+					"Off-heap stats cache buffer cannot exceed 2 GiB");
+		long capacity = Math.min(Math.max(length, buffer.capacity() * 2L),
+				Integer.MAX_VALUE);
+		ByteBuffer grown = ByteBuffer.allocateDirect((int) capacity);
+		ByteBuffer source = buffer.duplicate();
+		source.clear();
+		grown.put(source);
+		grown.clear();
+		return grown;
+	}
+
+	private int string(String value) {
+		if (value == null)
+			value = "";
+		Integer id = stringIds.get(value);
+		if (id == null) {
+			id = Integer.valueOf(strings.size());
+			stringIds.put(value, id);
+			strings.add(value);
+		}
+		return id.intValue();
+	}
+
+	private boolean matches(int row, byte[] id) {
+		int offset = row * ROW;
+		for (int i = 0; i < ID; i++)
+			if (rowData.get(offset + i) != id[i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Find slot of id in the table
+	 *
+	 * @return slot holding the id's row or the empty slot to insert it at
+	 */
+	private int slot(int hash, byte[] id) {
+		int slot = hash & mask;
+		int row;
+		while ((row = table.getInt(slot * 4)) != 0 && !matches(row - 1, id))
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private static int hash(byte[] id) {
+		return ((id[4] & 0xff) << 24) | ((id[5] & 0xff) << 16)
+				| ((id[6] & 0xff) << 8) | (id[7] & 0xff);
+	}
+
+	private int findRow(AnyObjectId commit) {
+		byte[] id = new byte[ID];
+		commit.copyRawTo(id, 0);
+		return table.getInt(slot(hash(id), id) * 4) - 1;
+	}
+
+	private void rehash() {
+		int capacity = (mask + 1) * 2;
+		table = ByteBuffer.allocateDirect(capacity * 4);
+		mask = capacity - 1;
+		byte[] id = new byte[ID];
+		for (int row = 0; row < size; row++) {
+			readId(row, id);
+			table.putInt(slot(hash(id), id) * 4, row + 1);
+		}
+	}
+
+	private void readId(int row, byte[] id) {
+		int offset = row * ROW;
+		for (int i = 0; i < ID; i++)
+			id[i] = rowData.get(offset + i);
+	}
+
+	private int appendScopes(CommitStats commit) {
+		if (commit.scopes == null)
+			return -1;
+		int offset = scopeData.position();
+		scopeData = grow(scopeData, offset + 4 + commit.scopes.length
+				* (1 + PathBreakdown.ROW) * 4L);
+		scopeData.position(offset);
+		scopeData.putInt(commit.scopes.length);
+		for (int i = 0; i < commit.scopes.length; i++) {
+			scopeData.putInt(string(commit.scopes[i]));
+			for (int j = 0; j < PathBreakdown.ROW; j++)
+				scopeData.putInt(commit.scopeCounts[i * PathBreakdown.ROW + j]);
+		}
+		return offset;
+	}
+
+	private CommitStats readRow(int row) {
+		byte[] id = new byte[ID];
+		readId(row, id);
+		int offset = row * ROW;
+		CommitStats commit = new CommitStats(ObjectId.fromRaw(id));
+		commit.linesAdded = rowData.getInt(offset + LINES_ADDED);
+		commit.linesEdited = rowData.getInt(offset + LINES_EDITED);
+		commit.linesDeleted = rowData.getInt(offset + LINES_DELETED);
+		commit.filesAdded = rowData.getInt(offset + FILES_ADDED);
+		commit.filesEdited = rowData.getInt(offset + FILES_EDITED);
+		commit.filesDeleted = rowData.getInt(offset + FILES_DELETED);
+		commit.parents = rowData.get(offset + PARENTS) & 0xff;
+		commit.mergeConflict = (rowData.get(offset + FLAGS) & FLAG_MERGE_CONFLICT) != 0;
+		commit.dupes = rowData.getInt(offset + DUPES);
+		commit.authorName = strings.get(rowData.getInt(offset + AUTHOR_NAME));
+		commit.authorEmail = strings.get(rowData.getInt(offset + AUTHOR_EMAIL));
+		commit.committerName = strings.get(rowData.getInt(offset
+				+ COMMITTER_NAME));
+		commit.committerEmail = strings.get(rowData.getInt(offset
+				+ COMMITTER_EMAIL));
+		int scopeOffset = rowData.getInt(offset + SCOPES);
+		if (scopeOffset != -1) {
+			int count = scopeData.getInt(scopeOffset);
+			commit.scopes = new String[count];
+			commit.scopeCounts = new int[count * PathBreakdown.ROW];
+			int position = scopeOffset + 4;
+			for (int i = 0; i < count; i++) {
+				commit.scopes[i] = strings.get(scopeData.getInt(position));
+				position += 4;
+				for (int j = 0; j < PathBreakdown.ROW; j++) {
+					commit.scopeCounts[i * PathBreakdown.ROW + j] = scopeData
+							.getInt(position);
+					position += 4;
+				}
+			}
+		}
+		return commit;
+	}
+
+	CommitStats find(AnyObjectId commit) {
+		int row = findRow(commit);
+		return row != -1 ? readRow(row) : null;
+	}
+
+	boolean store(CommitStats commit) {
+		byte[] id = new byte[ID];
+		commit.copyRawTo(id, 0);
+		int slot = slot(hash(id), id);
+		int row = table.getInt(slot * 4) - 1;
+		if (row != -1) {
+			int offset = row * ROW;
+			if (rowData.getInt(offset + SCOPES) != -1 || commit.scopes == null)
+				return false;
+			rowData.putInt(offset + SCOPES, appendScopes(commit));
+			return true;
+		}
+
+		rowData = grow(rowData, (size + 1L) * ROW);
+		int offset = size * ROW;
+		for (int i = 0; i < ID; i++)
+			rowData.put(offset + i, id[i]);
+		rowData.putInt(offset + LINES_ADDED, commit.linesAdded);
+		rowData.putInt(offset + LINES_EDITED, commit.linesEdited);
+		rowData.putInt(offset + LINES_DELETED, commit.linesDeleted);
+		rowData.putInt(offset + FILES_ADDED, commit.filesAdded);
+		rowData.putInt(offset + FILES_EDITED, commit.filesEdited);
+		rowData.putInt(offset + FILES_DELETED, commit.filesDeleted);
+		rowData.put(offset + PARENTS, (byte) Math.min(commit.parents, 255));
+		rowData.put(offset + FLAGS,
+				(byte) (commit.mergeConflict ? FLAG_MERGE_CONFLICT : 0));
+		rowData.putInt(offset + DUPES, commit.dupes);
+		rowData.putInt(offset + AUTHOR_NAME, string(commit.authorName));
+		rowData.putInt(offset + AUTHOR_EMAIL, string(commit.authorEmail));
+		rowData.putInt(offset + COMMITTER_NAME, string(commit.committerName));
+		rowData.putInt(offset + COMMITTER_EMAIL, string(commit.committerEmail));
+		rowData.putInt(offset + SCOPES, appendScopes(commit));
+		table.putInt(slot * 4, ++size);
+		if (size * 2 > mask)
+			rehash();
+		return true;
+	}
+
+	int count() {
+		return size;
+	}
+
+	void clear() {
+		for (int slot = 0; slot <= mask; slot++)
+			table.putInt(slot * 4, 0);
+		scopeData.clear();
+		stringIds.clear();
+		strings.clear();
+		size = 0;
+	}
+
+	Iterable<CommitStats> rows() {
+		return new Iterable<CommitStats>() {
+
+			public Iterator<CommitStats> iterator() {
+				return new Iterator<CommitStats>() {
+
+					private int row;
+
+					public boolean hasNext() {
+						return row < size;
+					}
+
+					public CommitStats next() {
+						if (row >= size)
+							throw new NoSuchElementException();
+						return readRow(row++);
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+}
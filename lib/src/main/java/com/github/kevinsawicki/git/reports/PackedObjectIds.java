@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * List of object ids packed into a single byte array
+ * <p>
+ * Each id takes its 20 raw bytes instead of an {@link ObjectId} instance, ids
+ * are only created when read back with {@link #get(int)}.
+ */
+public class PackedObjectIds {
+
+	private static final int LENGTH = Constants.OBJECT_ID_LENGTH;
+
+	private byte[] ids;
+
+	private int size;
+
+	/**
+	 * Create empty list
+	 */
+	public PackedObjectIds() {
+		this(16);
+	}
+
+	/**
+	 * Create empty list with room for the given number of ids
+	 *
+	 * @param capacity
+	 */
+	public PackedObjectIds(int capacity) {
+		ids = new byte[Math.max(capacity, 1) * LENGTH];
+	}
+
+	/**
+	 * Add id
+	 *
+	 * @param id
+	 * @return this list
+	 */
+	public PackedObjectIds add(AnyObjectId id) {
+		if ((size + 1) * LENGTH > ids.length) {
+			byte[] grown = new byte[ids.length * 2];
+			System.arraycopy(ids, 0, grown, 0, size * LENGTH);
+			ids = grown;
+		}
+		id.copyRawTo(ids, size * LENGTH);
+		size++;
+		return this;
+	}
+
+	/**
+	 * @param index
+	 * @return id at index
+	 */
+	public ObjectId get(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+					+ size);
+		return ObjectId.fromRaw(ids, index * LENGTH);
+	}
+
+	/**
+	 * @return number of ids
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Remove all ids
+	 *
+	 * @return this list
+	 */
+	public PackedObjectIds clear() {
+		size = 0;
+		return this;
+	}
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.gitective.core.filter.commit.CommitFilter;
+
+/**
+ * Filter that splits the visited commits into fixed size chunks and computes
+ * the diff statistics of each chunk on an executor
+ * <p>
+ * Every chunk is processed with its own {@link RevWalk}, and therefore its own
+ * object reader, and its own {@link HistoryDiffFilter}. The per-chunk filters
+ * are returned in walk order so they can be merged into the exact same
+ * results a single serial filter would have produced.
+ * <p>
+ * Chunks are handed to {@link #completed(HistoryDiffFilter)} in walk order as
+ * soon as they and all chunks before them are done, so subclasses can merge
+ * results while the walk is still running instead of holding every chunk in
+ * memory. At most twice as many chunks as there are threads are queued, the
+ * walk blocks on the oldest chunk once more have been submitted so a walk that
+ * outpaces the diffs doesn't queue up the whole history.
+ */
+public class ParallelDiffFilter extends CommitFilter {
+
+	/**
+	 * Default number of commits per chunk
+	 */
+	public static final int CHUNK_SIZE = 500;
+
+	private final ExecutorService executor;
+
+	private final int chunkSize;
+
+	private final int maxChunks;
+
+	private final CommitStatsCache cache;
+
+	private final LinkedList<Future<HistoryDiffFilter>> chunks = new LinkedList<Future<HistoryDiffFilter>>();
+
+	private final List<HistoryDiffFilter> filters = new ArrayList<HistoryDiffFilter>();
+
+	private PackedObjectIds pending = new PackedObjectIds();
+
+	private TreeFilter pathFilter;
+
+	private PathBreakdown breakdown;
+
+	private RenameDetection renames;
+
+	private DiffExclusion exclusion;
+
+	private LineDiff lineDiff;
+
+	private ReportMetrics metrics;
+
+	private ReportProgress progress;
+
+	/**
+	 * Create parallel diff filter using the default chunk size
+	 *
+	 * @param executor
+	 * @param threads
+	 *            number of threads of the executor
+	 */
+	public ParallelDiffFilter(ExecutorService executor, int threads) {
+		this(executor, threads, CHUNK_SIZE, null);
+	}
+
+	/**
+	 * Create parallel diff filter
+	 *
+	 * @param executor
+	 * @param threads
+	 *            number of threads of the executor
+	 * @param chunkSize
+	 * @param cache
+	 *            may be null
+	 */
+	public ParallelDiffFilter(ExecutorService executor, int threads,
+			int chunkSize, CommitStatsCache cache) {
+		if (executor == null)
+			throw new IllegalArgumentException("Executor cannot be null");
+		if (threads < 1)
+			throw new IllegalArgumentException("Threads must be positive");
+		if (chunkSize < 1)
+			throw new IllegalArgumentException("Chunk size must be positive");
+		this.executor = executor;
+		maxChunks = 2 * threads;
+		this.chunkSize = chunkSize;
+		this.cache = cache;
+	}
+
+	/**
+	 * Set filter of the paths diffed by each chunk
+	 *
+	 * @param pathFilter
+	 *            may be null to diff all paths
+	 * @return this filter
+	 */
+	public ParallelDiffFilter setPathFilter(TreeFilter pathFilter) {
+		this.pathFilter = pathFilter;
+		return this;
+	}
+
+	/**
+	 * Set breakdown whose configuration each chunk copies to break down its
+	 * diffs by path
+	 *
+	 * @param breakdown
+	 *            may be null to not break down diffs
+	 * @return this filter
+	 */
+	public ParallelDiffFilter setBreakdown(PathBreakdown breakdown) {
+		this.breakdown = breakdown;
+		return this;
+	}
+
+	/**
+	 * Set rename detection shared by all chunks
+	 *
+	 * @param renames
+	 *            may be null to use the default rename detection of the diffs
+	 * @return this filter
+	 */
+	public ParallelDiffFilter setRenameDetection(RenameDetection renames) {
+		this.renames = renames;
+		return this;
+	}
+
+	/**
+	 * Set exclusion of files from the line diffs shared by all chunks
+	 *
+	 * @param exclusion
+	 *            may be null to diff all files
+	 * @return this filter
+	 */
+	public ParallelDiffFilter setExclusion(DiffExclusion exclusion) {
+		this.exclusion = exclusion;
+		return this;
+	}
+
+	/**
+	 * Set line diff of changed files shared by all chunks
+	 *
+	 * @param lineDiff
+	 *            may be null to use the default histogram diff
+	 * @return this filter
+	 */
+	public ParallelDiffFilter setLineDiff(LineDiff lineDiff) {
+		this.lineDiff = lineDiff;
+		return this;
+	}
+
+	/**
+	 * Set metrics shared by all chunks to record the blobs read for line diffs
+	 * in
+	 *
+	 * @param metrics
+	 *            may be null
+	 * @return this filter
+	 */
+	public ParallelDiffFilter setMetrics(ReportMetrics metrics) {
+		this.metrics = metrics;
+		return this;
+	}
+
+	/**
+	 * Set progress checked for cancellation before each commit of a chunk is
+	 * diffed
+	 *
+	 * @param progress
+	 *            may be null
+	 * @return this filter
+	 */
+	public ParallelDiffFilter setProgress(ReportProgress progress) {
+		this.progress = progress;
+		return this;
+	}
+
+	public boolean include(RevWalk walker, RevCommit commit) throws IOException {
+		pending.add(commit);
+		if (pending.size() >= chunkSize) {
+			submit();
+			while (!chunks.isEmpty()
+					&& (chunks.size() > maxChunks || chunks.getFirst()
+							.isDone()))
+				completed(get(chunks.removeFirst()));
+		}
+		return true;
+	}
+
+	private void submit() {
+		final PackedObjectIds ids = pending;
+		final Repository repository = this.repository;
+		final TreeFilter pathFilter = this.pathFilter;
+		final PathBreakdown breakdown = this.breakdown;
+		final RenameDetection renames = this.renames;
+		final DiffExclusion exclusion = this.exclusion;
+		final LineDiff lineDiff = this.lineDiff;
+		final ReportMetrics metrics = this.metrics;
+		final ReportProgress progress = this.progress;
+		pending = new PackedObjectIds(chunkSize);
+		chunks.add(executor.submit(new Callable<HistoryDiffFilter>() {
+
+			public HistoryDiffFilter call() throws Exception {
+				HistoryDiffFilter filter = new HistoryDiffFilter(cache,
+						pathFilter, breakdown, renames);
+				filter.setExclusion(exclusion);
+				filter.setLineDiff(lineDiff);
+				filter.setMetrics(metrics);
+				filter.setRepository(repository);
+				RevWalk walk = new RevWalk(repository);
+				try {
+					for (int i = 0; i < ids.size(); i++) {
+						if (progress != null)
+							progress.check();
+						filter.include(walk, walk.parseCommit(ids.get(i)));
+					}
+				} finally {
+					walk.release();
+				}
+				return filter;
+			}
+		}));
+	}
+
+	/**
+	 * Handle chunk that has completed
+	 * <p>
+	 * Called on the walking thread in walk order, the default implementation
+	 * retains the filter so it is returned from {@link #getFilters()}
+	 *
+	 * @param filter
+	 * @throws IOException
+	 */
+	protected void completed(HistoryDiffFilter filter) throws IOException {
+		filters.add(filter);
+	}
+
+	/**
+	 * Wait for all remaining chunks to complete
+	 *
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		if (!pending.isEmpty())
+			submit();
+		while (!chunks.isEmpty())
+			completed(get(chunks.removeFirst()));
+	}
+
+	/**
+	 * Wait for all chunks to complete and get their filters
+	 *
+	 * @return non-null but possibly empty list of filters in walk order
+	 * @throws IOException
+	 */
+	public List<HistoryDiffFilter> getFilters() throws IOException {
+		finish();
+		return filters;
+	}
+
+	private HistoryDiffFilter get(Future<HistoryDiffFilter> chunk)
+			throws IOException {
+		try {
+			return chunk.get();
+		} catch (InterruptedException e) {
+			cancel();
+			Thread.currentThread().interrupt();
+			IOException ioe = new IOException("Interrupted computing diffs");
+			ioe.initCause(e);
+			throw ioe;
+		} catch (ExecutionException e) {
+			cancel();
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			IOException ioe = new IOException("Exception computing diffs");
+			ioe.initCause(cause);
+			throw ioe;
+		}
+	}
+
+	private void cancel() {
+		for (Future<HistoryDiffFilter> chunk : chunks)
+			chunk.cancel(true);
+	}
+
+	public CommitFilter reset() {
+		cancel();
+		chunks.clear();
+		filters.clear();
+		pending = new PackedObjectIds(chunkSize);
+		return super.reset();
+	}
+}
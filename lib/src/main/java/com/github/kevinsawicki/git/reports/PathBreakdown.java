@@ -0,0 +1,655 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+
+import com.github.kevinsawicki.git.reports.TotalHistoryReport.LineStats;
+
+/**
+ * Commit, line and file counts of a history broken down by path prefix
+ * <p>
+ * Scopes are the nodes of a prefix trie of path segments. Directories up to a
+ * configured depth become scopes as they are found and any number of deeper
+ * prefixes can be added up front. Each changed path is counted in the deepest
+ * scope containing it so the scopes partition the totals of a report, paths
+ * outside of every other scope are counted in the root scope which has an
+ * empty path.
+ * <p>
+ * Counts are stored in primitive arrays indexed by scope, and the line impact
+ * of each author in each scope in a primitive hash table keyed by author and
+ * scope. Authors are identified by email address.
+ */
+public class PathBreakdown {
+
+	static final int COMMITS = 0;
+
+	static final int LINES_ADDED = 1;
+
+	static final int LINES_EDITED = 2;
+
+	static final int LINES_DELETED = 3;
+
+	static final int FILES_ADDED = 4;
+
+	static final int FILES_EDITED = 5;
+
+	static final int FILES_DELETED = 6;
+
+	private static final int COLUMNS = 7;
+
+	/**
+	 * Number of per-commit counts of each scope, all columns except commits
+	 */
+	static final int ROW = COLUMNS - 1;
+
+	private static class Node {
+
+		Map<String, Node> children;
+
+		int scope = -1;
+	}
+
+	private static String normalize(String path) {
+		if (path == null)
+			throw new IllegalArgumentException("Path cannot be null");
+		int start = 0;
+		int end = path.length();
+		while (start < end && path.charAt(start) == '/')
+			start++;
+		while (end > start && path.charAt(end - 1) == '/')
+			end--;
+		return path.substring(start, end);
+	}
+
+	private final int depth;
+
+	private final List<String> prefixes;
+
+	private final Node root = new Node();
+
+	private final Map<String, Integer> scopeIds = new HashMap<String, Integer>();
+
+	private final List<String> paths = new ArrayList<String>();
+
+	private int[][] columns = new int[COLUMNS][16];
+
+	private final Map<String, Integer> authorIds = new HashMap<String, Integer>();
+
+	private final List<String> authors = new ArrayList<String>();
+
+	private long[] authorKeys = new long[64];
+
+	private int[][] authorImpacts = new int[3][64];
+
+	private int authorKeyCount;
+
+	private int[] pending = new int[16 * ROW];
+
+	private boolean[] touched = new boolean[16];
+
+	private int[] touchedScopes = new int[16];
+
+	private int touchedCount;
+
+	/**
+	 * Create breakdown by top-level directory
+	 */
+	public PathBreakdown() {
+		this(1);
+	}
+
+	/**
+	 * Create breakdown by directories up to depth
+	 *
+	 * @param depth
+	 *            number of leading directories of each path, zero to only
+	 *            break down by prefixes
+	 */
+	public PathBreakdown(int depth) {
+		this(depth, null);
+	}
+
+	/**
+	 * Create breakdown by prefixes
+	 *
+	 * @param prefixes
+	 */
+	public PathBreakdown(String... prefixes) {
+		this(0, Arrays.asList(prefixes));
+	}
+
+	/**
+	 * Create breakdown by directories up to depth and by prefixes
+	 *
+	 * @param depth
+	 *            number of leading directories of each path, zero to only
+	 *            break down by prefixes
+	 * @param prefixes
+	 *            directory or file prefixes, may be null
+	 */
+	public PathBreakdown(int depth, Collection<String> prefixes) {
+		if (depth < 0)
+			throw new IllegalArgumentException("Depth cannot be negative");
+		this.depth = depth;
+		List<String> normalized = new ArrayList<String>();
+		if (prefixes != null)
+			for (String prefix : prefixes) {
+				String path = normalize(prefix);
+				if (path.length() == 0)
+					throw new IllegalArgumentException(
+							"Prefix cannot be empty");
+				normalized.add(path);
+			}
+		this.prefixes = Collections.unmodifiableList(normalized);
+		clear();
+	}
+
+	/**
+	 * @return depth
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return prefixes
+	 */
+	public List<String> getPrefixes() {
+		return prefixes;
+	}
+
+	public String toString() {
+		return "BREAKDOWN(" + depth + " " + prefixes + ")";
+	}
+
+	/**
+	 * Create empty breakdown with the same depth and prefixes as this
+	 * breakdown
+	 *
+	 * @return breakdown
+	 */
+	public PathBreakdown copy() {
+		return new PathBreakdown(depth, prefixes);
+	}
+
+	private static int[] grow(int[] array, int length) {
+		if (array.length >= length)
+			return array;
+		int[] grown = new int[Math.max(length, array.length * 2)];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	private static boolean[] grow(boolean[] array, int length) {
+		if (array.length >= length)
+			return array;
+		boolean[] grown = new boolean[Math.max(length, array.length * 2)];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	private int addScope(String path) {
+		int scope = paths.size();
+		paths.add(path);
+		scopeIds.put(path, Integer.valueOf(scope));
+		if (scope == columns[0].length) {
+			int capacity = scope * 2;
+			for (int i = 0; i < COLUMNS; i++)
+				columns[i] = grow(columns[i], capacity);
+			pending = grow(pending, capacity * ROW);
+			touched = grow(touched, capacity);
+			touchedScopes = grow(touchedScopes, capacity);
+		}
+		return scope;
+	}
+
+	/**
+	 * Get scope of the given path, adding it and any missing parents to the
+	 * trie as nodes
+	 */
+	private int getScopeId(String path) {
+		Integer id = scopeIds.get(path);
+		if (id != null)
+			return id.intValue();
+		Node node = root;
+		int start = 0;
+		while (start < path.length()) {
+			int end = path.indexOf('/', start);
+			if (end == -1)
+				end = path.length();
+			String name = path.substring(start, end);
+			if (node.children == null)
+				node.children = new HashMap<String, Node>();
+			Node child = node.children.get(name);
+			if (child == null) {
+				child = new Node();
+				node.children.put(name, child);
+			}
+			node = child;
+			start = end + 1;
+		}
+		if (node.scope == -1)
+			node.scope = addScope(path);
+		return node.scope;
+	}
+
+	/**
+	 * Find the deepest scope containing a changed path
+	 * <p>
+	 * Only directories up to the configured depth are added as new scopes,
+	 * every other segment is looked up in the trie and the walk stops at the
+	 * first segment that has no node.
+	 *
+	 * @param path
+	 * @return scope
+	 */
+	int findScope(String path) {
+		Node node = root;
+		int scope = root.scope;
+		int level = 0;
+		int start = 0;
+		while (node.children != null || level < depth) {
+			int end = path.indexOf('/', start);
+			boolean directory = end != -1;
+			if (!directory)
+				end = path.length();
+			String name = path.substring(start, end);
+			Node child = node.children != null ? node.children.get(name)
+					: null;
+			level++;
+			if (child == null) {
+				if (!directory || level > depth)
+					break;
+				child = new Node();
+				if (node.children == null)
+					node.children = new HashMap<String, Node>();
+				node.children.put(name, child);
+			}
+			if (child.scope == -1 && directory && level <= depth)
+				child.scope = addScope(path.substring(0, end));
+			node = child;
+			if (node.scope != -1)
+				scope = node.scope;
+			if (!directory)
+				break;
+			start = end + 1;
+		}
+		return scope;
+	}
+
+	private int getAuthorId(String email) {
+		Integer id = authorIds.get(email);
+		if (id == null) {
+			id = Integer.valueOf(authors.size());
+			authorIds.put(email, id);
+			authors.add(email);
+		}
+		return id.intValue();
+	}
+
+	/**
+	 * Get slot of author and scope in the author table, adding it if missing
+	 */
+	private int getAuthorSlot(int author, int scope) {
+		long entry = (((long) author << 32) | scope) + 1;
+		int mask = authorKeys.length - 1;
+		int slot = (int) ((entry * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+		while (authorKeys[slot] != 0) {
+			if (authorKeys[slot] == entry)
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		if ((authorKeyCount + 1) * 2 > authorKeys.length) {
+			long[] oldKeys = authorKeys;
+			int[][] oldImpacts = authorImpacts;
+			authorKeys = new long[oldKeys.length * 2];
+			authorImpacts = new int[3][authorKeys.length];
+			authorKeyCount = 0;
+			for (int i = 0; i < oldKeys.length; i++)
+				if (oldKeys[i] != 0) {
+					int moved = getAuthorSlot((int) ((oldKeys[i] - 1) >>> 32),
+							(int) (oldKeys[i] - 1));
+					for (int j = 0; j < 3; j++)
+						authorImpacts[j][moved] = oldImpacts[j][i];
+				}
+			return getAuthorSlot(author, scope);
+		}
+		authorKeys[slot] = entry;
+		authorKeyCount++;
+		return slot;
+	}
+
+	private void includeAuthor(int author, int scope, int add, int edit,
+			int delete) {
+		int slot = getAuthorSlot(author, scope);
+		authorImpacts[0][slot] += add;
+		authorImpacts[1][slot] += edit;
+		authorImpacts[2][slot] += delete;
+	}
+
+	private int touch(String path) {
+		int scope = findScope(path);
+		if (!touched[scope]) {
+			touched[scope] = true;
+			touchedScopes[touchedCount++] = scope;
+		}
+		return scope;
+	}
+
+	/**
+	 * Count lines changed in a path of the commit being diffed
+	 *
+	 * @param path
+	 * @param add
+	 * @param edit
+	 * @param delete
+	 */
+	void addLines(String path, int add, int edit, int delete) {
+		int row = touch(path) * ROW;
+		pending[row + LINES_ADDED - 1] += add;
+		pending[row + LINES_EDITED - 1] += edit;
+		pending[row + LINES_DELETED - 1] += delete;
+	}
+
+	/**
+	 * Count file changed by the commit being diffed
+	 *
+	 * @param diff
+	 */
+	void addFile(DiffEntry diff) {
+		ChangeType type = diff.getChangeType();
+		int row = touch(type == ChangeType.DELETE ? diff.getOldPath() : diff
+				.getNewPath()) * ROW;
+		if (type == ChangeType.ADD)
+			pending[row + FILES_ADDED - 1]++;
+		else if (type == ChangeType.MODIFY)
+			pending[row + FILES_EDITED - 1]++;
+		else if (type == ChangeType.DELETE)
+			pending[row + FILES_DELETED - 1]++;
+	}
+
+	/**
+	 * Move the counts of the commit being diffed to its stats
+	 *
+	 * @param stats
+	 */
+	void collect(CommitStats stats) {
+		String[] scopes = new String[touchedCount];
+		int[] counts = new int[touchedCount * ROW];
+		for (int i = 0; i < touchedCount; i++) {
+			int scope = touchedScopes[i];
+			scopes[i] = paths.get(scope);
+			System.arraycopy(pending, scope * ROW, counts, i * ROW, ROW);
+			Arrays.fill(pending, scope * ROW, scope * ROW + ROW, 0);
+			touched[scope] = false;
+		}
+		touchedCount = 0;
+		stats.scopes = scopes;
+		stats.scopeCounts = counts;
+	}
+
+	/**
+	 * Discard the counts of the commit being diffed
+	 */
+	private void discard() {
+		for (int i = 0; i < touchedCount; i++) {
+			int scope = touchedScopes[i];
+			Arrays.fill(pending, scope * ROW, scope * ROW + ROW, 0);
+			touched[scope] = false;
+		}
+		touchedCount = 0;
+	}
+
+	/**
+	 * Include the per-scope counts of commit stats
+	 * <p>
+	 * Stats without per-scope counts are ignored.
+	 *
+	 * @param stats
+	 * @return this breakdown
+	 */
+	public PathBreakdown include(CommitStats stats) {
+		if (stats.scopes == null)
+			return this;
+		int author = getAuthorId(stats.authorEmail != null ? stats.authorEmail
+				: "");
+		int[] counts = stats.scopeCounts;
+		for (int i = 0; i < stats.scopes.length; i++) {
+			int scope = getScopeId(stats.scopes[i]);
+			int row = i * ROW;
+			columns[COMMITS][scope]++;
+			for (int column = 1; column < COLUMNS; column++)
+				columns[column][scope] += counts[row + column - 1];
+			includeAuthor(author, scope, counts[row + LINES_ADDED - 1],
+					counts[row + LINES_EDITED - 1], counts[row
+							+ LINES_DELETED - 1]);
+		}
+		return this;
+	}
+
+	/**
+	 * Add all counts of the given breakdown to this breakdown
+	 *
+	 * @param breakdown
+	 * @return this breakdown
+	 */
+	public PathBreakdown include(PathBreakdown breakdown) {
+		int[] scopes = new int[breakdown.paths.size()];
+		for (int i = 0; i < scopes.length; i++) {
+			int scope = getScopeId(breakdown.paths.get(i));
+			scopes[i] = scope;
+			for (int column = 0; column < COLUMNS; column++)
+				columns[column][scope] += breakdown.columns[column][i];
+		}
+		for (int i = 0; i < breakdown.authorKeys.length; i++) {
+			long entry = breakdown.authorKeys[i];
+			if (entry != 0)
+				includeAuthor(getAuthorId(breakdown.authors
+						.get((int) ((entry - 1) >>> 32))),
+						scopes[(int) (entry - 1)],
+						breakdown.authorImpacts[0][i],
+						breakdown.authorImpacts[1][i],
+						breakdown.authorImpacts[2][i]);
+		}
+		return this;
+	}
+
+	void write(DataOutputStream output) throws IOException {
+		output.writeInt(paths.size());
+		for (int i = 0; i < paths.size(); i++) {
+			output.writeUTF(paths.get(i));
+			for (int column = 0; column < COLUMNS; column++)
+				output.writeInt(columns[column][i]);
+		}
+		output.writeInt(authors.size());
+		for (String author : authors)
+			output.writeUTF(author);
+		output.writeInt(authorKeyCount);
+		for (int i = 0; i < authorKeys.length; i++)
+			if (authorKeys[i] != 0) {
+				output.writeLong(authorKeys[i] - 1);
+				for (int j = 0; j < 3; j++)
+					output.writeInt(authorImpacts[j][i]);
+			}
+	}
+
+	PathBreakdown read(DataInputStream input) throws IOException {
+		clear();
+		int count = input.readInt();
+		int[] scopes = new int[count];
+		for (int i = 0; i < count; i++) {
+			int scope = getScopeId(input.readUTF());
+			scopes[i] = scope;
+			for (int column = 0; column < COLUMNS; column++)
+				columns[column][scope] += input.readInt();
+		}
+		int authorCount = input.readInt();
+		for (int i = 0; i < authorCount; i++)
+			getAuthorId(input.readUTF());
+		int entries = input.readInt();
+		for (int i = 0; i < entries; i++) {
+			long key = input.readLong();
+			includeAuthor((int) (key >>> 32), scopes[(int) key],
+					input.readInt(), input.readInt(), input.readInt());
+		}
+		return this;
+	}
+
+	/**
+	 * Clear all counts, only the root scope and the configured prefixes
+	 * remain
+	 *
+	 * @return this breakdown
+	 */
+	public PathBreakdown clear() {
+		root.children = null;
+		root.scope = -1;
+		scopeIds.clear();
+		paths.clear();
+		for (int i = 0; i < COLUMNS; i++)
+			Arrays.fill(columns[i], 0);
+		authorIds.clear();
+		authors.clear();
+		authorKeys = new long[64];
+		authorImpacts = new int[3][64];
+		authorKeyCount = 0;
+		discard();
+		getScopeId("");
+		for (String prefix : prefixes)
+			getScopeId(prefix);
+		return this;
+	}
+
+	/**
+	 * @return number of scopes
+	 */
+	public int getSize() {
+		return paths.size();
+	}
+
+	/**
+	 * @param scope
+	 * @return path of scope, empty for the root scope
+	 */
+	public String getPath(int scope) {
+		return paths.get(scope);
+	}
+
+	/**
+	 * Get scope of path
+	 *
+	 * @param path
+	 * @return scope or -1 if path is not a scope
+	 */
+	public int getScope(String path) {
+		Integer id = scopeIds.get(normalize(path));
+		return id != null ? id.intValue() : -1;
+	}
+
+	/**
+	 * @param scope
+	 * @return number of commits changing a path in scope
+	 */
+	public int getCommits(int scope) {
+		return columns[COMMITS][scope];
+	}
+
+	/**
+	 * @param scope
+	 * @return lines added in scope
+	 */
+	public int getLinesAdded(int scope) {
+		return columns[LINES_ADDED][scope];
+	}
+
+	/**
+	 * @param scope
+	 * @return lines edited in scope
+	 */
+	public int getLinesEdited(int scope) {
+		return columns[LINES_EDITED][scope];
+	}
+
+	/**
+	 * @param scope
+	 * @return lines deleted in scope
+	 */
+	public int getLinesDeleted(int scope) {
+		return columns[LINES_DELETED][scope];
+	}
+
+	/**
+	 * @param scope
+	 * @return files added in scope
+	 */
+	public int getFilesAdded(int scope) {
+		return columns[FILES_ADDED][scope];
+	}
+
+	/**
+	 * @param scope
+	 * @return files edited in scope
+	 */
+	public int getFilesEdited(int scope) {
+		return columns[FILES_EDITED][scope];
+	}
+
+	/**
+	 * @param scope
+	 * @return files deleted in scope
+	 */
+	public int getFilesDeleted(int scope) {
+		return columns[FILES_DELETED][scope];
+	}
+
+	/**
+	 * Get line impact of every author that changed a path in scope
+	 *
+	 * @param scope
+	 * @return map of author emails to line impacts
+	 */
+	public Map<String, LineStats> getAuthorLineImpacts(int scope) {
+		Map<String, LineStats> impacts = new LinkedHashMap<String, LineStats>();
+		for (int i = 0; i < authorKeys.length; i++) {
+			long entry = authorKeys[i];
+			if (entry != 0 && (int) (entry - 1) == scope)
+				impacts.put(authors.get((int) ((entry - 1) >>> 32)),
+						new LineStats().include(authorImpacts[0][i],
+								authorImpacts[1][i], authorImpacts[2][i]));
+		}
+		return impacts;
+	}
+}
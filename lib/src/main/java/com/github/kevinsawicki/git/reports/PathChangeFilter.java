@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.IOException;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.gitective.core.filter.commit.CommitFilter;
+
+/**
+ * Filter that only includes commits that change a path matching a tree
+ * filter compared to any of their parents
+ * <p>
+ * Set as the revision filter of a walk, this prunes commits before any
+ * matcher sees them. Unlike setting a tree filter on the walk, commit parents
+ * are never rewritten so diffs of included commits are still computed against
+ * their real parents.
+ */
+public class PathChangeFilter extends CommitFilter {
+
+	private final TreeFilter pathFilter;
+
+	private final TreeFilter changeFilter;
+
+	/**
+	 * Create filter of commits changing paths matching filter
+	 *
+	 * @param pathFilter
+	 */
+	public PathChangeFilter(TreeFilter pathFilter) {
+		if (pathFilter == null)
+			throw new IllegalArgumentException("Path filter cannot be null");
+		this.pathFilter = pathFilter;
+		changeFilter = AndTreeFilter.create(pathFilter, TreeFilter.ANY_DIFF);
+	}
+
+	public boolean include(RevWalk walker, RevCommit commit) throws IOException {
+		TreeWalk walk = new TreeWalk(walker.getObjectReader());
+		try {
+			walk.setRecursive(pathFilter.shouldBeRecursive());
+			walk.setFilter(changeFilter);
+			if (commit.getParentCount() == 0)
+				walk.addTree(new EmptyTreeIterator());
+			for (RevCommit parent : commit.getParents())
+				walk.addTree(walker.parseCommit(parent).getTree());
+			walk.addTree(commit.getTree());
+			return walk.next();
+		} finally {
+			walk.release();
+		}
+	}
+
+	public CommitFilter clone() {
+		return new PathChangeFilter(pathFilter);
+	}
+}
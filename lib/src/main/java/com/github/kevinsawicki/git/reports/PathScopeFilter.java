@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * Tree filter that includes paths under any of a set of directories or files
+ * unless they are under an excluded directory or file
+ * <p>
+ * Unlike a negated {@link org.eclipse.jgit.treewalk.filter.PathFilterGroup}
+ * this filter never stops a walk early so it can be used for exclusions.
+ * Instances are immutable and safe to share between threads.
+ */
+public class PathScopeFilter extends TreeFilter {
+
+	/**
+	 * Restrict tree walk to paths matching filter
+	 *
+	 * @param walk
+	 * @param filter
+	 *            may be null
+	 * @return walk
+	 */
+	static TreeWalk apply(TreeWalk walk, TreeFilter filter) {
+		if (filter != null)
+			walk.setFilter(AndTreeFilter.create(filter, walk.getFilter()));
+		return walk;
+	}
+
+	private static byte[][] toPaths(Collection<String> paths) {
+		if (paths == null)
+			return new byte[0][];
+		List<byte[]> raw = new ArrayList<byte[]>(paths.size());
+		for (String path : paths) {
+			if (path == null)
+				throw new IllegalArgumentException("Path cannot be null");
+			int start = 0;
+			int end = path.length();
+			while (start < end && path.charAt(start) == '/')
+				start++;
+			while (end > start && path.charAt(end - 1) == '/')
+				end--;
+			if (start == end)
+				throw new IllegalArgumentException("Path cannot be empty");
+			raw.add(Constants.encode(path.substring(start, end)));
+		}
+		return raw.toArray(new byte[raw.size()][]);
+	}
+
+	private final byte[][] includes;
+
+	private final byte[][] excludes;
+
+	private final boolean recursive;
+
+	/**
+	 * Create filter including paths
+	 *
+	 * @param includes
+	 */
+	public PathScopeFilter(String... includes) {
+		this(Arrays.asList(includes), null);
+	}
+
+	/**
+	 * Create filter including and excluding paths
+	 *
+	 * @param includes
+	 *            paths to include, null or empty to include all paths
+	 * @param excludes
+	 *            paths to exclude, may be null
+	 */
+	public PathScopeFilter(Collection<String> includes,
+			Collection<String> excludes) {
+		this.includes = toPaths(includes);
+		this.excludes = toPaths(excludes);
+		boolean nested = false;
+		for (byte[] path : this.includes)
+			nested |= contains(path, '/');
+		for (byte[] path : this.excludes)
+			nested |= contains(path, '/');
+		recursive = nested;
+	}
+
+	private static boolean contains(byte[] path, char c) {
+		for (byte b : path)
+			if (b == c)
+				return true;
+		return false;
+	}
+
+	public boolean include(TreeWalk walker) {
+		int length = walker.getPathLength();
+		for (byte[] exclude : excludes)
+			if (length >= exclude.length
+					&& walker.isPathPrefix(exclude, exclude.length) == 0)
+				return false;
+		if (includes.length == 0)
+			return true;
+		for (byte[] include : includes)
+			if (walker.isPathPrefix(include, include.length) == 0)
+				return true;
+		return false;
+	}
+
+	public boolean shouldBeRecursive() {
+		return recursive;
+	}
+
+	public TreeFilter clone() {
+		return this;
+	}
+
+	/**
+	 * @return included paths
+	 */
+	public List<String> getIncludes() {
+		return toStrings(includes);
+	}
+
+	/**
+	 * @return excluded paths
+	 */
+	public List<String> getExcludes() {
+		return toStrings(excludes);
+	}
+
+	private static List<String> toStrings(byte[][] paths) {
+		List<String> strings = new ArrayList<String>(paths.length);
+		for (byte[] path : paths)
+			strings.add(RawParseUtils.decode(path));
+		return Collections.unmodifiableList(strings);
+	}
+
+	public String toString() {
+		return "PATH_SCOPE(" + getIncludes() + " - " + getExcludes() + ")";
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.gitective.core.filter.commit.CommitFilter;
+
+/**
+ * Filter that tracks which identities have authored any of the visited
+ * commits
+ * <p>
+ * Each commit's author email is looked up in a single map of all the tracked
+ * emails and the walk is stopped as soon as every identity has been seen.
+ */
+public class PreviousAuthorFilter extends CommitFilter {
+
+	private final Map<String, String> emailsToNames = new HashMap<String, String>();
+
+	private final Set<String> unseen = new HashSet<String>();
+
+	/**
+	 * Create filter tracking the given identities
+	 *
+	 * @param namesToEmails
+	 *            map of identity names to all emails of that identity
+	 */
+	public PreviousAuthorFilter(Map<String, Set<String>> namesToEmails) {
+		for (Entry<String, Set<String>> entry : namesToEmails.entrySet())
+			for (String email : entry.getValue())
+				emailsToNames.put(email, entry.getKey());
+		unseen.addAll(namesToEmails.keySet());
+		setStop(true);
+	}
+
+	public boolean include(RevWalk walker, RevCommit commit) throws IOException {
+		PersonIdent author = commit.getAuthorIdent();
+		if (author != null) {
+			String name = emailsToNames.get(author.getEmailAddress());
+			if (name != null)
+				unseen.remove(name);
+		}
+		return include(!unseen.isEmpty());
+	}
+
+	public CommitFilter reset() {
+		unseen.clear();
+		unseen.addAll(emailsToNames.values());
+		return super.reset();
+	}
+
+	/**
+	 * @return names of identities that have not authored any visited commit
+	 */
+	public Set<String> getUnseen() {
+		return unseen;
+	}
+}
@@ -25,47 +25,80 @@ import static org.eclipse.jgit.revwalk.filter.RevFilter.NO_MERGES;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.errors.StopWalkException;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.gitective.core.CommitFinder;
 import org.gitective.core.CommitUtils;
-import org.gitective.core.RepositoryUtils;
-import org.gitective.core.TreeUtils;
+import org.gitective.core.GitException;
 import org.gitective.core.filter.commit.AllCommitFilter;
 import org.gitective.core.filter.commit.AllDiffFilter;
 import org.gitective.core.filter.commit.AndCommitFilter;
-import org.gitective.core.filter.commit.AuthorFilter;
 import org.gitective.core.filter.commit.AuthorSetFilter;
 import org.gitective.core.filter.commit.CommitCountFilter;
 import org.gitective.core.filter.commit.CommitDiffEditFilter;
+import org.gitective.core.filter.commit.CommitFilter;
 import org.gitective.core.filter.commit.CommitFileImpactFilter;
 import org.gitective.core.filter.commit.CommitImpact;
 import org.gitective.core.filter.commit.CommitLineImpactFilter;
 import org.gitective.core.filter.commit.CommitterSetFilter;
 import org.gitective.core.filter.commit.LastCommitFilter;
-import org.gitective.core.stat.AuthorHistogramFilter;
-import org.gitective.core.stat.CommitHistogram;
-import org.gitective.core.stat.CommitterHistogramFilter;
-import org.gitective.core.stat.UserCommitActivity;
 
 /**
  * Report showing information between two releases
  */
 public class ReleaseReport {
 
+	/**
+	 * Stage walking the release commits, excluding the per-commit diffs
+	 */
+	public static final String STAGE_WALK = "walk";
+
+	/**
+	 * Stage diffing each release commit against its parent
+	 */
+	public static final String STAGE_COMMIT_DIFFS = "commit diffs";
+
+	/**
+	 * Stage diffing the release end points
+	 */
+	public static final String STAGE_ENDPOINT_DIFF = "endpoint diff";
+
+	/**
+	 * Stage merging author and committer identities
+	 */
+	public static final String STAGE_IDENTITIES = "identities";
+
+	/**
+	 * Stage finding first time authors
+	 */
+	public static final String STAGE_FIRST_TIMERS = "first timers";
+
+	/**
+	 * Time spent detecting renames, part of the commit and end point diffs
+	 */
+	public static final String STAGE_RENAMES = "renames";
+
 	private final Comparator<String> caseInsensitveComparator = new Comparator<String>() {
 
 		public int compare(String s1, String s2) {
@@ -73,9 +106,7 @@ public class ReleaseReport {
 		}
 	};
 
-	private CommitHistogram authorHistogram;
-
-	private CommitHistogram committerHistogram;
+	private IdentityTable identities = new IdentityTable();
 
 	private Map<String, Set<String>> namesToEmails = new HashMap<String, Set<String>>();
 
@@ -90,6 +121,8 @@ public class ReleaseReport {
 
 	private SortedSet<CommitImpact> mostLines;
 
+	private final ObjectIdSubclassMap<CommitSummary> commitSummaries = new ObjectIdSubclassMap<CommitSummary>();
+
 	private Repository repository;
 
 	private RevCommit start;
@@ -120,6 +153,28 @@ public class ReleaseReport {
 
 	private Linker linker;
 
+	private CommitGraph commitGraph;
+
+	private TreeFilter pathFilter;
+
+	private RenameDetection renameDetection;
+
+	private DiffExclusion diffExclusion;
+
+	private LineDiff lineDiff;
+
+	private ReportMetrics metrics;
+
+	private ReportProgress progress;
+
+	private final Map<String, Long> timings = new LinkedHashMap<String, Long>();
+
+	private long renameTime;
+
+	private int blobCacheHits;
+
+	private int blobCacheMisses;
+
 	/**
 	 * @param linker
 	 */
@@ -134,6 +189,193 @@ public class ReleaseReport {
 		return linker;
 	}
 
+	/**
+	 * Set commit graph to compute commit ranges and first timers from instead
+	 * of walking the repository
+	 *
+	 * @param commitGraph
+	 *            may be null
+	 */
+	public void setCommitGraph(CommitGraph commitGraph) {
+		this.commitGraph = commitGraph;
+	}
+
+	/**
+	 * @return commitGraph
+	 */
+	public CommitGraph getCommitGraph() {
+		return commitGraph;
+	}
+
+	/**
+	 * Set filter of the paths this report covers
+	 * <p>
+	 * Commits that don't change a matching path are pruned by the revision
+	 * walk before any other filter sees them, and all diffs only include matching
+	 * paths. First timers are authors that have not changed a matching path
+	 * before. The commit graph is not used when a path filter is set since it
+	 * does not track paths.
+	 *
+	 * @param pathFilter
+	 *            may be null to cover all paths
+	 */
+	public void setPathFilter(TreeFilter pathFilter) {
+		this.pathFilter = pathFilter;
+	}
+
+	/**
+	 * @return pathFilter
+	 */
+	public TreeFilter getPathFilter() {
+		return pathFilter;
+	}
+
+	/**
+	 * Set rename detection used to pair deleted and added files
+	 * <p>
+	 * The time spent detecting renames is reported as the
+	 * {@link #STAGE_RENAMES} timing.
+	 *
+	 * @param renameDetection
+	 *            may be null to use the default rename detection of the diffs
+	 */
+	public void setRenameDetection(RenameDetection renameDetection) {
+		this.renameDetection = renameDetection;
+	}
+
+	/**
+	 * @return renameDetection
+	 */
+	public RenameDetection getRenameDetection() {
+		return renameDetection;
+	}
+
+	/**
+	 * Set exclusion of generated, vendored, large and binary files from the
+	 * line diffs
+	 * <p>
+	 * Excluded files are still listed as changed files and the exclusion keeps
+	 * the number of files and bytes it skipped.
+	 *
+	 * @param diffExclusion
+	 *            may be null to diff all files
+	 */
+	public void setDiffExclusion(DiffExclusion diffExclusion) {
+		this.diffExclusion = diffExclusion;
+	}
+
+	/**
+	 * @return diffExclusion
+	 */
+	public DiffExclusion getDiffExclusion() {
+		return diffExclusion;
+	}
+
+	/**
+	 * Set line diff of changed files
+	 * <p>
+	 * A count only line diff is faster since the report only uses the number
+	 * of lines added, edited and deleted.
+	 *
+	 * @param lineDiff
+	 *            may be null to use the default histogram diff
+	 */
+	public void setLineDiff(LineDiff lineDiff) {
+		this.lineDiff = lineDiff;
+	}
+
+	/**
+	 * @return lineDiff
+	 */
+	public LineDiff getLineDiff() {
+		return lineDiff;
+	}
+
+	/**
+	 * Set metrics to record the stages of each run in
+	 * <p>
+	 * Stage times are recorded in the metrics along with the commits walked,
+	 * the blobs read for line diffs and the blob cache hits and misses.
+	 *
+	 * @param metrics
+	 *            may be null
+	 */
+	public void setMetrics(ReportMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return metrics
+	 */
+	public ReportMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Set progress to update as each run walks commits and to check for
+	 * cancellation and a passed deadline
+	 * <p>
+	 * Progress is checked at every commit walked, every file diffed between
+	 * the release end points and every commit walked finding first timers.
+	 *
+	 * @param progress
+	 *            may be null
+	 */
+	public void setProgress(ReportProgress progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * @return progress
+	 */
+	public ReportProgress getProgress() {
+		return progress;
+	}
+
+	private void start(String stage) {
+		if (progress != null)
+			progress.start(stage, -1);
+	}
+
+	/**
+	 * Get line diff to use with the exclusion
+	 *
+	 * @return line diff or null to use the default diffs of the filters
+	 */
+	private LineDiff resolveLineDiff(DiffExclusion exclusion) {
+		if (lineDiff != null)
+			return lineDiff;
+		return exclusion != null || metrics != null ? LineDiff.DEFAULT : null;
+	}
+
+	private CommitGraph getGraph() {
+		return pathFilter == null ? commitGraph : null;
+	}
+
+	/**
+	 * Get time spent in each stage of the last run
+	 *
+	 * @return map of stage names to milliseconds, in the order run
+	 */
+	public Map<String, Long> getTimings() {
+		return timings;
+	}
+
+	/**
+	 * @return number of blob reads served from the blob cache in the last run
+	 */
+	public int getBlobCacheHits() {
+		return blobCacheHits;
+	}
+
+	/**
+	 * @return number of blob reads not served from the blob cache in the last
+	 *         run
+	 */
+	public int getBlobCacheMisses() {
+		return blobCacheMisses;
+	}
+
 	/**
 	 * @param projectName
 	 */
@@ -289,15 +531,7 @@ public class ReleaseReport {
 	 */
 	public int getAuthoredCommits(String name) {
 		Set<String> emails = namesToEmails.get(name);
-		if (emails == null)
-			return 0;
-		int count = 0;
-		for (String email : emails) {
-			UserCommitActivity activity = authorHistogram.getActivity(email);
-			if (activity != null)
-				count += activity.getCount();
-		}
-		return count;
+		return emails != null ? identities.getAuthored(emails) : 0;
 	}
 
 	/**
@@ -308,15 +542,7 @@ public class ReleaseReport {
 	 */
 	public int getCommittedCommits(String name) {
 		Set<String> emails = namesToEmails.get(name);
-		if (emails == null)
-			return 0;
-		int count = 0;
-		for (String email : emails) {
-			UserCommitActivity activity = committerHistogram.getActivity(email);
-			if (activity != null)
-				count += activity.getCount();
-		}
-		return count;
+		return emails != null ? identities.getCommitted(emails) : 0;
 	}
 
 	/**
@@ -382,8 +608,118 @@ public class ReleaseReport {
 		return CommitUtils.getCommit(repository, id);
 	}
 
+	/**
+	 * Get merge base of two revisions, usually the release branch and the
+	 * previous release, to run this report from
+	 * <p>
+	 * The merge base is computed from the commit graph when one is set, after
+	 * loading it and indexing both revisions, instead of walking the
+	 * repository.
+	 *
+	 * @param repository
+	 * @param revision1
+	 * @param revision2
+	 * @return merge base or null if the revisions share no history
+	 * @throws IOException
+	 */
+	public ObjectId getMergeBase(Repository repository, String revision1,
+			String revision2) throws IOException {
+		CommitGraph graph = commitGraph;
+		if (graph == null) {
+			RevCommit base = CommitUtils.getBase(repository, revision1,
+					revision2);
+			return base != null ? base.copy() : null;
+		}
+		RevCommit commit1 = CommitUtils.getCommit(repository, revision1);
+		RevCommit commit2 = CommitUtils.getCommit(repository, revision2);
+		graph.load();
+		graph.update(repository, commit1, commit2);
+		return graph.getMergeBase(commit1, commit2);
+	}
+
+	/**
+	 * Get summary of commit
+	 * <p>
+	 * Summaries of all the commits included in this report are captured when
+	 * the report is run, any other commit is read from the repository.
+	 *
+	 * @param id
+	 * @return summary
+	 */
+	public CommitSummary getCommitSummary(ObjectId id) {
+		CommitSummary summary = commitSummaries.get(id);
+		return summary != null ? summary : new CommitSummary(parseCommit(id));
+	}
+
+	private void walk(CommitFilter filter, RevWalk walk) throws IOException {
+		filter.setRepository(repository);
+		final ReportProgress progress = this.progress;
+		try {
+			CommitGraph graph = getGraph();
+			if (graph != null) {
+				List<ObjectId> range = graph.getRange(start, end);
+				if (progress != null)
+					progress.start(STAGE_WALK, range.size());
+				for (ObjectId id : range) {
+					if (progress != null)
+						progress.commit();
+					if (!filter.include(walk, walk.parseCommit(id)))
+						break;
+				}
+			} else {
+				if (progress != null)
+					progress.start(STAGE_WALK, progress.getWalkEstimate());
+				if (pathFilter != null)
+					walk.setRevFilter(new PathChangeFilter(pathFilter));
+				walk.markStart(walk.parseCommit(start));
+				if (end != null)
+					walk.markUninteresting(walk.parseCommit(end));
+				RevCommit commit;
+				while ((commit = walk.next()) != null) {
+					if (progress != null)
+						progress.commit();
+					if (!filter.include(walk, commit))
+						break;
+				}
+			}
+		} catch (StopWalkException ignored) {
+			// Filter ended the walk early
+		}
+	}
+
+	private void time(String stage, long start) {
+		timing(stage, System.nanoTime() - start);
+	}
+
+	private void timing(String stage, long time) {
+		timings.put(stage, Long.valueOf(time / 1000000L));
+		if (metrics != null)
+			metrics.stage(stage, time);
+	}
+
+	/**
+	 * Detect renames and add the time spent to this run's rename time
+	 * <p>
+	 * The time is measured here rather than read from the shared detection
+	 * since other reports may be using it concurrently.
+	 */
+	private Collection<DiffEntry> detectRenames(RenameDetection renames,
+			ObjectReader reader, Collection<DiffEntry> diffs)
+			throws IOException {
+		long start = System.nanoTime();
+		try {
+			return renames.compute(reader, diffs);
+		} finally {
+			renameTime += System.nanoTime() - start;
+		}
+	}
+
 	/**
 	 * Generate report for repository
+	 * <p>
+	 * The commit walk, the per-commit diffs and the diff between the release
+	 * end points all read through a single object reader that caches blob
+	 * contents so blobs shared between them are only inflated once.
 	 *
 	 * @param repository
 	 * @param start
@@ -394,68 +730,224 @@ public class ReleaseReport {
 			final String end) throws IOException {
 		this.repository = repository;
 		this.start = CommitUtils.getCommit(repository, start);
+		renameTime = 0;
 		LastCommitFilter last = null;
 		if (end != null)
 			this.end = CommitUtils.getCommit(repository, end);
 		else
 			last = new LastCommitFilter();
 
-		CommitFinder finder = new CommitFinder(repository);
 		AuthorSetFilter authorsFilter = new AuthorSetFilter();
 		CommitterSetFilter committersFilter = new CommitterSetFilter();
 		CommitCountFilter countFilter = new CommitCountFilter();
-		AuthorHistogramFilter authorHistogramFilter = new AuthorHistogramFilter();
-		CommitterHistogramFilter committerHistogramFilter = new CommitterHistogramFilter();
-		CommitLineImpactFilter lineImpactFilter = new CommitLineImpactFilter(10);
+		IdentityCountFilter identityCountFilter = new IdentityCountFilter();
+		final DiffExclusion exclusion = diffExclusion;
+		final LineDiff lines = resolveLineDiff(exclusion);
+		final ReportMetrics metrics = this.metrics;
+		CommitLineImpactFilter lineImpactFilter = new CommitLineImpactFilter(10) {
+
+			public boolean include(RevWalk walker, RevCommit commit,
+					Collection<DiffEntry> diffs) {
+				if (lines == null)
+					return super.include(walker, commit, diffs);
+				return lines.diff(walker, commit, diffs, exclusion, metrics,
+						repository, new LineDiff.FileEdits() {
+
+							public void start(RevCommit commit) {
+								markStart(commit);
+							}
+
+							public boolean file(RevCommit commit,
+									DiffEntry diff, Collection<Edit> edits) {
+								return include(commit, diff, edits);
+							}
+
+							public void end(RevCommit commit) {
+								markEnd(commit);
+							}
+						}) || include(false);
+			}
+		};
 		CommitFileImpactFilter fileImpactFilter = new CommitFileImpactFilter(10);
+		final RenameDetection renames = renameDetection;
+		TimedCommitFilter diffFilter = new TimedCommitFilter(new AllDiffFilter(
+				renames == null, lineImpactFilter, fileImpactFilter) {
+
+			protected TreeWalk createTreeWalk(RevWalk walker, RevCommit commit) {
+				return PathScopeFilter.apply(
+						super.createTreeWalk(walker, commit), pathFilter);
+			}
+
+			public boolean include(RevWalk walker, RevCommit commit,
+					Collection<DiffEntry> diffs) throws IOException {
+				if (renames != null)
+					diffs = detectRenames(renames, walker.getObjectReader(),
+							diffs);
+				return super.include(walker, commit, diffs);
+			}
+		});
 
 		AllCommitFilter matcher = new AllCommitFilter();
 		matcher.add(authorsFilter, committersFilter);
-		matcher.add(authorHistogramFilter, committerHistogramFilter);
-		matcher.add(new AllDiffFilter(true, lineImpactFilter, fileImpactFilter));
+		matcher.add(identityCountFilter);
+		matcher.add(diffFilter);
 		matcher.add(countFilter);
 		if (last != null)
 			matcher.add(last);
 
-		finder.setMatcher(new AllCommitFilter(new AndCommitFilter(NO_MERGES,
-				matcher)));
-		if (end != null)
-			finder.findBetween(start, end);
-		else
-			finder.findFrom(start);
-		if (last != null)
-			this.end = last.getLast();
+		BlobCachingReader reader = new BlobCachingReader(
+				repository.newObjectReader());
+		RevWalk walk = new RevWalk(reader);
+		CommitGraph graph = getGraph();
+		long walkTime = 0;
+		try {
+			long time = System.nanoTime();
+			if (graph != null) {
+				graph.load();
+				graph.update(repository, this.start, this.end);
+			}
+			walk(new AllCommitFilter(new AndCommitFilter(NO_MERGES, matcher)),
+					walk);
+			if (last != null)
+				this.end = last.getLast();
+			walkTime = System.nanoTime() - time;
+			timing(STAGE_WALK, walkTime - diffFilter.getTime());
+			timing(STAGE_COMMIT_DIFFS, diffFilter.getTime());
+
+			for (CommitImpact impact : fileImpactFilter.getCommits())
+				commitSummaries.addIfAbsent(new CommitSummary(walk
+						.parseCommit(impact.getCommit())));
+			for (CommitImpact impact : lineImpactFilter.getCommits())
+				commitSummaries.addIfAbsent(new CommitSummary(walk
+						.parseCommit(impact.getCommit())));
+
+			time = System.nanoTime();
+			start(STAGE_ENDPOINT_DIFF);
+			diffEndpoints(walk);
+			time(STAGE_ENDPOINT_DIFF, time);
+			if (renames != null)
+				timing(STAGE_RENAMES, renameTime);
+		} finally {
+			blobCacheHits = reader.getHits();
+			blobCacheMisses = reader.getMisses();
+			if (metrics != null)
+				metrics.addCacheHits(blobCacheHits, blobCacheMisses);
+			walk.release();
+		}
 
 		mostFiles = fileImpactFilter.getCommits();
 		mostLines = lineImpactFilter.getCommits();
-		authorHistogram = authorHistogramFilter.getHistogram();
-		committerHistogram = committerHistogramFilter.getHistogram();
-
-		namesToEmails.putAll(RepositoryUtils.mapNamesToEmails(authorsFilter
-				.getPersons()));
-		for (PersonIdent person : authorsFilter.getPersons())
-			authors.add(person.getName());
-
-		namesToEmails.putAll(RepositoryUtils.mapNamesToEmails(committersFilter
-				.getPersons()));
-		for (PersonIdent person : committersFilter.getPersons())
-			committers.add(person.getName());
-
+		identities = identityCountFilter.getTable();
 		commits = countFilter.getCount();
+		if (metrics != null)
+			metrics.addCommits(commits, walkTime);
+
+		long time = System.nanoTime();
+		start(STAGE_IDENTITIES);
+		Map<String, Set<String>> authorNamesToEmails = Identities
+				.merge(authorsFilter.getPersons());
+		namesToEmails.putAll(authorNamesToEmails);
+		authors.addAll(authorNamesToEmails.keySet());
+
+		Map<String, Set<String>> committerNamesToEmails = Identities
+				.merge(committersFilter.getPersons());
+		namesToEmails.putAll(committerNamesToEmails);
+		committers.addAll(committerNamesToEmails.keySet());
+		time(STAGE_IDENTITIES, time);
+
+		time = System.nanoTime();
+		start(STAGE_FIRST_TIMERS);
+		if (graph != null) {
+			Set<String> emails = new HashSet<String>();
+			for (Set<String> authorEmails : authorNamesToEmails.values())
+				emails.addAll(authorEmails);
+			Set<String> previous = graph.findAuthors(this.end, emails);
+			for (Entry<String, Set<String>> author : authorNamesToEmails
+					.entrySet())
+				if (Collections.disjoint(previous, author.getValue()))
+					firstTimers.add(author.getKey());
+			graph.save();
+		} else {
+			PreviousAuthorFilter firstTimerFilter = new PreviousAuthorFilter(
+					authorNamesToEmails);
+			CommitFinder finder = new CommitFinder(repository);
+			if (pathFilter != null)
+				finder.setFilter(new PathChangeFilter(pathFilter));
+			if (progress != null)
+				finder.setMatcher(new AllCommitFilter(new ProgressFilter(
+						progress), firstTimerFilter));
+			else
+				finder.setMatcher(firstTimerFilter);
+			finder.findFrom(this.end);
+			firstTimers.addAll(firstTimerFilter.getUnseen());
+		}
+		time(STAGE_FIRST_TIMERS, time);
+	}
 
-		CommitDiffEditFilter releaseFilter = new CommitDiffEditFilter(true) {
+	/**
+	 * Diff the release end points to find the files and lines changed
+	 *
+	 * @param walk
+	 * @throws IOException
+	 */
+	private void diffEndpoints(RevWalk walk) throws IOException {
+		final RenameDetection renames = renameDetection;
+		final DiffExclusion exclusion = diffExclusion;
+		final LineDiff lines = resolveLineDiff(exclusion);
+		final ReportMetrics metrics = this.metrics;
+		final ReportProgress progress = this.progress;
+		CommitDiffEditFilter releaseFilter = new CommitDiffEditFilter(
+				renames == null) {
 
 			protected TreeWalk createTreeWalk(RevWalk walker, RevCommit commit) {
-				TreeWalk walk = TreeUtils.diffWithCommits(repository, end,
-						commit.name());
+				TreeWalk walk = new TreeWalk(walker.getObjectReader());
+				try {
+					walk.addTree(walker.parseTree(end));
+					walk.addTree(commit.getTree());
+				} catch (IOException e) {
+					throw new GitException(e, repository);
+				}
+				walk.setFilter(TreeFilter.ANY_DIFF);
 				walk.setRecursive(true);
-				return walk;
+				return PathScopeFilter.apply(walk, pathFilter);
+			}
+
+			public boolean include(RevWalk walker, RevCommit commit,
+					Collection<DiffEntry> diffs) {
+				if (renames != null)
+					try {
+						diffs = detectRenames(renames,
+								walker.getObjectReader(), diffs);
+					} catch (IOException e) {
+						throw new GitException(e, repository);
+					}
+				if (lines == null)
+					return super.include(walker, commit, diffs);
+				return lines.diff(walker, commit, diffs, exclusion, metrics,
+						repository, new LineDiff.FileEdits() {
+
+							public void start(RevCommit commit) {
+								markStart(commit);
+							}
+
+							public boolean file(RevCommit commit,
+									DiffEntry diff, Collection<Edit> edits) {
+								return include(commit, diff, edits);
+							}
+
+							public void end(RevCommit commit) {
+								markEnd(commit);
+							}
+						}) || include(false);
 			}
 
 			protected boolean include(RevCommit commit, DiffEntry diff,
 					Collection<Edit> edits) {
+				if (progress != null)
+					progress.check();
 				switch (diff.getChangeType()) {
 				case ADD:
+				case COPY:
 					added.add(getName(diff.getNewPath()));
 					break;
 				case DELETE:
@@ -488,27 +980,6 @@ public class ReleaseReport {
 			}
 		};
 		releaseFilter.setRepository(repository);
-
-		RevWalk walk = new RevWalk(repository);
-		try {
-			releaseFilter.include(walk, this.start);
-		} finally {
-			walk.release();
-		}
-
-		AllCommitFilter firstTimerFilter = new AllCommitFilter();
-		Map<String, CommitCountFilter> otherCommits = new HashMap<String, CommitCountFilter>();
-		for (String author : authors) {
-			CommitCountFilter filter = new CommitCountFilter();
-			otherCommits.put(author, filter);
-			firstTimerFilter.add(new AndCommitFilter(new AuthorFilter(author,
-					null), filter));
-		}
-		finder.setMatcher(firstTimerFilter).findFrom(end);
-		for (String author : authors) {
-			CommitCountFilter filter = otherCommits.get(author);
-			if (filter.getCount() == 0)
-				firstTimers.add(author);
-		}
+		releaseFilter.include(walk, walk.parseCommit(start));
 	}
 }
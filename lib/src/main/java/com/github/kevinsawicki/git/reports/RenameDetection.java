@@ -0,0 +1,587 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+
+/**
+ * Rename and copy detection with a bounded cost per commit
+ * <p>
+ * Deleted and added files with the same blob are paired first by looking up
+ * the blob of each added file in a table of the deleted blobs, any further
+ * added files with that blob are copies. The remaining deleted and added files
+ * are then paired by content similarity, unless there are more candidate
+ * pairs than the configured limit in which case only the exact renames of the
+ * commit are detected.
+ * <p>
+ * Similarity scores are cached by blob pair so a pair seen again in another
+ * commit or report is never scored twice. Instances are safe to share between
+ * the concurrent diff workers of a report and between reports.
+ */
+public class RenameDetection {
+
+	/**
+	 * Default minimum similarity score of a rename
+	 */
+	public static final int DEFAULT_RENAME_SCORE = 60;
+
+	/**
+	 * Default maximum number of candidate pairs scored per commit
+	 */
+	public static final int DEFAULT_CANDIDATE_LIMIT = 10000;
+
+	/**
+	 * Default number of similarity scores cached
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 65536;
+
+	/**
+	 * Default size of the largest blob scored by content
+	 */
+	public static final int DEFAULT_BIG_FILE_THRESHOLD = 1024 * 1024;
+
+	/**
+	 * Maximum number of bytes of a line hashed as one chunk
+	 */
+	private static final int CHUNK_LENGTH = 64;
+
+	/**
+	 * Maximum number of deleted or added files of a commit compared by content
+	 */
+	private static final int MAX_FILES = 0xFFFFFF;
+
+	private static class Pair {
+
+		private final ObjectId source;
+
+		private final ObjectId target;
+
+		private final int hash;
+
+		Pair(ObjectId source, ObjectId target) {
+			this.source = source;
+			this.target = target;
+			hash = source.hashCode() * 31 + target.hashCode();
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Pair))
+				return false;
+			Pair other = (Pair) obj;
+			return source.equals(other.source) && target.equals(other.target);
+		}
+	}
+
+	/**
+	 * Diff entry pairing a deleted path with an added path
+	 */
+	private static class PairedEntry extends DiffEntry {
+
+		PairedEntry(ChangeType type, DiffEntry source, DiffEntry target,
+				int score) {
+			changeType = type;
+			oldPath = source.getOldPath();
+			oldMode = source.getOldMode();
+			oldId = source.getOldId();
+			newPath = target.getNewPath();
+			newMode = target.getNewMode();
+			newId = target.getNewId();
+			this.score = score;
+		}
+	}
+
+	/**
+	 * Line hashes and byte counts of a blob, sorted by hash
+	 */
+	private static class Index {
+
+		final int[] hashes;
+
+		final int[] counts;
+
+		final long size;
+
+		Index(int[] hashes, int[] counts, long size) {
+			this.hashes = hashes;
+			this.counts = counts;
+			this.size = size;
+		}
+	}
+
+	private static boolean isFile(FileMode mode) {
+		int type = mode.getBits() & FileMode.TYPE_MASK;
+		return type == FileMode.TYPE_FILE || type == FileMode.TYPE_SYMLINK;
+	}
+
+	private static boolean sameType(FileMode mode1, FileMode mode2) {
+		return (mode1.getBits() & FileMode.TYPE_MASK) == (mode2.getBits()
+				& FileMode.TYPE_MASK);
+	}
+
+	private static long[] grow(long[] array, int length) {
+		if (array.length >= length)
+			return array;
+		long[] grown = new long[Math.max(length, array.length * 2)];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+
+	private static int[] trim(int[] array, int length) {
+		if (array.length == length)
+			return array;
+		int[] trimmed = new int[length];
+		System.arraycopy(array, 0, trimmed, 0, length);
+		return trimmed;
+	}
+
+	/**
+	 * Hash content in chunks of lines with the number of bytes of each chunk,
+	 * combining equal hashes
+	 */
+	static Index index(byte[] content) {
+		int chunks = 0;
+		long[] entries = new long[16];
+		int start = 0;
+		while (start < content.length) {
+			int hash = 5381;
+			int end = start;
+			while (end < content.length && end - start < CHUNK_LENGTH) {
+				byte b = content[end++];
+				hash = (hash << 5) + hash + (b & 0xff);
+				if (b == '\n')
+					break;
+			}
+			entries = grow(entries, chunks + 1);
+			entries[chunks++] = ((long) hash << 32) | (end - start);
+			start = end;
+		}
+		Arrays.sort(entries, 0, chunks);
+		int[] hashes = new int[chunks];
+		int[] counts = new int[chunks];
+		int size = 0;
+		for (int i = 0; i < chunks; i++) {
+			int hash = (int) (entries[i] >> 32);
+			int count = (int) entries[i];
+			if (size > 0 && hashes[size - 1] == hash)
+				counts[size - 1] += count;
+			else {
+				hashes[size] = hash;
+				counts[size++] = count;
+			}
+		}
+		return new Index(trim(hashes, size), trim(counts, size),
+				content.length);
+	}
+
+	/**
+	 * Get similarity of two indexes as the percentage of bytes they share of
+	 * the larger of the two
+	 */
+	static int score(Index index1, Index index2) {
+		long max = Math.max(index1.size, index2.size);
+		if (max == 0)
+			return 100;
+		long common = 0;
+		int i = 0;
+		int j = 0;
+		while (i < index1.hashes.length && j < index2.hashes.length) {
+			int hash1 = index1.hashes[i];
+			int hash2 = index2.hashes[j];
+			if (hash1 < hash2)
+				i++;
+			else if (hash2 < hash1)
+				j++;
+			else
+				common += Math.min(index1.counts[i++], index2.counts[j++]);
+		}
+		return (int) (common * 100 / max);
+	}
+
+	private final Map<Pair, Integer> scores;
+
+	private int renameScore = DEFAULT_RENAME_SCORE;
+
+	private int candidateLimit = DEFAULT_CANDIDATE_LIMIT;
+
+	private long bigFileThreshold = DEFAULT_BIG_FILE_THRESHOLD;
+
+	private final AtomicLong time = new AtomicLong();
+
+	private final AtomicLong renames = new AtomicLong();
+
+	private final AtomicLong copies = new AtomicLong();
+
+	private final AtomicLong limited = new AtomicLong();
+
+	private final AtomicLong scored = new AtomicLong();
+
+	private final AtomicLong cacheHits = new AtomicLong();
+
+	/**
+	 * Create rename detection with the default cache size
+	 */
+	public RenameDetection() {
+		this(DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Create rename detection
+	 *
+	 * @param cacheSize
+	 *            number of similarity scores cached
+	 */
+	public RenameDetection(final int cacheSize) {
+		if (cacheSize < 0)
+			throw new IllegalArgumentException("Cache size cannot be negative");
+		scores = new LinkedHashMap<Pair, Integer>(16, 0.75F, true) {
+
+			private static final long serialVersionUID = 2364520417634412337L;
+
+			protected boolean removeEldestEntry(Entry<Pair, Integer> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Set minimum similarity score, as a percentage, of an added file to a
+	 * deleted file for it to be a rename
+	 *
+	 * @param renameScore
+	 * @return this detection
+	 */
+	public RenameDetection setRenameScore(int renameScore) {
+		if (renameScore < 0 || renameScore > 100)
+			throw new IllegalArgumentException(
+					"Rename score must be between 0 and 100");
+		this.renameScore = renameScore;
+		return this;
+	}
+
+	/**
+	 * @return renameScore
+	 */
+	public int getRenameScore() {
+		return renameScore;
+	}
+
+	/**
+	 * Set maximum number of deleted and added file pairs whose content is
+	 * compared for a single commit
+	 *
+	 * @param candidateLimit
+	 *            zero to only detect exact renames
+	 * @return this detection
+	 */
+	public RenameDetection setCandidateLimit(int candidateLimit) {
+		if (candidateLimit < 0)
+			throw new IllegalArgumentException(
+					"Candidate limit cannot be negative");
+		this.candidateLimit = candidateLimit;
+		return this;
+	}
+
+	/**
+	 * @return candidateLimit
+	 */
+	public int getCandidateLimit() {
+		return candidateLimit;
+	}
+
+	/**
+	 * Set size of the largest blob compared by content
+	 *
+	 * @param bigFileThreshold
+	 * @return this detection
+	 */
+	public RenameDetection setBigFileThreshold(long bigFileThreshold) {
+		this.bigFileThreshold = bigFileThreshold;
+		return this;
+	}
+
+	/**
+	 * @return bigFileThreshold
+	 */
+	public long getBigFileThreshold() {
+		return bigFileThreshold;
+	}
+
+	public String toString() {
+		return "RENAMES(" + renameScore + " " + candidateLimit + " "
+				+ bigFileThreshold + ")";
+	}
+
+	/**
+	 * @return total nanoseconds spent detecting renames
+	 */
+	public long getTime() {
+		return time.get();
+	}
+
+	/**
+	 * @return number of renames detected
+	 */
+	public long getRenames() {
+		return renames.get();
+	}
+
+	/**
+	 * @return number of copies detected
+	 */
+	public long getCopies() {
+		return copies.get();
+	}
+
+	/**
+	 * @return number of commits with more candidate pairs than the limit
+	 */
+	public long getLimited() {
+		return limited.get();
+	}
+
+	/**
+	 * @return number of pairs whose similarity was computed
+	 */
+	public long getScored() {
+		return scored.get();
+	}
+
+	/**
+	 * @return number of pair similarities found in the cache
+	 */
+	public long getCacheHits() {
+		return cacheHits.get();
+	}
+
+	/**
+	 * Pair the deleted and added files of diffs into renames and copies
+	 *
+	 * @param reader
+	 * @param diffs
+	 * @return diffs with paired files replaced by rename and copy entries
+	 * @throws IOException
+	 */
+	public List<DiffEntry> compute(ObjectReader reader,
+			Collection<DiffEntry> diffs) throws IOException {
+		long start = System.nanoTime();
+		try {
+			return pair(reader, diffs);
+		} finally {
+			time.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	private List<DiffEntry> pair(ObjectReader reader,
+			Collection<DiffEntry> diffs) throws IOException {
+		List<DiffEntry> deletes = new ArrayList<DiffEntry>();
+		List<DiffEntry> adds = new ArrayList<DiffEntry>();
+		for (DiffEntry diff : diffs)
+			if (diff.getChangeType() == ChangeType.DELETE
+					&& isFile(diff.getOldMode()))
+				deletes.add(diff);
+			else if (diff.getChangeType() == ChangeType.ADD
+					&& isFile(diff.getNewMode()))
+				adds.add(diff);
+		if (deletes.isEmpty() || adds.isEmpty())
+			return new ArrayList<DiffEntry>(diffs);
+
+		DiffEntry[] sources = deletes.toArray(new DiffEntry[deletes.size()]);
+		DiffEntry[] targets = adds.toArray(new DiffEntry[adds.size()]);
+		DiffEntry[] paired = new DiffEntry[targets.length];
+		boolean[] used = new boolean[sources.length];
+
+		Map<ObjectId, List<Integer>> sourceIds = new HashMap<ObjectId, List<Integer>>();
+		for (int s = 0; s < sources.length; s++) {
+			ObjectId id = sources[s].getOldId().toObjectId();
+			List<Integer> indexes = sourceIds.get(id);
+			if (indexes == null) {
+				indexes = new ArrayList<Integer>(1);
+				sourceIds.put(id, indexes);
+			}
+			indexes.add(Integer.valueOf(s));
+		}
+
+		int unpaired = targets.length;
+		for (int t = 0; t < targets.length; t++) {
+			DiffEntry target = targets[t];
+			List<Integer> indexes = sourceIds.get(target.getNewId()
+					.toObjectId());
+			if (indexes == null)
+				continue;
+			DiffEntry copySource = null;
+			for (int i = 0; i < indexes.size() && paired[t] == null; i++) {
+				int s = indexes.get(i).intValue();
+				DiffEntry source = sources[s];
+				if (!sameType(source.getOldMode(), target.getNewMode()))
+					continue;
+				if (!used[s]) {
+					used[s] = true;
+					paired[t] = new PairedEntry(ChangeType.RENAME, source,
+							target, 100);
+					renames.incrementAndGet();
+				} else if (copySource == null)
+					copySource = source;
+			}
+			if (paired[t] == null && copySource != null) {
+				paired[t] = new PairedEntry(ChangeType.COPY, copySource,
+						target, 100);
+				copies.incrementAndGet();
+			}
+			if (paired[t] != null)
+				unpaired--;
+		}
+
+		int remaining = 0;
+		for (boolean source : used)
+			if (!source)
+				remaining++;
+		if (remaining > 0 && unpaired > 0) {
+			if ((long) remaining * unpaired > candidateLimit
+					|| sources.length > MAX_FILES || targets.length > MAX_FILES)
+				limited.incrementAndGet();
+			else
+				pairSimilar(reader, sources, used, targets, paired);
+		}
+
+		List<DiffEntry> result = new ArrayList<DiffEntry>(diffs.size());
+		int s = 0;
+		int t = 0;
+		for (DiffEntry diff : diffs)
+			if (s < sources.length && diff == sources[s]) {
+				if (!used[s])
+					result.add(diff);
+				s++;
+			} else if (t < targets.length && diff == targets[t]) {
+				result.add(paired[t] != null ? paired[t] : diff);
+				t++;
+			} else
+				result.add(diff);
+		return result;
+	}
+
+	/**
+	 * Pair remaining deleted and added files with the highest similarity
+	 * scores first
+	 */
+	private void pairSimilar(ObjectReader reader, DiffEntry[] sources,
+			boolean[] used, DiffEntry[] targets, DiffEntry[] paired)
+			throws IOException {
+		long[] sizes = new long[sources.length + targets.length];
+		Index[] indexes = new Index[sizes.length];
+		for (int s = 0; s < sources.length; s++)
+			if (!used[s])
+				sizes[s] = size(reader, sources[s].getOldId().toObjectId());
+		for (int t = 0; t < targets.length; t++)
+			if (paired[t] == null)
+				sizes[sources.length + t] = size(reader, targets[t].getNewId()
+						.toObjectId());
+
+		long[] matches = new long[16];
+		int count = 0;
+		for (int s = 0; s < sources.length; s++) {
+			if (used[s] || sizes[s] > bigFileThreshold)
+				continue;
+			for (int t = 0; t < targets.length; t++) {
+				int target = sources.length + t;
+				if (paired[t] != null || sizes[target] > bigFileThreshold
+						|| !sameType(sources[s].getOldMode(),
+								targets[t].getNewMode()))
+					continue;
+				long min = Math.min(sizes[s], sizes[target]);
+				long max = Math.max(sizes[s], sizes[target]);
+				if (max > 0 && min * 100 < max * renameScore)
+					continue;
+				int score = score(reader, sources[s], s, targets[t], target,
+						indexes);
+				if (score < renameScore)
+					continue;
+				matches = grow(matches, count + 1);
+				matches[count++] = ((long) (100 - score) << 48)
+						| ((long) s << 24) | t;
+			}
+		}
+		Arrays.sort(matches, 0, count);
+		for (int i = 0; i < count; i++) {
+			int s = (int) (matches[i] >>> 24) & 0xFFFFFF;
+			int t = (int) matches[i] & 0xFFFFFF;
+			if (used[s] || paired[t] != null)
+				continue;
+			used[s] = true;
+			paired[t] = new PairedEntry(ChangeType.RENAME, sources[s],
+					targets[t], 100 - (int) (matches[i] >>> 48));
+			renames.incrementAndGet();
+		}
+	}
+
+	private long size(ObjectReader reader, ObjectId id) throws IOException {
+		return reader.getObjectSize(id, Constants.OBJ_BLOB);
+	}
+
+	private int score(ObjectReader reader, DiffEntry source, int sourceIndex,
+			DiffEntry target, int targetIndex, Index[] indexes)
+			throws IOException {
+		ObjectId sourceId = source.getOldId().toObjectId();
+		ObjectId targetId = target.getNewId().toObjectId();
+		Pair pair = new Pair(sourceId, targetId);
+		Integer cached;
+		synchronized (scores) {
+			cached = scores.get(pair);
+		}
+		if (cached != null) {
+			cacheHits.incrementAndGet();
+			return cached.intValue();
+		}
+
+		if (indexes[sourceIndex] == null)
+			indexes[sourceIndex] = index(reader.open(sourceId,
+					Constants.OBJ_BLOB).getCachedBytes(Integer.MAX_VALUE));
+		if (indexes[targetIndex] == null)
+			indexes[targetIndex] = index(reader.open(targetId,
+					Constants.OBJ_BLOB).getCachedBytes(Integer.MAX_VALUE));
+		int score = score(indexes[sourceIndex], indexes[targetIndex]);
+		scored.incrementAndGet();
+		synchronized (scores) {
+			scores.put(pair, Integer.valueOf(score));
+		}
+		return score;
+	}
+}
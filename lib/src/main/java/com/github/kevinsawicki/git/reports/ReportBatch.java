@@ -0,0 +1,635 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepository;
+
+/**
+ * Runner of reports for many repositories on a single bounded executor
+ * <p>
+ * Templates are parsed once and shared by every report, and JGit's window
+ * cache is shared by every repository opened in the same JVM. Each report is
+ * run and rendered on its own executor thread so outputs are written
+ * concurrently.
+ * <p>
+ * A manifest has one entry per line with whitespace separated fields:
+ *
+ * <pre>
+ * # name repository branch previous linker output
+ * egit /repos/egit origin/stable-1.2 origin/stable-1.1 https://github.com/eclipse/egit /reports/egit.html
+ * node /repos/node master - https://github.com/joyent/node /reports/node.html
+ * </pre>
+ *
+ * Entries with a previous branch generate a {@link ReleaseReport} between the
+ * branch and its base with the previous branch, all other entries generate a
+ * {@link TotalHistoryReport}. A <code>-</code> marks an empty field, blank
+ * lines and lines starting with <code>#</code> are ignored.
+ * <p>
+ * Each report records its stages in its own {@link ReportMetrics} named after
+ * the entry, including the time spent rendering. Metrics can be passed to a
+ * listener as each report runs and registered with JMX for the duration of the
+ * batch. Reports can be given a timeout after which they fail and free their
+ * executor thread, and all running reports can be cancelled.
+ */
+public class ReportBatch {
+
+	/**
+	 * Single report to generate
+	 */
+	public static class Entry {
+
+		private final String name;
+
+		private final File repository;
+
+		private final String branch;
+
+		private final String previous;
+
+		private final String linker;
+
+		private final File output;
+
+		/**
+		 * Create entry
+		 *
+		 * @param name
+		 * @param repository
+		 *            work tree or git directory
+		 * @param branch
+		 * @param previous
+		 *            may be null for a total history report
+		 * @param linker
+		 *            GitHub base URL, may be null
+		 * @param output
+		 */
+		public Entry(String name, File repository, String branch,
+				String previous, String linker, File output) {
+			if (name == null)
+				throw new IllegalArgumentException("Name cannot be null");
+			if (repository == null)
+				throw new IllegalArgumentException("Repository cannot be null");
+			if (branch == null)
+				throw new IllegalArgumentException("Branch cannot be null");
+			if (output == null)
+				throw new IllegalArgumentException("Output cannot be null");
+			this.name = name;
+			this.repository = repository;
+			this.branch = branch;
+			this.previous = previous;
+			this.linker = linker;
+			this.output = output;
+		}
+
+		/**
+		 * @return name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return repository
+		 */
+		public File getRepository() {
+			return repository;
+		}
+
+		/**
+		 * @return branch
+		 */
+		public String getBranch() {
+			return branch;
+		}
+
+		/**
+		 * @return previous
+		 */
+		public String getPrevious() {
+			return previous;
+		}
+
+		/**
+		 * @return linker
+		 */
+		public String getLinker() {
+			return linker;
+		}
+
+		/**
+		 * @return output
+		 */
+		public File getOutput() {
+			return output;
+		}
+
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**
+	 * Outcome of generating a single report
+	 */
+	public static class Result {
+
+		private final Entry entry;
+
+		private final long time;
+
+		private final Throwable error;
+
+		private final ReportMetrics metrics;
+
+		Result(Entry entry, long time, Throwable error, ReportMetrics metrics) {
+			this.entry = entry;
+			this.time = time;
+			this.error = error;
+			this.metrics = metrics;
+		}
+
+		/**
+		 * @return entry
+		 */
+		public Entry getEntry() {
+			return entry;
+		}
+
+		/**
+		 * @return milliseconds spent generating the report
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		/**
+		 * @return error or null if the report was generated
+		 */
+		public Throwable getError() {
+			return error;
+		}
+
+		/**
+		 * @return metrics of the stages completed generating the report
+		 */
+		public ReportMetrics getMetrics() {
+			return metrics;
+		}
+	}
+
+	private static String getField(String value) {
+		return "-".equals(value) ? null : value;
+	}
+
+	/**
+	 * Read entries from manifest file
+	 * <p>
+	 * Entry names must be unique since they also name the metrics of each
+	 * report
+	 *
+	 * @param manifest
+	 * @return non-null but possibly empty list of entries
+	 * @throws IOException
+	 */
+	public static List<Entry> readManifest(File manifest) throws IOException {
+		List<Entry> entries = new ArrayList<Entry>();
+		Set<String> names = new HashSet<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(manifest), Templates.ENCODING));
+		try {
+			String line;
+			int number = 0;
+			while ((line = reader.readLine()) != null) {
+				number++;
+				line = line.trim();
+				if (line.length() == 0 || line.charAt(0) == '#')
+					continue;
+				String[] fields = line.split("\\s+");
+				if (fields.length != 6)
+					throw new IOException("Invalid manifest entry at line "
+							+ number + ": " + line);
+				if (!names.add(fields[0]))
+					throw new IOException("Duplicate manifest entry name at line "
+							+ number + ": " + fields[0]);
+				entries.add(new Entry(fields[0], new File(fields[1]),
+						fields[2], getField(fields[3]), getField(fields[4]),
+						new File(fields[5])));
+			}
+		} finally {
+			reader.close();
+		}
+		return entries;
+	}
+
+	private final int threads;
+
+	private ReportMetricsListener metricsListener;
+
+	private boolean registerMetrics;
+
+	private ReportProgressListener progressListener;
+
+	private boolean commitGraphs;
+
+	private long timeout;
+
+	private final List<ReportProgress> running = new CopyOnWriteArrayList<ReportProgress>();
+
+	private volatile boolean cancelled;
+
+	/**
+	 * Create batch running one report per available processor at a time
+	 */
+	public ReportBatch() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create batch running at most the given number of reports at a time
+	 *
+	 * @param threads
+	 */
+	public ReportBatch(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Threads must be positive");
+		this.threads = threads;
+	}
+
+	/**
+	 * @return threads
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Set listener added to the metrics of every report
+	 *
+	 * @param metricsListener
+	 *            may be null
+	 * @return this batch
+	 */
+	public ReportBatch setMetricsListener(ReportMetricsListener metricsListener) {
+		this.metricsListener = metricsListener;
+		return this;
+	}
+
+	/**
+	 * @return metricsListener
+	 */
+	public ReportMetricsListener getMetricsListener() {
+		return metricsListener;
+	}
+
+	/**
+	 * Set whether the metrics of every report are registered with the platform
+	 * MBean server from the time the report starts until the batch completes
+	 *
+	 * @param registerMetrics
+	 * @return this batch
+	 */
+	public ReportBatch setRegisterMetrics(boolean registerMetrics) {
+		this.registerMetrics = registerMetrics;
+		return this;
+	}
+
+	/**
+	 * @return registerMetrics
+	 */
+	public boolean getRegisterMetrics() {
+		return registerMetrics;
+	}
+
+	/**
+	 * Set listener notified of the progress of every report
+	 *
+	 * @param progressListener
+	 *            may be null
+	 * @return this batch
+	 */
+	public ReportBatch setProgressListener(
+			ReportProgressListener progressListener) {
+		this.progressListener = progressListener;
+		return this;
+	}
+
+	/**
+	 * @return progressListener
+	 */
+	public ReportProgressListener getProgressListener() {
+		return progressListener;
+	}
+
+	/**
+	 * Set whether release reports use the {@link CommitGraph} stored in each
+	 * repository to find the release base, commit range and first timers
+	 * <p>
+	 * The graph is created the first time a report of the repository is run
+	 * and then only extended with new commits.
+	 *
+	 * @param commitGraphs
+	 * @return this batch
+	 */
+	public ReportBatch setCommitGraphs(boolean commitGraphs) {
+		this.commitGraphs = commitGraphs;
+		return this;
+	}
+
+	/**
+	 * @return commitGraphs
+	 */
+	public boolean getCommitGraphs() {
+		return commitGraphs;
+	}
+
+	/**
+	 * Set maximum time each report may take from when it starts running
+	 * <p>
+	 * A report that takes longer fails with a
+	 * {@link java.util.concurrent.CancellationException} as its error. The
+	 * deadline is checked throughout the walk and diffs and once more after
+	 * rendering, since rendering itself is never interrupted.
+	 *
+	 * @param timeout
+	 *            milliseconds or zero for no timeout
+	 * @return this batch
+	 */
+	public ReportBatch setTimeout(long timeout) {
+		if (timeout < 0)
+			throw new IllegalArgumentException("Timeout cannot be negative");
+		this.timeout = timeout;
+		return this;
+	}
+
+	/**
+	 * @return timeout in milliseconds or zero for no timeout
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Cancel all running reports and fail all reports not yet started
+	 * <p>
+	 * May be called from any thread while the batch is running.
+	 */
+	public void cancel() {
+		cancelled = true;
+		for (ReportProgress progress : running)
+			progress.cancel();
+	}
+
+	/**
+	 * Generate reports for all entries
+	 * <p>
+	 * An entry failing with an exception does not stop the batch, the
+	 * exception is returned in its result instead. Errors such as running out
+	 * of memory are not caught and fail the whole batch.
+	 * <p>
+	 * Entry names must be unique since they also name the metrics of each
+	 * report.
+	 *
+	 * @param entries
+	 * @return results in the same order as the entries
+	 * @throws IOException
+	 */
+	public List<Result> run(List<Entry> entries) throws IOException {
+		Set<String> names = new HashSet<String>();
+		for (Entry entry : entries)
+			if (!names.add(entry.getName()))
+				throw new IllegalArgumentException("Duplicate entry name: "
+						+ entry.getName());
+		Templates.preload("total-history", "release");
+		cancelled = false;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final List<ReportMetrics> registered = new CopyOnWriteArrayList<ReportMetrics>();
+		try {
+			List<Future<Result>> futures = new ArrayList<Future<Result>>(
+					entries.size());
+			for (final Entry entry : entries)
+				futures.add(executor.submit(new Callable<Result>() {
+
+					public Result call() {
+						long start = System.currentTimeMillis();
+						ReportMetrics metrics = new ReportMetrics(entry
+								.getName());
+						if (metricsListener != null)
+							metrics.addListener(metricsListener);
+						ReportProgress progress = new ReportProgress(
+								progressListener);
+						if (timeout > 0)
+							progress.setTimeout(timeout);
+						running.add(progress);
+						if (cancelled)
+							progress.cancel();
+						Throwable error = null;
+						try {
+							if (registerMetrics) {
+								metrics.register();
+								registered.add(metrics);
+							}
+							generate(entry, metrics, progress);
+							metrics.completed();
+						} catch (Exception e) {
+							error = e;
+						} finally {
+							running.remove(progress);
+						}
+						return new Result(entry, System.currentTimeMillis()
+								- start, error, metrics);
+					}
+				}));
+			List<Result> results = new ArrayList<Result>(futures.size());
+			for (Future<Result> future : futures)
+				results.add(future.get());
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			IOException ioe = new IOException("Interrupted running reports");
+			ioe.initCause(e);
+			throw ioe;
+		} catch (ExecutionException e) {
+			IOException ioe = new IOException("Exception running reports");
+			ioe.initCause(e.getCause());
+			throw ioe;
+		} finally {
+			executor.shutdownNow();
+			for (ReportMetrics metrics : registered)
+				metrics.unregister();
+		}
+	}
+
+	/**
+	 * Open repository of entry
+	 *
+	 * @param entry
+	 * @return repository
+	 * @throws IOException
+	 */
+	protected Repository openRepository(Entry entry) throws IOException {
+		File gitDir = new File(entry.getRepository(), ".git");
+		if (!gitDir.isDirectory())
+			gitDir = entry.getRepository();
+		Repository repository = new FileRepository(gitDir);
+		if (!repository.getObjectDatabase().exists()) {
+			repository.close();
+			throw new IOException("Repository not found: "
+					+ entry.getRepository());
+		}
+		return repository;
+	}
+
+	/**
+	 * Run and render report of entry
+	 *
+	 * @param entry
+	 * @param metrics
+	 *            metrics to record the stages of the report in
+	 * @param progress
+	 *            progress to update and check for cancellation
+	 * @throws IOException
+	 */
+	protected void generate(Entry entry, ReportMetrics metrics,
+			ReportProgress progress) throws IOException {
+		Linker linker = null;
+		if (entry.getLinker() != null)
+			linker = new GitHubLinker().setBase(entry.getLinker());
+
+		Object report;
+		String template;
+		Repository repository = openRepository(entry);
+		try {
+			if (entry.getPrevious() != null) {
+				ReleaseReport release = new ReleaseReport();
+				release.setProjectName(entry.getName());
+				release.setProjectVersion(entry.getBranch());
+				release.setLinker(linker);
+				release.setMetrics(metrics);
+				release.setProgress(progress);
+				if (commitGraphs)
+					release.setCommitGraph(new CommitGraph(repository));
+				ObjectId base = release.getMergeBase(repository,
+						entry.getBranch(), entry.getPrevious());
+				if (base == null)
+					throw new IOException("No merge base of "
+							+ entry.getBranch() + " and " + entry.getPrevious());
+				release.run(repository, entry.getBranch(), base.name());
+				report = release;
+				template = "release";
+			} else {
+				TotalHistoryReport total = new TotalHistoryReport();
+				total.setProjectName(entry.getName());
+				total.setProjectVersion(entry.getBranch());
+				total.setLinker(linker);
+				total.setMetrics(metrics);
+				total.setProgress(progress);
+				total.run(repository, entry.getBranch());
+				report = total;
+				template = "total-history";
+			}
+		} finally {
+			repository.close();
+		}
+		progress.start(ReportMetrics.STAGE_RENDER, -1);
+		render(Templates.getTemplate(template), report, entry.getOutput(),
+				metrics);
+		progress.check();
+	}
+
+	private void render(Template template, Object report, File output,
+			ReportMetrics metrics) throws IOException {
+		File parent = output.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+			throw new IOException("Unable to create directory: " + parent);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(output), Templates.ENCODING));
+		try {
+			Templates.render(template, report, writer, metrics);
+		} catch (TemplateException e) {
+			IOException ioe = new IOException("Exception rendering "
+					+ output);
+			ioe.initCause(e);
+			throw ioe;
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Run all entries of a manifest
+	 * <p>
+	 * Arguments are the manifest file, an optional number of threads and an
+	 * optional timeout of each report in seconds
+	 *
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err
+					.println("Usage: ReportBatch manifest [threads] [timeout seconds]");
+			System.exit(1);
+		}
+		ReportBatch batch = args.length > 1 ? new ReportBatch(
+				Integer.parseInt(args[1])) : new ReportBatch();
+		if (args.length > 2)
+			batch.setTimeout(Long.parseLong(args[2]) * 1000L);
+		int failed = 0;
+		for (Result result : batch.run(readManifest(new File(args[0])))) {
+			if (result.getError() != null) {
+				failed++;
+				System.err.println(result.getEntry() + " failed: "
+						+ result.getError());
+			} else
+				System.out.println(result.getEntry() + " generated in "
+						+ result.getTime() + "ms "
+						+ result.getMetrics().getStageTimes());
+		}
+		if (failed > 0)
+			System.exit(1);
+	}
+}
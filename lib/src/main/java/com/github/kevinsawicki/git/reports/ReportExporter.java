@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Map.Entry;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.gitective.core.filter.commit.CommitImpact;
+
+import com.github.kevinsawicki.git.reports.TotalHistoryReport.LineStats;
+import com.github.kevinsawicki.git.reports.TotalHistoryReport.PersonSummary;
+
+/**
+ * Exporter of the aggregates of a report that has been run as JSON or as a
+ * compact binary form
+ * <p>
+ * Exported data contains everything the templates render so tools can load
+ * reports without walking the repository again.
+ */
+public class ReportExporter {
+
+	/**
+	 * Write report as JSON
+	 *
+	 * @param report
+	 * @param writer
+	 * @throws IOException
+	 */
+	public static void writeJson(TotalHistoryReport report, Writer writer)
+			throws IOException {
+		new ReportExporter(new JsonReportWriter(writer)).export(report);
+	}
+
+	/**
+	 * Write report as JSON
+	 *
+	 * @param report
+	 * @param writer
+	 * @throws IOException
+	 */
+	public static void writeJson(ReleaseReport report, Writer writer)
+			throws IOException {
+		new ReportExporter(new JsonReportWriter(writer)).export(report);
+	}
+
+	/**
+	 * Write report in binary form
+	 *
+	 * @param report
+	 * @param output
+	 * @throws IOException
+	 */
+	public static void writeBinary(TotalHistoryReport report,
+			OutputStream output) throws IOException {
+		new ReportExporter(new BinaryReportWriter(output)).export(report);
+	}
+
+	/**
+	 * Write report in binary form
+	 *
+	 * @param report
+	 * @param output
+	 * @throws IOException
+	 */
+	public static void writeBinary(ReleaseReport report, OutputStream output)
+			throws IOException {
+		new ReportExporter(new BinaryReportWriter(output)).export(report);
+	}
+
+	private final ReportWriter writer;
+
+	/**
+	 * Create exporter
+	 *
+	 * @param writer
+	 */
+	public ReportExporter(ReportWriter writer) {
+		if (writer == null)
+			throw new IllegalArgumentException("Writer cannot be null");
+		this.writer = writer;
+	}
+
+	private void member(String name, long value) throws IOException {
+		writer.name(name).value(value);
+	}
+
+	private void member(String name, String value) throws IOException {
+		writer.name(name).value(value);
+	}
+
+	private void commit(String name, RevCommit commit) throws IOException {
+		writer.name(name);
+		if (commit != null) {
+			writer.beginObject();
+			member("id", commit.name());
+			member("author", commit.getAuthorIdent().getName());
+			member("time", commit.getAuthorIdent().getWhen().getTime());
+			writer.endObject();
+		} else
+			writer.value(null);
+	}
+
+	private void strings(String name, Collection<String> values)
+			throws IOException {
+		writer.name(name).beginArray();
+		if (values != null)
+			for (String value : values)
+				writer.value(value);
+		writer.endArray();
+	}
+
+	private void stats(String name, LineStats stats) throws IOException {
+		writer.name(name).beginObject();
+		member("add", stats.getAdd());
+		member("edit", stats.getEdit());
+		member("delete", stats.getDelete());
+		writer.endObject();
+	}
+
+	private void summary(AnyObjectId id, CommitSummary summary)
+			throws IOException {
+		member("commit", id.name());
+		member("author", summary.getAuthorName());
+	}
+
+	private void impact(CommitImpact impact, CommitSummary summary)
+			throws IOException {
+		writer.beginObject();
+		summary(impact.getCommit(), summary);
+		member("add", impact.getAdd());
+		member("edit", impact.getEdit());
+		member("delete", impact.getDelete());
+		writer.endObject();
+	}
+
+	private void impacts(String name, TotalHistoryReport report,
+			Collection<CommitImpact> impacts) throws IOException {
+		writer.name(name).beginArray();
+		for (CommitImpact impact : impacts)
+			impact(impact, report.getCommitSummary(impact.getCommit()));
+		writer.endArray();
+	}
+
+	private void impacts(String name, ReleaseReport report,
+			Collection<CommitImpact> impacts) throws IOException {
+		writer.name(name).beginArray();
+		if (impacts != null)
+			for (CommitImpact impact : impacts)
+				impact(impact, report.getCommitSummary(impact.getCommit()));
+		writer.endArray();
+	}
+
+	private void buckets(String name, HistoryBuckets buckets)
+			throws IOException {
+		writer.name(name).beginArray();
+		for (int i = 0; i < buckets.getSize(); i++) {
+			writer.beginObject();
+			member("start", buckets.getDate(i).getTime());
+			member("commits", buckets.getCommits(i));
+			member("authors", buckets.getAuthors(i));
+			member("linesAdded", buckets.getLinesAdded(i));
+			member("linesEdited", buckets.getLinesEdited(i));
+			member("linesDeleted", buckets.getLinesDeleted(i));
+			member("filesAdded", buckets.getFilesAdded(i));
+			member("filesModified", buckets.getFilesEdited(i));
+			member("filesDeleted", buckets.getFilesDeleted(i));
+			writer.endObject();
+		}
+		writer.endArray();
+	}
+
+	private void scopes(String name, TotalHistoryReport report)
+			throws IOException {
+		PathBreakdown breakdown = report.getBreakdown();
+		writer.name(name).beginArray();
+		for (Integer scope : report.getScopes()) {
+			int i = scope.intValue();
+			writer.beginObject();
+			member("path", breakdown.getPath(i));
+			member("commits", breakdown.getCommits(i));
+			member("linesAdded", breakdown.getLinesAdded(i));
+			member("linesEdited", breakdown.getLinesEdited(i));
+			member("linesDeleted", breakdown.getLinesDeleted(i));
+			member("filesAdded", breakdown.getFilesAdded(i));
+			member("filesModified", breakdown.getFilesEdited(i));
+			member("filesDeleted", breakdown.getFilesDeleted(i));
+			strings("authors", report.getScopeAuthors(i));
+			writer.endObject();
+		}
+		writer.endArray();
+	}
+
+	/**
+	 * Export total history report
+	 *
+	 * @param report
+	 * @throws IOException
+	 */
+	public void export(TotalHistoryReport report) throws IOException {
+		writer.beginObject();
+		member("type", "total");
+		member("projectName", report.getProjectName());
+		member("projectVersion", report.getProjectVersion());
+		commit("start", report.getStart());
+		commit("end", report.getEnd());
+		member("commits", report.getCommits());
+		member("merges", report.getMerges());
+		member("linesAdded", report.getLinesAdded());
+		member("linesEdited", report.getLinesEdited());
+		member("linesDeleted", report.getLinesDeleted());
+		member("filesAdded", report.getAdded());
+		member("filesModified", report.getModified());
+		member("filesDeleted", report.getDeleted());
+
+		writer.name("authors").beginArray();
+		for (String author : report.getAuthors()) {
+			PersonSummary summary = report.getSummary(author);
+			writer.beginObject();
+			member("name", author);
+			member("commits", summary.getAuthoredCommits());
+			stats("lines", summary.getLineImpact());
+			stats("files", summary.getFileImpact());
+			writer.endObject();
+		}
+		writer.endArray();
+
+		writer.name("committers").beginArray();
+		for (String committer : report.getCommitters()) {
+			writer.beginObject();
+			member("name", committer);
+			member("commits", report.getCommittedCommits(committer));
+			writer.endObject();
+		}
+		writer.endArray();
+
+		impacts("mostLines", report, report.getMostLines());
+		impacts("mostFiles", report, report.getMostFiles());
+
+		member("mergeConflictCount", report.getMergeConflictCount());
+		writer.name("mergeConflicts").beginArray();
+		for (RevCommit commit : report.getMergeConflicts()) {
+			writer.beginObject();
+			summary(commit, report.getCommitSummary(commit));
+			writer.endObject();
+		}
+		writer.endArray();
+
+		member("duplicateCount", report.getDupeCommitCount());
+		writer.name("duplicates").beginArray();
+		for (RevCommit commit : report.getDupeCommits()) {
+			writer.beginObject();
+			summary(commit, report.getCommitSummary(commit));
+			member("blobs", report.getDupeCount(commit));
+			writer.endObject();
+		}
+		writer.endArray();
+
+		buckets("weeks", report.getWeeks());
+		buckets("months", report.getMonths());
+		scopes("paths", report);
+		strings("files", report.getFiles());
+		writer.endObject();
+		writer.flush();
+	}
+
+	/**
+	 * Export release report
+	 *
+	 * @param report
+	 * @throws IOException
+	 */
+	public void export(ReleaseReport report) throws IOException {
+		writer.beginObject();
+		member("type", "release");
+		member("projectName", report.getProjectName());
+		member("projectVersion", report.getProjectVersion());
+		commit("start", report.getStart());
+		commit("end", report.getEnd());
+		member("commits", report.getCommits());
+		member("linesAdded", report.getLinesAdded());
+		member("linesEdited", report.getLinesEdited());
+		member("linesDeleted", report.getLinesDeleted());
+		strings("added", report.getAdded());
+		strings("modified", report.getModified());
+		strings("deleted", report.getDeleted());
+		strings("renamed", report.getRenamed());
+		strings("files", report.getFiles());
+
+		writer.name("authors").beginArray();
+		for (String author : report.getAuthors()) {
+			writer.beginObject();
+			member("name", author);
+			member("commits", report.getAuthoredCommits(author));
+			writer.endObject();
+		}
+		writer.endArray();
+
+		writer.name("committers").beginArray();
+		for (String committer : report.getCommitters()) {
+			writer.beginObject();
+			member("name", committer);
+			member("commits", report.getCommittedCommits(committer));
+			writer.endObject();
+		}
+		writer.endArray();
+
+		strings("firstTimers", report.getFirstTimers());
+		impacts("mostLines", report, report.getMostLines());
+		impacts("mostFiles", report, report.getMostFiles());
+
+		writer.name("timings").beginObject();
+		for (Entry<String, Long> timing : report.getTimings().entrySet())
+			member(timing.getKey(), timing.getValue().longValue());
+		writer.endObject();
+		writer.endObject();
+		writer.flush();
+	}
+}
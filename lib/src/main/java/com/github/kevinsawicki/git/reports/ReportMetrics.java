@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+/**
+ * Metrics of report runs
+ * <p>
+ * Reports record the time spent in each stage of a run along with the number
+ * of commits walked, blobs read for line diffs, bytes read and blob cache
+ * hits. Metrics accumulate over all runs recorded until {@link #reset()} is
+ * called and are safe to read while a report is running, such as through JMX
+ * after {@link #register()}.
+ * <p>
+ * Line diffs of blobs are only counted when the report reads them itself, so
+ * commits whose stats come from a {@link CommitStatsCache} or snapshot are
+ * walked without any blobs being read.
+ */
+public class ReportMetrics implements ReportMetricsMBean {
+
+	/**
+	 * Stage rendering a report with a template
+	 */
+	public static final String STAGE_RENDER = "render";
+
+	/**
+	 * Domain of registered metrics
+	 */
+	public static final String DOMAIN = "com.github.kevinsawicki.git.reports";
+
+	private static final String[] STAGE_ITEMS = { "stage", "time" };
+
+	private static final CompositeType STAGE_TYPE;
+
+	private static final TabularType STAGES_TYPE;
+
+	static {
+		try {
+			STAGE_TYPE = new CompositeType("Stage",
+					"Time spent in a stage of a report", STAGE_ITEMS,
+					new String[] { "Stage name", "Milliseconds" },
+					new OpenType<?>[] { SimpleType.STRING, SimpleType.LONG });
+			STAGES_TYPE = new TabularType("Stages",
+					"Time spent in each stage of a report", STAGE_TYPE,
+					new String[] { STAGE_ITEMS[0] });
+		} catch (OpenDataException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private final String name;
+
+	private final Map<String, Long> stages = new LinkedHashMap<String, Long>();
+
+	private final AtomicLong commits = new AtomicLong();
+
+	private final AtomicLong walkTime = new AtomicLong();
+
+	private final AtomicLong blobs = new AtomicLong();
+
+	private final AtomicLong bytes = new AtomicLong();
+
+	private final AtomicLong cacheHits = new AtomicLong();
+
+	private final AtomicLong cacheMisses = new AtomicLong();
+
+	private final List<ReportMetricsListener> listeners = new CopyOnWriteArrayList<ReportMetricsListener>();
+
+	private ObjectName objectName;
+
+	/**
+	 * Create metrics
+	 *
+	 * @param name
+	 *            name of the report, such as the project name
+	 */
+	public ReportMetrics(String name) {
+		if (name == null)
+			throw new IllegalArgumentException("Name cannot be null");
+		if (name.length() == 0)
+			throw new IllegalArgumentException("Name cannot be empty");
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Add listener
+	 *
+	 * @param listener
+	 * @return this metrics
+	 */
+	public ReportMetrics addListener(ReportMetricsListener listener) {
+		if (listener == null)
+			throw new IllegalArgumentException("Listener cannot be null");
+		listeners.add(listener);
+		return this;
+	}
+
+	/**
+	 * Remove listener
+	 *
+	 * @param listener
+	 * @return this metrics
+	 */
+	public ReportMetrics removeListener(ReportMetricsListener listener) {
+		listeners.remove(listener);
+		return this;
+	}
+
+	/**
+	 * Record time spent in stage and notify listeners
+	 * <p>
+	 * Time recorded for a stage that was already recorded is added to it.
+	 *
+	 * @param stage
+	 * @param time
+	 *            nanoseconds spent in the stage
+	 * @return this metrics
+	 */
+	public ReportMetrics stage(String stage, long time) {
+		synchronized (stages) {
+			Long total = stages.get(stage);
+			stages.put(stage,
+					Long.valueOf(total != null ? total.longValue() + time
+							: time));
+		}
+		for (ReportMetricsListener listener : listeners)
+			listener.stageCompleted(this, stage, time / 1000000L);
+		return this;
+	}
+
+	/**
+	 * Notify listeners that the report completed
+	 *
+	 * @return this metrics
+	 */
+	public ReportMetrics completed() {
+		for (ReportMetricsListener listener : listeners)
+			listener.reportCompleted(this);
+		return this;
+	}
+
+	/**
+	 * Record commits walked
+	 *
+	 * @param count
+	 * @param time
+	 *            nanoseconds spent walking and diffing the commits
+	 */
+	void addCommits(long count, long time) {
+		commits.addAndGet(count);
+		walkTime.addAndGet(time);
+	}
+
+	/**
+	 * Record blob read for a line diff
+	 *
+	 * @param size
+	 *            size of the blob in bytes
+	 */
+	void addBlob(long size) {
+		blobs.incrementAndGet();
+		bytes.addAndGet(size);
+	}
+
+	/**
+	 * Record blob cache hits and misses
+	 *
+	 * @param hits
+	 * @param misses
+	 */
+	void addCacheHits(long hits, long misses) {
+		cacheHits.addAndGet(hits);
+		cacheMisses.addAndGet(misses);
+	}
+
+	public long getCommits() {
+		return commits.get();
+	}
+
+	/**
+	 * Get commits walked per second of the time reports spent walking and
+	 * diffing them
+	 *
+	 * @return commits per second or zero if no time was recorded
+	 */
+	public double getCommitsPerSecond() {
+		long time = walkTime.get();
+		return time > 0 ? getCommits() * 1000000000D / time : 0;
+	}
+
+	public long getBlobsDiffed() {
+		return blobs.get();
+	}
+
+	public long getBytesRead() {
+		return bytes.get();
+	}
+
+	public long getCacheHits() {
+		return cacheHits.get();
+	}
+
+	public long getCacheMisses() {
+		return cacheMisses.get();
+	}
+
+	private long getStageNanos(String stage) {
+		synchronized (stages) {
+			Long time = stages.get(stage);
+			return time != null ? time.longValue() : 0;
+		}
+	}
+
+	/**
+	 * Get time spent in stage
+	 *
+	 * @param stage
+	 * @return milliseconds or zero if the stage was not recorded
+	 */
+	public long getStageTime(String stage) {
+		return getStageNanos(stage) / 1000000L;
+	}
+
+	/**
+	 * Get time spent in each stage
+	 *
+	 * @return map of stage names to milliseconds, in the order run
+	 */
+	public Map<String, Long> getStageTimes() {
+		Map<String, Long> times = new LinkedHashMap<String, Long>();
+		synchronized (stages) {
+			for (Entry<String, Long> stage : stages.entrySet())
+				times.put(stage.getKey(), Long.valueOf(stage.getValue()
+						.longValue() / 1000000L));
+		}
+		return times;
+	}
+
+	public TabularData getStages() {
+		TabularData table = new TabularDataSupport(STAGES_TYPE);
+		try {
+			for (Entry<String, Long> stage : getStageTimes().entrySet())
+				table.put(new CompositeDataSupport(STAGE_TYPE, STAGE_ITEMS,
+						new Object[] { stage.getKey(), stage.getValue() }));
+		} catch (OpenDataException e) {
+			throw new IllegalStateException(e);
+		}
+		return table;
+	}
+
+	/**
+	 * Clear all recorded stages and counters
+	 *
+	 * @return this metrics
+	 */
+	public ReportMetrics reset() {
+		synchronized (stages) {
+			stages.clear();
+		}
+		commits.set(0);
+		walkTime.set(0);
+		blobs.set(0);
+		bytes.set(0);
+		cacheHits.set(0);
+		cacheMisses.set(0);
+		return this;
+	}
+
+	/**
+	 * Register metrics with the platform MBean server under the
+	 * {@link #DOMAIN} domain with the type <code>ReportMetrics</code> and this
+	 * metrics' name
+	 *
+	 * @return this metrics
+	 * @throws IllegalStateException
+	 *             if registration fails, such as when metrics with the same
+	 *             name are already registered
+	 */
+	public synchronized ReportMetrics register() {
+		if (objectName != null)
+			return this;
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName objectName = new ObjectName(DOMAIN
+					+ ":type=ReportMetrics,name=" + ObjectName.quote(name));
+			server.registerMBean(this, objectName);
+			this.objectName = objectName;
+		} catch (JMException e) {
+			throw new IllegalStateException("Unable to register metrics: "
+					+ name, e);
+		}
+		return this;
+	}
+
+	/**
+	 * Unregister metrics from the platform MBean server
+	 *
+	 * @return this metrics
+	 */
+	public synchronized ReportMetrics unregister() {
+		if (objectName == null)
+			return this;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+					objectName);
+		} catch (JMException ignored) {
+			// Already unregistered
+		}
+		objectName = null;
+		return this;
+	}
+
+	public String toString() {
+		return name + " " + getStageTimes();
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+/**
+ * Listener notified of the stages completed by a report run
+ * <p>
+ * Stages are reported from the thread running the report, listeners should
+ * return quickly and must not throw exceptions.
+ */
+public interface ReportMetricsListener {
+
+	/**
+	 * Stage completed
+	 *
+	 * @param metrics
+	 * @param stage
+	 *            name of the stage
+	 * @param time
+	 *            milliseconds spent in the stage
+	 */
+	void stageCompleted(ReportMetrics metrics, String stage, long time);
+
+	/**
+	 * Report completed, including rendering when the metrics are recorded by
+	 * a {@link ReportBatch}
+	 *
+	 * @param metrics
+	 */
+	void reportCompleted(ReportMetrics metrics);
+}
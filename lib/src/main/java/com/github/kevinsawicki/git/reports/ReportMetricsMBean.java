@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * Management interface of {@link ReportMetrics}
+ */
+public interface ReportMetricsMBean {
+
+	/**
+	 * @return name of the report
+	 */
+	String getName();
+
+	/**
+	 * @return number of commits walked
+	 */
+	long getCommits();
+
+	/**
+	 * @return commits walked per second of walking and diffing
+	 */
+	double getCommitsPerSecond();
+
+	/**
+	 * @return number of blobs read for line diffs
+	 */
+	long getBlobsDiffed();
+
+	/**
+	 * @return number of bytes of blobs read for line diffs
+	 */
+	long getBytesRead();
+
+	/**
+	 * @return number of blob reads served from the blob cache
+	 */
+	long getCacheHits();
+
+	/**
+	 * @return number of blob reads not served from the blob cache
+	 */
+	long getCacheMisses();
+
+	/**
+	 * Get time spent in each stage as open data so any JMX client can view it
+	 *
+	 * @return table of stage names and milliseconds, keyed by stage name
+	 */
+	TabularData getStages();
+}
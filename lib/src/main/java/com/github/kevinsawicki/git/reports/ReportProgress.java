@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress, cancellation and deadline of a report run
+ * <p>
+ * Reports update the current stage and the number of commits walked in it and
+ * check for cancellation at every commit, including the commits diffed by
+ * concurrent diff workers. A cancelled run or one that passes its deadline
+ * stops with a {@link CancellationException} after releasing its readers and
+ * diff workers.
+ * <p>
+ * The estimated total is the number of commits the report expects to walk in
+ * the current stage, or -1 if unknown. Release reports with a commit graph
+ * know the exact number of commits in the release. Otherwise the estimate set
+ * through {@link #setEstimate(long)}, such as the commit count of a previous
+ * run, is used for the walk stage. Without one, total history reports estimate
+ * the walk from the commits in their stats cache that are not covered by their
+ * snapshot.
+ */
+public class ReportProgress {
+
+	/**
+	 * Default number of commits walked between progress notifications
+	 */
+	public static final int DEFAULT_INTERVAL = 1000;
+
+	private final ReportProgressListener listener;
+
+	private final int interval;
+
+	private final AtomicLong commits = new AtomicLong();
+
+	private volatile String stage;
+
+	private volatile long estimate = -1;
+
+	private volatile long walkEstimate = -1;
+
+	private volatile long deadline;
+
+	private volatile boolean cancelled;
+
+	/**
+	 * Create progress without a listener
+	 */
+	public ReportProgress() {
+		this(null);
+	}
+
+	/**
+	 * Create progress notifying listener every {@link #DEFAULT_INTERVAL}
+	 * commits
+	 *
+	 * @param listener
+	 *            may be null
+	 */
+	public ReportProgress(ReportProgressListener listener) {
+		this(listener, DEFAULT_INTERVAL);
+	}
+
+	/**
+	 * Create progress notifying listener every interval commits
+	 *
+	 * @param listener
+	 *            may be null
+	 * @param interval
+	 */
+	public ReportProgress(ReportProgressListener listener, int interval) {
+		if (interval < 1)
+			throw new IllegalArgumentException("Interval must be positive");
+		this.listener = listener;
+		this.interval = interval;
+	}
+
+	/**
+	 * @return interval
+	 */
+	public int getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Set estimated number of commits in the walk stage
+	 *
+	 * @param estimate
+	 *            number of commits or -1 if unknown
+	 * @return this progress
+	 */
+	public ReportProgress setEstimate(long estimate) {
+		walkEstimate = estimate;
+		return this;
+	}
+
+	/**
+	 * @return estimated number of commits in the walk stage or -1 if unknown
+	 */
+	long getWalkEstimate() {
+		return walkEstimate;
+	}
+
+	/**
+	 * Set wall clock time after which the run is stopped
+	 *
+	 * @param deadline
+	 *            time in milliseconds as returned by
+	 *            {@link System#currentTimeMillis()} or zero for no deadline
+	 * @return this progress
+	 */
+	public ReportProgress setDeadline(long deadline) {
+		this.deadline = deadline;
+		return this;
+	}
+
+	/**
+	 * Set deadline to the given number of milliseconds from now
+	 *
+	 * @param timeout
+	 * @return this progress
+	 */
+	public ReportProgress setTimeout(long timeout) {
+		if (timeout < 1)
+			throw new IllegalArgumentException("Timeout must be positive");
+		return setDeadline(System.currentTimeMillis() + timeout);
+	}
+
+	/**
+	 * @return deadline in milliseconds or zero for no deadline
+	 */
+	public long getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * Cancel the run
+	 * <p>
+	 * May be called from any thread, the run stops at the next commit it
+	 * walks or diffs.
+	 *
+	 * @return this progress
+	 */
+	public ReportProgress cancel() {
+		cancelled = true;
+		return this;
+	}
+
+	/**
+	 * @return true if cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return true if the deadline has passed
+	 */
+	public boolean isExpired() {
+		long deadline = this.deadline;
+		return deadline > 0 && System.currentTimeMillis() > deadline;
+	}
+
+	/**
+	 * @return current stage or null if not started
+	 */
+	public String getStage() {
+		return stage;
+	}
+
+	/**
+	 * @return number of commits walked in the current stage
+	 */
+	public long getCommits() {
+		return commits.get();
+	}
+
+	/**
+	 * @return estimated number of commits in the current stage or -1 if
+	 *         unknown
+	 */
+	public long getEstimate() {
+		return estimate;
+	}
+
+	/**
+	 * Check that the run was not cancelled and has not passed its deadline
+	 *
+	 * @throws CancellationException
+	 */
+	public void check() {
+		if (cancelled)
+			throw new CancellationException("Report cancelled during "
+					+ stage);
+		if (isExpired())
+			throw new CancellationException("Report deadline passed during "
+					+ stage);
+	}
+
+	/**
+	 * Start stage of the run and notify the listener
+	 *
+	 * @param stage
+	 * @param estimate
+	 *            number of commits in the stage or -1 if unknown
+	 */
+	void start(String stage, long estimate) {
+		check();
+		this.stage = stage;
+		this.estimate = estimate;
+		commits.set(0);
+		if (listener != null)
+			listener.progress(this);
+	}
+
+	/**
+	 * Record commit walked in the current stage
+	 */
+	void commit() {
+		check();
+		if (commits.incrementAndGet() % interval == 0 && listener != null)
+			listener.progress(this);
+	}
+
+	public String toString() {
+		return stage + " " + commits.get()
+				+ (estimate >= 0 ? "/" + estimate : "");
+	}
+}
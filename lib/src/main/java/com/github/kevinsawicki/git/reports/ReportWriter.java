@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.IOException;
+
+/**
+ * Streaming writer of structured report data
+ * <p>
+ * Values are written as they are given, nothing is buffered beyond what the
+ * underlying stream buffers, so reports of any size can be exported. Object
+ * members must be written as a {@link #name(String)} followed by a value.
+ */
+public interface ReportWriter {
+
+	/**
+	 * Begin object
+	 *
+	 * @return this writer
+	 * @throws IOException
+	 */
+	ReportWriter beginObject() throws IOException;
+
+	/**
+	 * End current object
+	 *
+	 * @return this writer
+	 * @throws IOException
+	 */
+	ReportWriter endObject() throws IOException;
+
+	/**
+	 * Begin array
+	 *
+	 * @return this writer
+	 * @throws IOException
+	 */
+	ReportWriter beginArray() throws IOException;
+
+	/**
+	 * End current array
+	 *
+	 * @return this writer
+	 * @throws IOException
+	 */
+	ReportWriter endArray() throws IOException;
+
+	/**
+	 * Write name of next object member
+	 *
+	 * @param name
+	 * @return this writer
+	 * @throws IOException
+	 */
+	ReportWriter name(String name) throws IOException;
+
+	/**
+	 * Write string value
+	 *
+	 * @param value
+	 *            may be null
+	 * @return this writer
+	 * @throws IOException
+	 */
+	ReportWriter value(String value) throws IOException;
+
+	/**
+	 * Write number value
+	 *
+	 * @param value
+	 * @return this writer
+	 * @throws IOException
+	 */
+	ReportWriter value(long value) throws IOException;
+
+	/**
+	 * Flush written values to the underlying stream
+	 *
+	 * @return this writer
+	 * @throws IOException
+	 */
+	ReportWriter flush() throws IOException;
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.IOException;
+
+import org.eclipse.jgit.errors.StopWalkException;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.gitective.core.CommitFinder;
+
+/**
+ * Commit finder that only holds the bodies of a bounded number of commits
+ * <p>
+ * A {@link CommitFinder} walk retains the raw body of every commit it visits
+ * until the walk is released, so its heap use grows with the size of all the
+ * commits walked. This finder's walk does not retain bodies. Each commit is
+ * instead given to the matcher parsed by a second walk sharing the same
+ * reader, which is replaced after every {@link #BATCH_SIZE} commits.
+ */
+class StreamingCommitFinder extends CommitFinder {
+
+	/**
+	 * Number of commits parsed by a walk before it is replaced
+	 */
+	static final int BATCH_SIZE = 1024;
+
+	/**
+	 * Create finder for repository
+	 *
+	 * @param repository
+	 */
+	StreamingCommitFinder(Repository repository) {
+		super(repository);
+	}
+
+	protected RevWalk createWalk(Repository repository) {
+		RevWalk walk = super.createWalk(repository);
+		walk.setRetainBody(false);
+		return walk;
+	}
+
+	protected CommitFinder walk(RevWalk walk) throws IOException {
+		RevFilter matcher = commitMatcher;
+		if (matcher == null)
+			return super.walk(walk);
+		RevWalk bodies = null;
+		int parsed = 0;
+		try {
+			RevCommit commit;
+			while ((commit = walk.next()) != null) {
+				if (bodies == null || parsed == BATCH_SIZE) {
+					bodies = new RevWalk(walk.getObjectReader());
+					parsed = 0;
+				}
+				parsed++;
+				if (!matcher.include(bodies, bodies.parseCommit(commit)))
+					break;
+			}
+		} catch (StopWalkException ignored) {
+			// Filter ended the walk early
+		}
+		return this;
+	}
+}
@@ -10,25 +10,45 @@
  *****************************************************************************/
 package com.github.kevinsawicki.git.reports;
 
+import freemarker.cache.StrongCacheStorage;
 import freemarker.template.Configuration;
 import freemarker.template.Template;
+import freemarker.template.TemplateException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 
 /**
  * Loader for templates
+ * <p>
+ * All templates are parsed once with a single shared configuration and then
+ * held by its template cache, templates returned from this class are safe to
+ * process concurrently. The configuration sets the output encoding so shared
+ * templates are never modified.
  */
 public class Templates {
 
 	/**
-	 * Get reader for template
-	 * 
-	 * @param name
-	 * @return reader
+	 * Encoding of all templates
 	 */
-	public static Reader getTemplateReader(String name) {
+	public static final String ENCODING = "UTF-8";
+
+	private static final Configuration CONFIGURATION = new Configuration();
+
+	static {
+		CONFIGURATION.setClassForTemplateLoading(Templates.class, "/");
+		CONFIGURATION.setDefaultEncoding(ENCODING);
+		CONFIGURATION.setOutputEncoding(ENCODING);
+		CONFIGURATION.setCacheStorage(new StrongCacheStorage());
+		CONFIGURATION.setLocalizedLookup(false);
+		CONFIGURATION.setTemplateUpdateDelay(Integer.MAX_VALUE);
+	}
+
+	private static String getFileName(String name) {
 		if (name == null)
 			throw new IllegalArgumentException("Template name cannot be null");
 		if (name.length() == 0)
@@ -36,8 +56,39 @@ public class Templates {
 
 		if (!name.endsWith(".ftl"))
 			name = name + ".ftl";
-		return new InputStreamReader(Templates.class.getClassLoader()
-				.getResourceAsStream(name));
+		return name;
+	}
+
+	/**
+	 * Get configuration shared by all templates
+	 * <p>
+	 * The configuration must not be modified once templates have been loaded
+	 *
+	 * @return configuration
+	 */
+	public static Configuration getConfiguration() {
+		return CONFIGURATION;
+	}
+
+	/**
+	 * Get reader for template
+	 * <p>
+	 * The returned reader must be closed by the caller
+	 * 
+	 * @param name
+	 * @return reader
+	 */
+	public static Reader getTemplateReader(String name) {
+		name = getFileName(name);
+		InputStream stream = Templates.class.getClassLoader()
+				.getResourceAsStream(name);
+		if (stream == null)
+			throw new IllegalArgumentException("Template not found: " + name);
+		try {
+			return new InputStreamReader(stream, ENCODING);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
 	}
 
 	/**
@@ -48,7 +99,38 @@ public class Templates {
 	 * @throws IOException
 	 */
 	public static Template getTemplate(String name) throws IOException {
-		Reader reader = getTemplateReader(name);
-		return new Template(name, reader, new Configuration());
+		return CONFIGURATION.getTemplate(getFileName(name));
+	}
+
+	/**
+	 * Render report with template and record the time spent as the
+	 * {@link ReportMetrics#STAGE_RENDER} stage
+	 *
+	 * @param template
+	 * @param report
+	 * @param writer
+	 * @param metrics
+	 *            may be null
+	 * @throws IOException
+	 * @throws TemplateException
+	 */
+	public static void render(Template template, Object report, Writer writer,
+			ReportMetrics metrics) throws IOException, TemplateException {
+		long start = System.nanoTime();
+		template.process(report, writer);
+		if (metrics != null)
+			metrics.stage(ReportMetrics.STAGE_RENDER, System.nanoTime()
+					- start);
+	}
+
+	/**
+	 * Parse and cache templates with names
+	 * 
+	 * @param names
+	 * @throws IOException
+	 */
+	public static void preload(String... names) throws IOException {
+		for (String name : names)
+			getTemplate(name);
 	}
 }
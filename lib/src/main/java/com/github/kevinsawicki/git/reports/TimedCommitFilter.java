@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.IOException;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.gitective.core.filter.commit.CommitFilter;
+
+/**
+ * Filter that records the total time spent in a wrapped filter
+ */
+public class TimedCommitFilter extends CommitFilter {
+
+	private final CommitFilter filter;
+
+	private long time;
+
+	/**
+	 * Create timed filter wrapping the given filter
+	 *
+	 * @param filter
+	 */
+	public TimedCommitFilter(CommitFilter filter) {
+		if (filter == null)
+			throw new IllegalArgumentException("Filter cannot be null");
+		this.filter = filter;
+	}
+
+	public CommitFilter setRepository(Repository repository) {
+		filter.setRepository(repository);
+		return super.setRepository(repository);
+	}
+
+	public boolean include(RevWalk walker, RevCommit commit) throws IOException {
+		long start = System.nanoTime();
+		try {
+			return filter.include(walker, commit);
+		} finally {
+			time += System.nanoTime() - start;
+		}
+	}
+
+	public CommitFilter reset() {
+		filter.reset();
+		time = 0;
+		return super.reset();
+	}
+
+	/**
+	 * @return total nanoseconds spent in the wrapped filter
+	 */
+	public long getTime() {
+		return time;
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.IOException;
+
+/**
+ * Listener notified of the commits found by a {@link TotalHistoryReport} while
+ * it is running
+ * <p>
+ * Methods are always called from the thread running the report, in walk
+ * order.
+ */
+public interface TotalHistoryListener {
+
+	/**
+	 * Merge commit with content changes found
+	 *
+	 * @param commit
+	 * @throws IOException
+	 */
+	void mergeConflict(CommitSummary commit) throws IOException;
+
+	/**
+	 * Commit introducing duplicate blobs found
+	 *
+	 * @param commit
+	 * @param duplicates
+	 *            number of duplicate blobs
+	 * @throws IOException
+	 */
+	void duplicateBlobs(CommitSummary commit, int duplicates)
+			throws IOException;
+}
@@ -21,54 +21,74 @@
  */
 package com.github.kevinsawicki.git.reports;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdSubclassMap;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.gitective.core.CommitFinder;
 import org.gitective.core.CommitUtils;
-import org.gitective.core.RepositoryUtils;
+import org.gitective.core.PersonComparator;
 import org.gitective.core.filter.commit.AllCommitFilter;
-import org.gitective.core.filter.commit.AllDiffEditFilter;
-import org.gitective.core.filter.commit.AllDiffFilter;
 import org.gitective.core.filter.commit.AndCommitFilter;
 import org.gitective.core.filter.commit.AuthorSetFilter;
 import org.gitective.core.filter.commit.CommitCountFilter;
-import org.gitective.core.filter.commit.CommitFileImpactFilter;
 import org.gitective.core.filter.commit.CommitImpact;
-import org.gitective.core.filter.commit.CommitLineImpactFilter;
-import org.gitective.core.filter.commit.CommitListFilter;
 import org.gitective.core.filter.commit.CommitterSetFilter;
-import org.gitective.core.filter.commit.DiffFileCountFilter;
-import org.gitective.core.filter.commit.DiffFileSizeFilter;
-import org.gitective.core.filter.commit.DiffLineCountFilter;
-import org.gitective.core.filter.commit.DuplicateBlobFilter;
-import org.gitective.core.filter.commit.DuplicateContainer;
 import org.gitective.core.filter.commit.LastCommitFilter;
 import org.gitective.core.filter.commit.ParentCountFilter;
-import org.gitective.core.stat.AuthorHistogramFilter;
-import org.gitective.core.stat.CommitHistogram;
-import org.gitective.core.stat.CommitterHistogramFilter;
-import org.gitective.core.stat.UserCommitActivity;
 
 /**
  * Report showing information for a repository's complete history
  */
 public class TotalHistoryReport {
 
+	/**
+	 * Number of top authors listed for each scope of a breakdown
+	 */
+	public static final int SCOPE_AUTHOR_LIMIT = 5;
+
+	/**
+	 * Stage walking the history, excluding the per-commit diffs
+	 */
+	public static final String STAGE_WALK = ReleaseReport.STAGE_WALK;
+
+	/**
+	 * Stage diffing each commit against its parent, when run on several threads
+	 * the time the walk spent submitting, waiting for and merging the diffs
+	 */
+	public static final String STAGE_COMMIT_DIFFS = ReleaseReport.STAGE_COMMIT_DIFFS;
+
+	/**
+	 * Stage merging author and committer identities
+	 */
+	public static final String STAGE_IDENTITIES = ReleaseReport.STAGE_IDENTITIES;
+
+	/**
+	 * Stage summarizing and sorting authors and committers
+	 */
+	public static final String STAGE_SUMMARIES = "summaries";
+
 	/**
 	 * Container for lines added, edited, and deleted
 	 */
@@ -101,67 +121,140 @@ public class TotalHistoryReport {
 			return delete;
 		}
 
+		LineStats include(int add, int edit, int delete) {
+			this.add += add;
+			this.edit += edit;
+			this.delete += delete;
+			return this;
+		}
+
+		LineStats include(LineStats stats) {
+			return include(stats.add, stats.edit, stats.delete);
+		}
+
 		public int compareTo(LineStats o) {
 			return (o.add + o.edit + o.delete) - (add + edit + delete);
 		}
 	}
 
-	private final Comparator<String> caseInsensitveComparator = new Comparator<String>() {
+	/**
+	 * Commit counts and impact of a single author or committer name
+	 * <p>
+	 * Summaries are computed once all identities have been merged so that
+	 * sorting and rendering never has to recompute them
+	 */
+	public static class PersonSummary {
 
-		public int compare(String s1, String s2) {
-			return s1.compareToIgnoreCase(s2);
+		private final String name;
+
+		private final int authoredCommits;
+
+		private final int committedCommits;
+
+		private final LineStats lineImpact;
+
+		private final LineStats fileImpact;
+
+		PersonSummary(String name, int authoredCommits, int committedCommits,
+				LineStats lineImpact, LineStats fileImpact) {
+			this.name = name;
+			this.authoredCommits = authoredCommits;
+			this.committedCommits = committedCommits;
+			this.lineImpact = lineImpact;
+			this.fileImpact = fileImpact;
+		}
+
+		/**
+		 * @return name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return authoredCommits
+		 */
+		public int getAuthoredCommits() {
+			return authoredCommits;
+		}
+
+		/**
+		 * @return committedCommits
+		 */
+		public int getCommittedCommits() {
+			return committedCommits;
+		}
+
+		/**
+		 * @return lineImpact
+		 */
+		public LineStats getLineImpact() {
+			return lineImpact;
+		}
+
+		/**
+		 * @return fileImpact
+		 */
+		public LineStats getFileImpact() {
+			return fileImpact;
+		}
+	}
+
+	static final Comparator<PersonSummary> MOST_COMMITS = new Comparator<PersonSummary>() {
+
+		public int compare(PersonSummary s1, PersonSummary s2) {
+			int commitDiff = s2.authoredCommits - s1.authoredCommits;
+			if (commitDiff != 0)
+				return commitDiff;
+			return s1.name.compareToIgnoreCase(s2.name);
 		}
 	};
 
-	private final Comparator<String> mostCommitsComparator = new Comparator<String>() {
+	static final Comparator<PersonSummary> MOST_LINES = new Comparator<PersonSummary>() {
 
-		public int compare(String s1, String s2) {
-			int commitDiff = getAuthoredCommits(s2) - getAuthoredCommits(s1);
+		public int compare(PersonSummary s1, PersonSummary s2) {
+			int commitDiff = s1.lineImpact.compareTo(s2.lineImpact);
 			if (commitDiff != 0)
 				return commitDiff;
-			return s1.compareToIgnoreCase(s2);
+			return s1.name.compareToIgnoreCase(s2.name);
 		}
 	};
 
-	private CommitHistogram authorHistogram;
+	static final Comparator<PersonSummary> MOST_FILES = new Comparator<PersonSummary>() {
+
+		public int compare(PersonSummary s1, PersonSummary s2) {
+			int commitDiff = s1.fileImpact.compareTo(s2.fileImpact);
+			if (commitDiff != 0)
+				return commitDiff;
+			return s1.name.compareToIgnoreCase(s2.name);
+		}
+	};
 
-	private CommitHistogram committerHistogram;
+	private IdentityTable identities = new IdentityTable();
 
 	private Map<String, Set<String>> namesToEmails = new HashMap<String, Set<String>>();
 
-	private Set<String> authors = new TreeSet<String>(mostCommitsComparator);
+	private Map<String, PersonSummary> summaries = new HashMap<String, PersonSummary>();
 
-	private Set<String> authorLineImpacts = new TreeSet<String>(
-			new Comparator<String>() {
+	private Set<String> authors = new LinkedHashSet<String>();
 
-				public int compare(String s1, String s2) {
-					int commitDiff = getAuthorLineImpact(s1).compareTo(
-							getAuthorLineImpact(s2));
-					if (commitDiff != 0)
-						return commitDiff;
-					return s1.compareToIgnoreCase(s2);
-				}
-			});
+	private Set<String> authorLineImpacts = new LinkedHashSet<String>();
 
-	private Set<String> authorFileImpacts = new TreeSet<String>(
-			new Comparator<String>() {
-
-				public int compare(String s1, String s2) {
-					int commitDiff = getAuthorFileImpact(s1).compareTo(
-							getAuthorFileImpact(s2));
-					if (commitDiff != 0)
-						return commitDiff;
-					return s1.compareToIgnoreCase(s2);
-				}
-			});
+	private Set<String> authorFileImpacts = new LinkedHashSet<String>();
 
-	private Set<String> committers = new TreeSet<String>(mostCommitsComparator);
+	private Set<String> committers = new LinkedHashSet<String>();
 
 	private Set<String> files = new TreeSet<String>();
 
-	private Map<ObjectId, CommitImpact> mostFiles = new LinkedHashMap<ObjectId, CommitImpact>();
+	private List<CommitImpact> mostFiles = Collections.emptyList();
+
+	private final ObjectIdSubclassMap<CommitSummary> commitSummaries = new ObjectIdSubclassMap<CommitSummary>();
+
+	private List<CommitImpact> mostLines = Collections.emptyList();
 
-	private Map<ObjectId, CommitImpact> mostLines = new LinkedHashMap<ObjectId, CommitImpact>();
+	private Map<String, LineStats> emailLineImpacts = new HashMap<String, LineStats>();
+
+	private Map<String, LineStats> emailFileImpacts = new HashMap<String, LineStats>();
 
 	private RevCommit start;
 
@@ -185,7 +278,25 @@ public class TotalHistoryReport {
 
 	private List<RevCommit> mergeConflicts;
 
-	private Map<RevCommit, DuplicateContainer> dupes;
+	private Map<RevCommit, Integer> dupes;
+
+	private final HistoryBuckets weeks = new HistoryBuckets(
+			HistoryBuckets.WEEK);
+
+	private final HistoryBuckets months = new HistoryBuckets(
+			HistoryBuckets.MONTH);
+
+	private int mergeConflictCount;
+
+	private int dupeCommitCount;
+
+	private ImpactHeap fileImpactHeap;
+
+	private ImpactHeap lineImpactHeap;
+
+	private TotalHistoryListener listener;
+
+	private boolean retainCommits = true;
 
 	private String projectName;
 
@@ -195,6 +306,317 @@ public class TotalHistoryReport {
 
 	private Repository repository;
 
+	private int threads = 1;
+
+	private CommitStatsCache statsCache;
+
+	private File snapshotFile;
+
+	private TreeFilter pathFilter;
+
+	private PathBreakdown breakdown;
+
+	private RenameDetection renameDetection;
+
+	private DiffExclusion diffExclusion;
+
+	private LineDiff lineDiff;
+
+	private ReportMetrics metrics;
+
+	private ReportProgress progress;
+
+	private final Map<String, Long> timings = new LinkedHashMap<String, Long>();
+
+	private List<Integer> scopes = Collections.emptyList();
+
+	private Map<Integer, List<String>> scopeAuthors = new HashMap<Integer, List<String>>();
+
+	private final Set<PersonIdent> authorPersons = new TreeSet<PersonIdent>(
+			new PersonComparator());
+
+	private final Set<PersonIdent> committerPersons = new TreeSet<PersonIdent>(
+			new PersonComparator());
+
+	/**
+	 * Set number of threads used to compute diffs
+	 * <p>
+	 * A value greater than one splits the history into chunks that are diffed
+	 * concurrently
+	 *
+	 * @param threads
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Threads must be positive");
+		this.threads = threads;
+	}
+
+	/**
+	 * @return threads
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Set cache of per-commit stats
+	 * <p>
+	 * Commits found in the cache are not diffed and commits diffed while
+	 * running are added to the cache which is saved once the run completes.
+	 * An {@link OffHeapCommitStatsCache} keeps the stats of every commit out
+	 * of the heap for very large histories. The heap use of a run still grows
+	 * with the history since the revision walk holds a small object for each
+	 * commit walked, though not its body, and merge conflicts and commits with
+	 * duplicate blobs are retained unless a listener is set.
+	 *
+	 * @param statsCache
+	 */
+	public void setStatsCache(CommitStatsCache statsCache) {
+		this.statsCache = statsCache;
+	}
+
+	/**
+	 * @return statsCache
+	 */
+	public CommitStatsCache getStatsCache() {
+		return statsCache;
+	}
+
+	/**
+	 * Set file that the report state is saved to after each run
+	 * <p>
+	 * When the file contains a snapshot whose tip is an ancestor of the commit
+	 * being reported on, only the commits between the two are walked and the
+	 * rest of the report is resumed from the snapshot. Otherwise, or when the
+	 * snapshot was created with other diff settings, the complete history is
+	 * walked again.
+	 *
+	 * @param snapshotFile
+	 */
+	public void setSnapshotFile(File snapshotFile) {
+		this.snapshotFile = snapshotFile;
+	}
+
+	/**
+	 * @return snapshotFile
+	 */
+	public File getSnapshotFile() {
+		return snapshotFile;
+	}
+
+	/**
+	 * Set filter of the paths this report covers
+	 * <p>
+	 * Commits that don't change a matching path are pruned by the revision
+	 * walk before any other filter sees them, and all diffs only include matching
+	 * paths. Stats cache and snapshot files created with another path filter
+	 * are rebuilt.
+	 *
+	 * @param pathFilter
+	 *            may be null to cover all paths
+	 */
+	public void setPathFilter(TreeFilter pathFilter) {
+		this.pathFilter = pathFilter;
+	}
+
+	/**
+	 * @return pathFilter
+	 */
+	public TreeFilter getPathFilter() {
+		return pathFilter;
+	}
+
+	/**
+	 * Set breakdown that the diffs of every commit are also counted in
+	 * <p>
+	 * Each changed path is counted in the deepest scope of the breakdown that
+	 * contains it, in the same pass that computes the totals of this report.
+	 * Stats cache and snapshot files created with another breakdown
+	 * configuration are rebuilt.
+	 *
+	 * @param breakdown
+	 *            may be null to not break down the history by path
+	 */
+	public void setBreakdown(PathBreakdown breakdown) {
+		this.breakdown = breakdown;
+	}
+
+	/**
+	 * @return breakdown
+	 */
+	public PathBreakdown getBreakdown() {
+		return breakdown;
+	}
+
+	/**
+	 * Set rename detection used to pair deleted and added files
+	 * <p>
+	 * The detection bounds the cost of each commit and keeps the time spent
+	 * detecting renames. Stats cache and snapshot files created with other
+	 * rename detection settings are rebuilt.
+	 *
+	 * @param renameDetection
+	 *            may be null to use the default rename detection of the diffs
+	 */
+	public void setRenameDetection(RenameDetection renameDetection) {
+		this.renameDetection = renameDetection;
+	}
+
+	/**
+	 * @return renameDetection
+	 */
+	public RenameDetection getRenameDetection() {
+		return renameDetection;
+	}
+
+	/**
+	 * Set exclusion of generated, vendored, large and binary files from the
+	 * line diffs
+	 * <p>
+	 * Excluded files are still counted as changed files and the exclusion
+	 * keeps the number of files and bytes it skipped. Stats cache and snapshot
+	 * files created with other exclusion settings are rebuilt.
+	 *
+	 * @param diffExclusion
+	 *            may be null to diff all files
+	 */
+	public void setDiffExclusion(DiffExclusion diffExclusion) {
+		this.diffExclusion = diffExclusion;
+	}
+
+	/**
+	 * @return diffExclusion
+	 */
+	public DiffExclusion getDiffExclusion() {
+		return diffExclusion;
+	}
+
+	/**
+	 * Set line diff of changed files
+	 * <p>
+	 * A count only line diff is faster since the reports only use the number
+	 * of lines added, edited and deleted. Stats cache and snapshot files
+	 * created with another line diff are rebuilt.
+	 *
+	 * @param lineDiff
+	 *            may be null to use the default histogram diff
+	 */
+	public void setLineDiff(LineDiff lineDiff) {
+		this.lineDiff = lineDiff;
+	}
+
+	/**
+	 * @return lineDiff
+	 */
+	public LineDiff getLineDiff() {
+		return lineDiff;
+	}
+
+	/**
+	 * Set metrics to record the stages of each run in
+	 * <p>
+	 * Stage times are recorded in the metrics along with the commits walked
+	 * and the blobs read for line diffs.
+	 *
+	 * @param metrics
+	 *            may be null
+	 */
+	public void setMetrics(ReportMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return metrics
+	 */
+	public ReportMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Set progress to update as each run walks commits and to check for
+	 * cancellation and a passed deadline
+	 * <p>
+	 * Progress is checked at every commit walked and at every commit diffed by
+	 * the concurrent diff workers.
+	 *
+	 * @param progress
+	 *            may be null
+	 */
+	public void setProgress(ReportProgress progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * @return progress
+	 */
+	public ReportProgress getProgress() {
+		return progress;
+	}
+
+	private void start(String stage) {
+		if (progress != null)
+			progress.start(stage, -1);
+	}
+
+	/**
+	 * Get time spent in each stage of the last run
+	 *
+	 * @return map of stage names to milliseconds, in the order run
+	 */
+	public Map<String, Long> getTimings() {
+		return timings;
+	}
+
+	private void timing(String stage, long time) {
+		timings.put(stage, Long.valueOf(time / 1000000L));
+		if (metrics != null)
+			metrics.stage(stage, time);
+	}
+
+	/**
+	 * Get scopes of the breakdown that have commits, sorted by path
+	 *
+	 * @return scopes, empty if no breakdown is set
+	 */
+	public List<Integer> getScopes() {
+		return scopes;
+	}
+
+	/**
+	 * Get names of the authors with the most lines changed in scope
+	 *
+	 * @param scope
+	 * @return names, at most {@link #SCOPE_AUTHOR_LIMIT}
+	 */
+	public List<String> getScopeAuthors(int scope) {
+		List<String> names = scopeAuthors.get(Integer.valueOf(scope));
+		return names != null ? names : Collections.<String> emptyList();
+	}
+
+	/**
+	 * Set listener to notify of merge conflicts and commits with duplicate
+	 * blobs as they are found
+	 * <p>
+	 * Commits passed to a listener are not retained by this report unless a
+	 * snapshot file is also set, so {@link #getMergeConflicts()} and
+	 * {@link #getDupeCommits()} will be empty and only their counts are
+	 * available.
+	 *
+	 * @param listener
+	 *            may be null
+	 */
+	public void setListener(TotalHistoryListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @return listener
+	 */
+	public TotalHistoryListener getListener() {
+		return listener;
+	}
+
 	/**
 	 * @param linker
 	 */
@@ -307,7 +729,36 @@ public class TotalHistoryReport {
 	 * @return dupe count
 	 */
 	public int getDupeCount(RevCommit commit) {
-		return dupes.get(commit).getTotal();
+		Integer count = dupes.get(commit);
+		return count != null ? count.intValue() : 0;
+	}
+
+	/**
+	 * @return commit, line, file and active author counts by week
+	 */
+	public HistoryBuckets getWeeks() {
+		return weeks;
+	}
+
+	/**
+	 * @return commit, line, file and active author counts by month
+	 */
+	public HistoryBuckets getMonths() {
+		return months;
+	}
+
+	/**
+	 * @return number of merge commits with content changes
+	 */
+	public int getMergeConflictCount() {
+		return mergeConflictCount;
+	}
+
+	/**
+	 * @return number of commits with duplicate blobs
+	 */
+	public int getDupeCommitCount() {
+		return dupeCommitCount;
 	}
 
 	/**
@@ -349,30 +800,14 @@ public class TotalHistoryReport {
 	 * @return mostFiles
 	 */
 	public Collection<CommitImpact> getMostFiles() {
-		CommitImpact[] commits = new CommitImpact[Math.min(100,
-				mostFiles.size())];
-		int i = 0;
-		for (CommitImpact impact : mostFiles.values()) {
-			commits[i++] = impact;
-			if (i == commits.length)
-				break;
-		}
-		return Arrays.asList(commits);
+		return mostFiles;
 	}
 
 	/**
 	 * @return mostLines
 	 */
 	public Collection<CommitImpact> getMostLines() {
-		CommitImpact[] commits = new CommitImpact[Math.min(100,
-				mostLines.size())];
-		int i = 0;
-		for (CommitImpact impact : mostLines.values()) {
-			commits[i++] = impact;
-			if (i == commits.length)
-				break;
-		}
-		return Arrays.asList(commits);
+		return mostLines;
 	}
 
 	/**
@@ -403,6 +838,16 @@ public class TotalHistoryReport {
 		return linesDeleted;
 	}
 
+	/**
+	 * Get summary of name
+	 *
+	 * @param name
+	 * @return summary or null if name is not an author or committer
+	 */
+	public PersonSummary getSummary(String name) {
+		return summaries.get(name);
+	}
+
 	/**
 	 * Get number of commits authored by name
 	 *
@@ -410,16 +855,8 @@ public class TotalHistoryReport {
 	 * @return commit count
 	 */
 	public int getAuthoredCommits(String name) {
-		Set<String> emails = namesToEmails.get(name);
-		if (emails == null)
-			return 0;
-		int count = 0;
-		for (String email : emails) {
-			UserCommitActivity activity = authorHistogram.getActivity(email);
-			if (activity != null)
-				count += activity.getCount();
-		}
-		return count;
+		PersonSummary summary = summaries.get(name);
+		return summary != null ? summary.authoredCommits : 0;
 	}
 
 	/**
@@ -429,24 +866,8 @@ public class TotalHistoryReport {
 	 * @return stats
 	 */
 	public LineStats getAuthorLineImpact(String name) {
-		Set<String> emails = namesToEmails.get(name);
-		if (emails == null)
-			return new LineStats();
-		LineStats stats = new LineStats();
-		for (String email : emails) {
-			UserCommitActivity activity = authorHistogram.getActivity(email);
-			if (activity == null)
-				continue;
-			for (ObjectId commit : activity.getIds()) {
-				CommitImpact impact = mostLines.get(commit);
-				if (impact != null) {
-					stats.add += impact.getAdd();
-					stats.edit += impact.getEdit();
-					stats.delete += impact.getDelete();
-				}
-			}
-		}
-		return stats;
+		PersonSummary summary = summaries.get(name);
+		return summary != null ? summary.lineImpact : new LineStats();
 	}
 
 	/**
@@ -456,24 +877,8 @@ public class TotalHistoryReport {
 	 * @return stats
 	 */
 	public LineStats getAuthorFileImpact(String name) {
-		Set<String> emails = namesToEmails.get(name);
-		if (emails == null)
-			return new LineStats();
-		LineStats stats = new LineStats();
-		for (String email : emails) {
-			UserCommitActivity activity = authorHistogram.getActivity(email);
-			if (activity == null)
-				continue;
-			for (ObjectId commit : activity.getIds()) {
-				CommitImpact impact = mostFiles.get(commit);
-				if (impact != null) {
-					stats.add += impact.getAdd();
-					stats.edit += impact.getEdit();
-					stats.delete += impact.getDelete();
-				}
-			}
-		}
-		return stats;
+		PersonSummary summary = summaries.get(name);
+		return summary != null ? summary.fileImpact : new LineStats();
 	}
 
 	/**
@@ -483,16 +888,42 @@ public class TotalHistoryReport {
 	 * @return commit count
 	 */
 	public int getCommittedCommits(String name) {
-		Set<String> emails = namesToEmails.get(name);
-		if (emails == null)
-			return 0;
-		int count = 0;
+		PersonSummary summary = summaries.get(name);
+		return summary != null ? summary.committedCommits : 0;
+	}
+
+	private LineStats sumImpacts(Set<String> emails,
+			Map<String, LineStats> emailImpacts) {
+		LineStats stats = new LineStats();
 		for (String email : emails) {
-			UserCommitActivity activity = committerHistogram.getActivity(email);
-			if (activity != null)
-				count += activity.getCount();
+			LineStats impact = emailImpacts.get(email);
+			if (impact != null)
+				stats.include(impact);
+		}
+		return stats;
+	}
+
+	private void summarize(Collection<String> names) {
+		for (String name : names) {
+			Set<String> emails = namesToEmails.get(name);
+			summaries.put(name, new PersonSummary(name, identities
+					.getAuthored(emails), identities.getCommitted(emails),
+					sumImpacts(emails, emailLineImpacts), sumImpacts(emails,
+							emailFileImpacts)));
 		}
-		return count;
+	}
+
+	private List<String> sort(Collection<String> names,
+			Comparator<PersonSummary> comparator) {
+		List<PersonSummary> sorted = new ArrayList<PersonSummary>(
+				names.size());
+		for (String name : names)
+			sorted.add(summaries.get(name));
+		Collections.sort(sorted, comparator);
+		List<String> sortedNames = new ArrayList<String>(sorted.size());
+		for (PersonSummary summary : sorted)
+			sortedNames.add(summary.name);
+		return sortedNames;
 	}
 
 	/**
@@ -551,41 +982,29 @@ public class TotalHistoryReport {
 		return CommitUtils.getCommit(repository, id);
 	}
 
-	private Map<String, Set<String>> mergeIdentities(
-			Collection<PersonIdent> persons) {
-		Map<String, Set<String>> namesToEmails = new TreeMap<String, Set<String>>(
-				caseInsensitveComparator);
-		namesToEmails.putAll(RepositoryUtils.mapNamesToEmails(persons));
-		Map<String, Set<String>> emailsToNames = RepositoryUtils
-				.mapEmailsToNames(persons);
-		for (Entry<String, Set<String>> entry : emailsToNames.entrySet())
-			for (String name : entry.getValue())
-				namesToEmails.get(name).add(entry.getKey());
-
-		Object[] nameEntries = namesToEmails.entrySet().toArray();
-		for (int i = 0; i < nameEntries.length; i++) {
-			@SuppressWarnings("unchecked")
-			Entry<String, Set<String>> curr = (Entry<String, Set<String>>) nameEntries[i];
-			if (curr == null)
-				continue;
-			for (int j = 0; j < nameEntries.length; j++) {
-				if (i == j)
-					continue;
-				for (String email : curr.getValue().toArray(
-						new String[curr.getValue().size()])) {
-					@SuppressWarnings("unchecked")
-					Entry<String, Set<String>> other = (Entry<String, Set<String>>) nameEntries[j];
-					if (other == null)
-						continue;
-					if (other.getValue().contains(email)) {
-						curr.getValue().addAll(other.getValue());
-						namesToEmails.remove(other.getKey());
-						nameEntries[j] = null;
-					}
-				}
-			}
-		}
-		return namesToEmails;
+	/**
+	 * Get summary of commit
+	 * <p>
+	 * Summaries of all the commits included in this report are captured when
+	 * the report is run, any other commit is read from the repository.
+	 *
+	 * @param id
+	 * @return summary
+	 */
+	public CommitSummary getCommitSummary(ObjectId id) {
+		CommitSummary summary = commitSummaries.get(id);
+		return summary != null ? summary : new CommitSummary(parseCommit(id));
+	}
+
+	/**
+	 * Get fingerprint of the settings that change the stats of a commit
+	 *
+	 * @return fingerprint
+	 */
+	private String getFingerprint() {
+		return String.valueOf(pathFilter) + ' ' + breakdown + ' '
+				+ renameDetection + ' ' + diffExclusion + ' '
+				+ (lineDiff != null ? lineDiff : LineDiff.DEFAULT);
 	}
 
 	/**
@@ -596,9 +1015,92 @@ public class TotalHistoryReport {
 	 * @throws IOException
 	 */
 	public void run(Repository repository, String start) throws IOException {
+		reset();
 		this.repository = repository;
 		this.start = CommitUtils.getCommit(repository, start);
+		String fingerprint = getFingerprint();
+		if (statsCache != null)
+			statsCache.setFingerprint(fingerprint).load();
+
+		RevWalk walk = new RevWalk(repository);
+		try {
+			TotalHistorySnapshot snapshot = null;
+			if (snapshotFile != null) {
+				snapshot = TotalHistorySnapshot.read(snapshotFile, walk);
+				if (snapshot != null
+						&& !fingerprint.equals(snapshot.getFingerprint()))
+					snapshot = null;
+				if (snapshot != null && !snapshot.isResumable(walk, this.start))
+					snapshot = null;
+			}
+			run(walk, snapshot);
+			if (snapshotFile != null)
+				createSnapshot().write(snapshotFile);
+		} finally {
+			walk.release();
+		}
+	}
+
+	/**
+	 * Clear the results of any previous run so totals aren't counted twice
+	 */
+	private void reset() {
+		identities = new IdentityTable();
+		namesToEmails.clear();
+		summaries.clear();
+		authors.clear();
+		authorLineImpacts.clear();
+		authorFileImpacts.clear();
+		committers.clear();
+		mostFiles = Collections.emptyList();
+		mostLines = Collections.emptyList();
+		commitSummaries.clear();
+		emailLineImpacts.clear();
+		emailFileImpacts.clear();
+		end = null;
+		linesAdded = 0;
+		linesEdited = 0;
+		linesDeleted = 0;
+		added = 0;
+		modified = 0;
+		deleted = 0;
+		commits = 0;
+		merges = 0;
+		weeks.clear();
+		months.clear();
+		mergeConflictCount = 0;
+		dupeCommitCount = 0;
+		if (breakdown != null)
+			breakdown.clear();
+		timings.clear();
+		scopes = Collections.emptyList();
+		scopeAuthors.clear();
+		authorPersons.clear();
+		committerPersons.clear();
+	}
+
+	/**
+	 * Get estimated number of commits walked
+	 * <p>
+	 * Without an estimate set on the progress this is the number of commits in
+	 * the stats cache that are not covered by the snapshot.
+	 *
+	 * @param snapshot
+	 *            may be null
+	 * @return estimate or -1 if unknown
+	 */
+	private long getWalkEstimate(TotalHistorySnapshot snapshot) {
+		long estimate = progress.getWalkEstimate();
+		if (estimate >= 0 || statsCache == null)
+			return estimate;
+		estimate = statsCache.size();
+		if (snapshot != null)
+			estimate -= snapshot.getCommits();
+		return estimate > 0 ? estimate : -1;
+	}
 
+	private void run(final RevWalk walk, TotalHistorySnapshot snapshot)
+			throws IOException {
 		LastCommitFilter last = new LastCommitFilter();
 
 		CommitCountFilter countFilter = new CommitCountFilter();
@@ -606,72 +1108,366 @@ public class TotalHistoryReport {
 		AuthorSetFilter authorsFilter = new AuthorSetFilter();
 		CommitterSetFilter committersFilter = new CommitterSetFilter();
 
-		AuthorHistogramFilter authorHistogramFilter = new AuthorHistogramFilter();
-		CommitterHistogramFilter committerHistogramFilter = new CommitterHistogramFilter();
-
-		CommitLineImpactFilter lineImpactFilter = new CommitLineImpactFilter(
-				Integer.MAX_VALUE);
-		CommitFileImpactFilter fileImpactFilter = new CommitFileImpactFilter(
-				Integer.MAX_VALUE);
-
-		DiffLineCountFilter diffLineCountFilter = new DiffLineCountFilter();
-		DiffFileCountFilter diffFileCountFilter = new DiffFileCountFilter();
+		IdentityCountFilter identityCountFilter = new IdentityCountFilter();
 
 		CommitCountFilter mergeCountFilter = new CommitCountFilter();
-		CommitListFilter mergeConflictFilter = new CommitListFilter();
-		DuplicateBlobFilter dupesFilter = new DuplicateBlobFilter();
+
+		HistoryBucketFilter weekFilter = new HistoryBucketFilter(
+				HistoryBuckets.WEEK);
+		HistoryBucketFilter monthFilter = new HistoryBucketFilter(
+				HistoryBuckets.MONTH);
+
+		retainCommits = listener == null || snapshotFile != null;
+		fileImpactHeap = new ImpactHeap(HistoryDiffFilter.IMPACT_LIMIT);
+		lineImpactHeap = new ImpactHeap(HistoryDiffFilter.IMPACT_LIMIT);
+		mergeConflicts = new ArrayList<RevCommit>();
+		dupes = new LinkedHashMap<RevCommit, Integer>();
+
+		ExecutorService executor = null;
+		HistoryDiffFilter diffFilter = null;
+		ParallelDiffFilter parallelDiffFilter = null;
+		if (threads > 1) {
+			executor = Executors.newFixedThreadPool(threads);
+			parallelDiffFilter = new ParallelDiffFilter(executor, threads,
+					ParallelDiffFilter.CHUNK_SIZE, statsCache) {
+
+				protected void completed(HistoryDiffFilter filter)
+						throws IOException {
+					merge(walk, filter, true);
+				}
+			};
+			parallelDiffFilter.setPathFilter(pathFilter);
+			parallelDiffFilter.setBreakdown(breakdown);
+			parallelDiffFilter.setRenameDetection(renameDetection);
+			parallelDiffFilter.setExclusion(diffExclusion);
+			parallelDiffFilter.setLineDiff(lineDiff);
+			parallelDiffFilter.setMetrics(metrics);
+			parallelDiffFilter.setProgress(progress);
+		} else {
+			diffFilter = new HistoryDiffFilter(statsCache, pathFilter,
+					breakdown, renameDetection);
+			diffFilter.setExclusion(diffExclusion);
+			diffFilter.setLineDiff(lineDiff);
+			diffFilter.setMetrics(metrics);
+			diffFilter.setListener(listener);
+			diffFilter.setRetainCommits(retainCommits);
+		}
 
 		AllCommitFilter matcher = new AllCommitFilter();
-		matcher.add(dupesFilter);
 		matcher.add(countFilter);
 		matcher.add(last);
 		matcher.add(authorsFilter, committersFilter);
-		matcher.add(authorHistogramFilter, committerHistogramFilter);
-		matcher.add(new AllDiffFilter(true, diffFileCountFilter,
-				fileImpactFilter, new AllDiffEditFilter(diffLineCountFilter,
-						lineImpactFilter)));
+		matcher.add(identityCountFilter);
+		matcher.add(weekFilter, monthFilter);
+		TimedCommitFilter timedDiffFilter = new TimedCommitFilter(
+				diffFilter != null ? diffFilter : parallelDiffFilter);
+		matcher.add(timedDiffFilter);
 
 		AllCommitFilter parent = new AllCommitFilter();
+		if (progress != null)
+			parent.add(new ProgressFilter(progress));
 		parent.add(matcher);
 		parent.add(new AndCommitFilter(new ParentCountFilter(2),
 				mergeCountFilter));
-		parent.add(new AndCommitFilter(new ParentCountFilter(2),
-				new DiffFileSizeFilter(true, 1), mergeConflictFilter));
 
-		CommitFinder finder = new CommitFinder(repository);
-		finder.setMatcher(parent);
-		finder.findFrom(start);
-
-		this.end = last.getLast();
-		for (CommitImpact impact : fileImpactFilter)
-			mostFiles.put(impact.getCommit(), impact);
-		for (CommitImpact impact : lineImpactFilter)
-			mostLines.put(impact.getCommit(), impact);
-		authorHistogram = authorHistogramFilter.getHistogram();
-		committerHistogram = committerHistogramFilter.getHistogram();
+		long time = System.nanoTime();
+		long finishTime = 0;
+		if (progress != null)
+			progress.start(STAGE_WALK, getWalkEstimate(snapshot));
+		try {
+			CommitFinder finder = new StreamingCommitFinder(repository);
+			finder.setMatcher(parent);
+			if (pathFilter != null)
+				finder.setFilter(new PathChangeFilter(pathFilter));
+			if (snapshot != null)
+				finder.findBetween(start, snapshot.getTip());
+			else
+				finder.findFrom(start);
+			if (diffFilter != null)
+				merge(walk, diffFilter, false);
+			else {
+				finishTime = System.nanoTime();
+				parallelDiffFilter.finish();
+				finishTime = System.nanoTime() - finishTime;
+			}
+		} finally {
+			if (executor != null)
+				executor.shutdownNow();
+		}
+		if (statsCache != null)
+			statsCache.save();
+		long walkTime = System.nanoTime() - time;
+		long diffTime = timedDiffFilter.getTime() + finishTime;
+		timing(STAGE_WALK, walkTime - diffTime);
+		timing(STAGE_COMMIT_DIFFS, diffTime);
+
+		end = last.getLast() != null ? walk.parseCommit(last.getLast()) : null;
+		identities = identityCountFilter.getTable();
+		authorPersons.addAll(authorsFilter.getPersons());
+		committerPersons.addAll(committersFilter.getPersons());
 
 		commits = countFilter.getCount();
+		if (metrics != null)
+			metrics.addCommits(commits, walkTime);
 		merges = mergeCountFilter.getCount();
-		mergeConflicts = mergeConflictFilter.getCommits();
-		dupes = dupesFilter.getDuplicates();
-
-		added = diffFileCountFilter.getAdded();
-		modified = diffFileCountFilter.getEdited();
-		deleted = diffFileCountFilter.getDeleted();
-		linesAdded = diffLineCountFilter.getAdded();
-		linesEdited = diffLineCountFilter.getEdited();
-		linesDeleted = diffLineCountFilter.getDeleted();
-
-		Map<String, Set<String>> authorNamesToEmails = mergeIdentities(authorsFilter
-				.getPersons());
+		weeks.include(weekFilter.getBuckets());
+		months.include(monthFilter.getBuckets());
+
+		if (snapshot != null) {
+			RevCommit snapshotEnd = walk.parseCommit(snapshot.end);
+			if (end == null
+					|| snapshotEnd.getCommitTime() <= end.getCommitTime())
+				end = snapshotEnd;
+			commits += snapshot.commits;
+			merges += snapshot.merges;
+			added += snapshot.added;
+			modified += snapshot.modified;
+			deleted += snapshot.deleted;
+			linesAdded += snapshot.linesAdded;
+			linesEdited += snapshot.linesEdited;
+			linesDeleted += snapshot.linesDeleted;
+			weeks.include(snapshot.weeks);
+			months.include(snapshot.months);
+			if (breakdown != null && snapshot.breakdown != null)
+				breakdown.include(snapshot.breakdown);
+			authorPersons.addAll(snapshot.authors);
+			committerPersons.addAll(snapshot.committers);
+			identities.include(snapshot.identities);
+			fileImpactHeap.addAll(snapshot.fileImpacts);
+			lineImpactHeap.addAll(snapshot.lineImpacts);
+			includeImpacts(snapshot.authorLineImpacts, emailLineImpacts);
+			includeImpacts(snapshot.authorFileImpacts, emailFileImpacts);
+			for (ObjectId id : snapshot.mergeConflicts) {
+				RevCommit commit = walk.parseCommit(id);
+				mergeConflictCount++;
+				if (listener != null)
+					listener.mergeConflict(captureSummary(commit));
+				mergeConflicts.add(commit);
+			}
+			for (int i = 0; i < snapshot.dupeCommits.size(); i++) {
+				RevCommit commit = walk.parseCommit(snapshot.dupeCommits.get(i));
+				Integer count = snapshot.dupeCounts.get(i);
+				dupeCommitCount++;
+				if (listener != null)
+					listener.duplicateBlobs(captureSummary(commit),
+							count.intValue());
+				dupes.put(commit, count);
+			}
+		}
+
+		retainSummaries(walk);
+		mostFiles = fileImpactHeap.getImpacts();
+		mostLines = lineImpactHeap.getImpacts();
+		fileImpactHeap = null;
+		lineImpactHeap = null;
+
+		time = System.nanoTime();
+		start(STAGE_IDENTITIES);
+		Map<String, Set<String>> authorNamesToEmails = Identities.merge(authorPersons);
 		namesToEmails.putAll(authorNamesToEmails);
-		Map<String, Set<String>> committerNamesToEmails = mergeIdentities(committersFilter
-				.getPersons());
+		Map<String, Set<String>> committerNamesToEmails = Identities.merge(committerPersons);
 		namesToEmails.putAll(committerNamesToEmails);
+		timing(STAGE_IDENTITIES, System.nanoTime() - time);
+
+		time = System.nanoTime();
+		start(STAGE_SUMMARIES);
+
+		summarize(namesToEmails.keySet());
+		authors.addAll(sort(authorNamesToEmails.keySet(), MOST_COMMITS));
+		authorLineImpacts.addAll(sort(authorNamesToEmails.keySet(),
+				MOST_LINES));
+		authorFileImpacts.addAll(sort(authorNamesToEmails.keySet(),
+				MOST_FILES));
+		committers.addAll(sort(committerNamesToEmails.keySet(), MOST_COMMITS));
+		if (breakdown != null)
+			summarizeScopes(authorNamesToEmails);
+		timing(STAGE_SUMMARIES, System.nanoTime() - time);
+	}
+
+	/**
+	 * Sort the scopes of the breakdown and find the top authors of each
+	 */
+	private void summarizeScopes(Map<String, Set<String>> authorNamesToEmails) {
+		Map<String, String> emailsToNames = new HashMap<String, String>();
+		for (Entry<String, Set<String>> identity : authorNamesToEmails
+				.entrySet())
+			for (String email : identity.getValue())
+				emailsToNames.put(email, identity.getKey());
+
+		List<Integer> sorted = new ArrayList<Integer>();
+		for (int i = 0; i < breakdown.getSize(); i++)
+			if (breakdown.getCommits(i) > 0)
+				sorted.add(Integer.valueOf(i));
+		Collections.sort(sorted, new Comparator<Integer>() {
+
+			public int compare(Integer s1, Integer s2) {
+				return breakdown.getPath(s1.intValue()).compareTo(
+						breakdown.getPath(s2.intValue()));
+			}
+		});
+		scopes = sorted;
+
+		for (Integer scope : sorted) {
+			final Map<String, LineStats> impacts = new HashMap<String, LineStats>();
+			for (Entry<String, LineStats> impact : breakdown
+					.getAuthorLineImpacts(scope.intValue()).entrySet()) {
+				String name = emailsToNames.get(impact.getKey());
+				if (name != null)
+					HistoryDiffFilter.getStats(impacts, name).include(
+							impact.getValue());
+			}
+			List<String> names = new ArrayList<String>(impacts.keySet());
+			Collections.sort(names, new Comparator<String>() {
+
+				public int compare(String n1, String n2) {
+					int diff = impacts.get(n1).compareTo(impacts.get(n2));
+					if (diff != 0)
+						return diff;
+					return n1.compareToIgnoreCase(n2);
+				}
+			});
+			if (names.size() > SCOPE_AUTHOR_LIMIT)
+				names = new ArrayList<String>(names.subList(0,
+						SCOPE_AUTHOR_LIMIT));
+			scopeAuthors.put(scope, names);
+		}
+	}
+
+	/**
+	 * Merge the results of a diff filter into the totals of this report
+	 * <p>
+	 * Filters must be included in walk order, commits from a parallel chunk are
+	 * passed to the listener here since chunk filters are never given one.
+	 * Retained commits are parsed again in the report's walk so they don't keep
+	 * the commit graph of the diff walk reachable.
+	 */
+	private void merge(RevWalk walk, HistoryDiffFilter diff, boolean notify)
+			throws IOException {
+		ObjectIdSubclassMap<CommitSummary> summaries = diff.getSummaries();
+		for (CommitImpact impact : diff.getFileImpacts())
+			if (fileImpactHeap.add(impact))
+				commitSummaries.addIfAbsent(summaries.get(impact.getCommit()));
+		for (CommitImpact impact : diff.getLineImpacts())
+			if (lineImpactHeap.add(impact))
+				commitSummaries.addIfAbsent(summaries.get(impact.getCommit()));
+		includeImpacts(diff.getAuthorLineImpacts(), emailLineImpacts);
+		includeImpacts(diff.getAuthorFileImpacts(), emailFileImpacts);
+
+		for (RevCommit commit : diff.getMergeConflicts()) {
+			CommitSummary summary = summaries.get(commit);
+			if (notify && listener != null)
+				listener.mergeConflict(summary);
+			if (retainCommits) {
+				mergeConflicts.add(walk.parseCommit(commit));
+				commitSummaries.addIfAbsent(summary);
+			}
+		}
+		for (Entry<RevCommit, Integer> dupe : diff.getDuplicates().entrySet()) {
+			CommitSummary summary = summaries.get(dupe.getKey());
+			if (notify && listener != null)
+				listener.duplicateBlobs(summary, dupe.getValue().intValue());
+			if (retainCommits) {
+				dupes.put(walk.parseCommit(dupe.getKey()), dupe.getValue());
+				commitSummaries.addIfAbsent(summary);
+			}
+		}
+		if (commitSummaries.size() > 2 * (fileImpactHeap.getLimit()
+				+ lineImpactHeap.getLimit() + mergeConflicts.size() + dupes.size()))
+			retainSummaries(null);
+		weeks.include(diff.getWeeks());
+		months.include(diff.getMonths());
+		if (breakdown != null && diff.getBreakdown() != null)
+			breakdown.include(diff.getBreakdown());
+		mergeConflictCount += diff.getMergeConflictCount();
+		dupeCommitCount += diff.getDuplicateCount();
+
+		added += diff.getAdded();
+		modified += diff.getModified();
+		deleted += diff.getDeleted();
+		linesAdded += diff.getLinesAdded();
+		linesEdited += diff.getLinesEdited();
+		linesDeleted += diff.getLinesDeleted();
+	}
+
+	/**
+	 * Get summary of commit resumed from a snapshot
+	 */
+	private CommitSummary captureSummary(RevCommit commit) {
+		CommitSummary summary = commitSummaries.get(commit);
+		if (summary == null) {
+			summary = new CommitSummary(commit);
+			commitSummaries.add(summary);
+		}
+		return summary;
+	}
+
+	/**
+	 * Drop summaries of commits that are no longer referenced by this report
+	 * <p>
+	 * Summaries that are missing are read from the walk when one is given,
+	 * this only happens for commits resumed from a snapshot.
+	 */
+	private void retainSummaries(RevWalk walk) throws IOException {
+		ObjectIdSubclassMap<CommitSummary> captured = new ObjectIdSubclassMap<CommitSummary>();
+		for (CommitSummary summary : commitSummaries)
+			captured.add(summary);
+		commitSummaries.clear();
+		for (CommitImpact impact : fileImpactHeap)
+			retainSummary(walk, impact.getCommit(), captured);
+		for (CommitImpact impact : lineImpactHeap)
+			retainSummary(walk, impact.getCommit(), captured);
+		for (RevCommit commit : mergeConflicts)
+			retainSummary(walk, commit, captured);
+		for (RevCommit commit : dupes.keySet())
+			retainSummary(walk, commit, captured);
+	}
 
-		authors.addAll(authorNamesToEmails.keySet());
-		authorLineImpacts.addAll(authorNamesToEmails.keySet());
-		authorFileImpacts.addAll(authorNamesToEmails.keySet());
-		committers.addAll(committerNamesToEmails.keySet());
+	private void retainSummary(RevWalk walk, AnyObjectId commit,
+			ObjectIdSubclassMap<CommitSummary> captured) throws IOException {
+		if (commitSummaries.contains(commit))
+			return;
+		CommitSummary summary = captured.get(commit);
+		if (summary == null && walk != null)
+			summary = new CommitSummary(walk.parseCommit(commit));
+		if (summary != null)
+			commitSummaries.add(summary);
+	}
+
+	private void includeImpacts(Map<String, LineStats> source,
+			Map<String, LineStats> target) {
+		for (Entry<String, LineStats> impact : source.entrySet())
+			HistoryDiffFilter.getStats(target, impact.getKey()).include(
+					impact.getValue());
+	}
+
+	private TotalHistorySnapshot createSnapshot() {
+		TotalHistorySnapshot snapshot = new TotalHistorySnapshot();
+		snapshot.tip = start;
+		snapshot.fingerprint = getFingerprint();
+		snapshot.end = end;
+		snapshot.commits = commits;
+		snapshot.merges = merges;
+		snapshot.added = added;
+		snapshot.modified = modified;
+		snapshot.deleted = deleted;
+		snapshot.linesAdded = linesAdded;
+		snapshot.linesEdited = linesEdited;
+		snapshot.linesDeleted = linesDeleted;
+		snapshot.weeks.include(weeks);
+		snapshot.months.include(months);
+		snapshot.breakdown = breakdown;
+		snapshot.authors.addAll(authorPersons);
+		snapshot.committers.addAll(committerPersons);
+		snapshot.identities = identities;
+		snapshot.lineImpacts.addAll(mostLines);
+		snapshot.fileImpacts.addAll(mostFiles);
+		snapshot.authorLineImpacts.putAll(emailLineImpacts);
+		snapshot.authorFileImpacts.putAll(emailFileImpacts);
+		snapshot.mergeConflicts.addAll(mergeConflicts);
+		for (Entry<RevCommit, Integer> dupe : dupes.entrySet()) {
+			snapshot.dupeCommits.add(dupe.getKey());
+			snapshot.dupeCounts.add(dupe.getValue());
+		}
+		return snapshot;
 	}
 }
@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.gitective.core.filter.commit.CommitImpact;
+
+import com.github.kevinsawicki.git.reports.TotalHistoryReport.LineStats;
+
+/**
+ * Saved aggregate state of a {@link TotalHistoryReport} that a later run can
+ * resume from
+ * <p>
+ * A snapshot is tagged with the tip commit it covered so that a later run only
+ * needs to walk the commits reachable from its new tip but not from the
+ * snapshot tip. It also records a fingerprint of the diff settings of the run
+ * that created it, since a run with other settings can't resume from it.
+ */
+public class TotalHistorySnapshot {
+
+	private static final int MAGIC = 0x47525448;
+
+	private static final int VERSION = 6;
+
+	ObjectId tip;
+
+	String fingerprint = "";
+
+	ObjectId end;
+
+	long commits;
+
+	long merges;
+
+	long linesAdded;
+
+	long linesEdited;
+
+	long linesDeleted;
+
+	long added;
+
+	long modified;
+
+	long deleted;
+
+	final HistoryBuckets weeks = new HistoryBuckets(HistoryBuckets.WEEK);
+
+	final HistoryBuckets months = new HistoryBuckets(HistoryBuckets.MONTH);
+
+	PathBreakdown breakdown;
+
+	final List<PersonIdent> authors = new ArrayList<PersonIdent>();
+
+	final List<PersonIdent> committers = new ArrayList<PersonIdent>();
+
+	IdentityTable identities = new IdentityTable();
+
+	final List<CommitImpact> lineImpacts = new ArrayList<CommitImpact>();
+
+	final List<CommitImpact> fileImpacts = new ArrayList<CommitImpact>();
+
+	final Map<String, LineStats> authorLineImpacts = new LinkedHashMap<String, LineStats>();
+
+	final Map<String, LineStats> authorFileImpacts = new LinkedHashMap<String, LineStats>();
+
+	final List<ObjectId> mergeConflicts = new ArrayList<ObjectId>();
+
+	final List<ObjectId> dupeCommits = new ArrayList<ObjectId>();
+
+	final List<Integer> dupeCounts = new ArrayList<Integer>();
+
+	/**
+	 * @return tip commit covered by this snapshot
+	 */
+	public ObjectId getTip() {
+		return tip;
+	}
+
+	/**
+	 * @return fingerprint of the diff settings this snapshot was created with
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * @return commits
+	 */
+	public long getCommits() {
+		return commits;
+	}
+
+	/**
+	 * Is this snapshot's tip an ancestor of, or equal to, the given commit?
+	 * <p>
+	 * A snapshot that is not can't be resumed from and requires a full rebuild
+	 *
+	 * @param walk
+	 * @param commit
+	 * @return true if resumable, false otherwise
+	 * @throws IOException
+	 */
+	public boolean isResumable(RevWalk walk, AnyObjectId commit)
+			throws IOException {
+		if (tip == null)
+			return false;
+		if (!walk.getObjectReader().has(tip, Constants.OBJ_COMMIT))
+			return false;
+		return walk.isMergedInto(walk.parseCommit(tip),
+				walk.parseCommit(commit));
+	}
+
+	private static void writeString(DataOutputStream output, String value)
+			throws IOException {
+		output.writeUTF(value != null ? value : "");
+	}
+
+	private static void writeId(DataOutputStream output, AnyObjectId id)
+			throws IOException {
+		id.copyRawTo(output);
+	}
+
+	private static ObjectId readId(DataInputStream input) throws IOException {
+		byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+		input.readFully(raw);
+		return ObjectId.fromRaw(raw);
+	}
+
+	private static void writePersons(DataOutputStream output,
+			Collection<PersonIdent> persons) throws IOException {
+		output.writeInt(persons.size());
+		for (PersonIdent person : persons) {
+			writeString(output, person.getName());
+			writeString(output, person.getEmailAddress());
+		}
+	}
+
+	private static void readPersons(DataInputStream input,
+			List<PersonIdent> persons) throws IOException {
+		int count = input.readInt();
+		for (int i = 0; i < count; i++)
+			persons.add(new PersonIdent(input.readUTF(), input.readUTF()));
+	}
+
+	private static void writeImpacts(DataOutputStream output,
+			Collection<CommitImpact> impacts) throws IOException {
+		output.writeInt(impacts.size());
+		for (CommitImpact impact : impacts) {
+			writeId(output, impact.getCommit());
+			output.writeInt(impact.getAdd());
+			output.writeInt(impact.getEdit());
+			output.writeInt(impact.getDelete());
+		}
+	}
+
+	private static void readImpacts(DataInputStream input,
+			List<CommitImpact> impacts) throws IOException {
+		int count = input.readInt();
+		for (int i = 0; i < count; i++)
+			impacts.add(new CommitImpact(readId(input), input.readInt(), input
+					.readInt(), input.readInt()));
+	}
+
+	private static void writeAuthorImpacts(DataOutputStream output,
+			Map<String, LineStats> impacts) throws IOException {
+		output.writeInt(impacts.size());
+		for (Entry<String, LineStats> impact : impacts.entrySet()) {
+			writeString(output, impact.getKey());
+			LineStats stats = impact.getValue();
+			output.writeInt(stats.getAdd());
+			output.writeInt(stats.getEdit());
+			output.writeInt(stats.getDelete());
+		}
+	}
+
+	private static void readAuthorImpacts(DataInputStream input,
+			Map<String, LineStats> impacts) throws IOException {
+		int count = input.readInt();
+		for (int i = 0; i < count; i++) {
+			String email = input.readUTF();
+			impacts.put(email, new LineStats().include(input.readInt(),
+					input.readInt(), input.readInt()));
+		}
+	}
+
+	/**
+	 * Read snapshot from file
+	 *
+	 * @param file
+	 * @param walk
+	 * @return snapshot or null if the file does not exist or was written by an
+	 *         incompatible version
+	 * @throws IOException
+	 */
+	public static TotalHistorySnapshot read(File file, RevWalk walk)
+			throws IOException {
+		if (!file.exists())
+			return null;
+
+		DataInputStream input = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try {
+			if (input.readInt() != MAGIC)
+				throw new IOException("Invalid report snapshot file: " + file);
+			if (input.readInt() != VERSION)
+				return null;
+
+			TotalHistorySnapshot snapshot = new TotalHistorySnapshot();
+			snapshot.tip = readId(input);
+			snapshot.fingerprint = input.readUTF();
+			snapshot.end = readId(input);
+			snapshot.commits = input.readLong();
+			snapshot.merges = input.readLong();
+			snapshot.linesAdded = input.readLong();
+			snapshot.linesEdited = input.readLong();
+			snapshot.linesDeleted = input.readLong();
+			snapshot.added = input.readLong();
+			snapshot.modified = input.readLong();
+			snapshot.deleted = input.readLong();
+			snapshot.weeks.read(input);
+			snapshot.months.read(input);
+			if (input.readBoolean())
+				snapshot.breakdown = new PathBreakdown(0).read(input);
+			readPersons(input, snapshot.authors);
+			readPersons(input, snapshot.committers);
+			snapshot.identities.read(input);
+			readImpacts(input, snapshot.lineImpacts);
+			readImpacts(input, snapshot.fileImpacts);
+			readAuthorImpacts(input, snapshot.authorLineImpacts);
+			readAuthorImpacts(input, snapshot.authorFileImpacts);
+			int count = input.readInt();
+			for (int i = 0; i < count; i++)
+				snapshot.mergeConflicts.add(readId(input));
+			count = input.readInt();
+			for (int i = 0; i < count; i++) {
+				snapshot.dupeCommits.add(readId(input));
+				snapshot.dupeCounts.add(Integer.valueOf(input.readInt()));
+			}
+			return snapshot;
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Write snapshot to file
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		DataFile.write(file, "report snapshot", new DataFile.Contents() {
+
+			public void write(DataOutputStream output) throws IOException {
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				writeId(output, tip);
+				output.writeUTF(fingerprint);
+				writeId(output, end);
+				output.writeLong(commits);
+				output.writeLong(merges);
+				output.writeLong(linesAdded);
+				output.writeLong(linesEdited);
+				output.writeLong(linesDeleted);
+				output.writeLong(added);
+				output.writeLong(modified);
+				output.writeLong(deleted);
+				weeks.write(output);
+				months.write(output);
+				output.writeBoolean(breakdown != null);
+				if (breakdown != null)
+					breakdown.write(output);
+				writePersons(output, authors);
+				writePersons(output, committers);
+				identities.write(output);
+				writeImpacts(output, lineImpacts);
+				writeImpacts(output, fileImpacts);
+				writeAuthorImpacts(output, authorLineImpacts);
+				writeAuthorImpacts(output, authorFileImpacts);
+				output.writeInt(mergeConflicts.size());
+				for (ObjectId id : mergeConflicts)
+					writeId(output, id);
+				output.writeInt(dupeCommits.size());
+				for (int i = 0; i < dupeCommits.size(); i++) {
+					writeId(output, dupeCommits.get(i));
+					output.writeInt(dupeCounts.get(i).intValue());
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2012 Kevin Sawicki <kevinsawicki@gmail.com>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to
+ * deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or
+ * sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS
+ * IN THE SOFTWARE.
+ */
+package com.github.kevinsawicki.git.reports;
+
+import freemarker.core.Environment;
+import freemarker.template.ObjectWrapper;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Renderer that writes a {@link TotalHistoryReport} while it is running
+ * <p>
+ * Merge conflicts and commits with duplicate blobs are written as they are
+ * found and every section is flushed as soon as it is written, so memory
+ * stays bounded no matter how large the history is. Summary sections are
+ * written by {@link #finish()} once the report has completed.
+ * <p>
+ * Typical usage:
+ *
+ * <pre>
+ * TotalHistoryStream stream = new TotalHistoryStream(report, writer);
+ * report.setListener(stream);
+ * stream.start();
+ * report.run(repository, start);
+ * stream.finish();
+ * </pre>
+ */
+public class TotalHistoryStream implements TotalHistoryListener {
+
+	/**
+	 * Name of template used to render sections
+	 */
+	public static final String TEMPLATE = "total-history-stream";
+
+	private final TotalHistoryReport report;
+
+	private final Writer writer;
+
+	private final Template template;
+
+	/**
+	 * Create stream writing report to writer
+	 *
+	 * @param report
+	 * @param writer
+	 * @throws IOException
+	 */
+	public TotalHistoryStream(TotalHistoryReport report, Writer writer)
+			throws IOException {
+		if (report == null)
+			throw new IllegalArgumentException("Report cannot be null");
+		if (writer == null)
+			throw new IllegalArgumentException("Writer cannot be null");
+		this.report = report;
+		this.writer = writer;
+		template = Templates.getTemplate(TEMPLATE);
+	}
+
+	/**
+	 * Write header, must be called before the report is run
+	 *
+	 * @return this stream
+	 * @throws IOException
+	 */
+	public TotalHistoryStream start() throws IOException {
+		return render("header", null, 0);
+	}
+
+	public void mergeConflict(CommitSummary commit) throws IOException {
+		render("conflict", commit, 0);
+	}
+
+	public void duplicateBlobs(CommitSummary commit, int duplicates)
+			throws IOException {
+		render("dupe", commit, duplicates);
+	}
+
+	/**
+	 * Write summary sections and footer, must be called after the report has
+	 * run
+	 *
+	 * @return this stream
+	 * @throws IOException
+	 */
+	public TotalHistoryStream finish() throws IOException {
+		render("facts", null, 0);
+		render("contributors", null, 0);
+		render("commits", null, 0);
+		render("history", null, 0);
+		render("paths", null, 0);
+		return render("footer", null, 0);
+	}
+
+	private TotalHistoryStream render(String section, CommitSummary commit,
+			int count) throws IOException {
+		try {
+			Environment env = template.createProcessingEnvironment(report,
+					writer);
+			ObjectWrapper wrapper = ObjectWrapper.DEFAULT_WRAPPER;
+			env.setVariable("section", wrapper.wrap(section));
+			env.setVariable("commit", wrapper.wrap(commit));
+			env.setVariable("count", wrapper.wrap(Integer.valueOf(count)));
+			env.process();
+		} catch (TemplateException e) {
+			IOException ioe = new IOException("Exception rendering section "
+					+ section);
+			ioe.initCause(e);
+			throw ioe;
+		}
+		writer.flush();
+		return this;
+	}
+}
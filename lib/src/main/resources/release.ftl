@@ -88,7 +88,7 @@
 				<ol>
 					<#list mostLines as impact>
 					<li><code>${getCommitShortName(impact.commit)}</code> by
-						${parseCommit(impact.commit).authorIdent.name}&nbsp;&nbsp;<span
+						${getCommitSummary(impact.commit).authorName}&nbsp;&nbsp;<span
 						class="label success">+${impact.add}</span> <span
 						class="label warning">${impact.edit}</span> <span
 						class="label important">-${impact.delete}</span></li> </#list>
@@ -99,7 +99,7 @@
 				<ol>
 					<#list mostFiles as impact>
 					<li><code>${getCommitShortName(impact.commit)}</code> by
-						${parseCommit(impact.commit).authorIdent.name}&nbsp;&nbsp;<span
+						${getCommitSummary(impact.commit).authorName}&nbsp;&nbsp;<span
 						class="label success">+${impact.add}</span> <span
 						class="label warning">${impact.edit}</span> <span
 						class="label important">-${impact.delete}</span></li></#list>
@@ -0,0 +1,187 @@
+<#-- Sections shared by the total history and total history stream templates -->
+<#macro head>
+<html>
+<head>
+<meta http-equiv="Content-Type" content="text/html; charset=UTF-8">
+<link rel="stylesheet" href="bootstrap.min.css">
+<link rel="stylesheet" href="core.css">
+<script src="jquery.js"></script>
+<script src="bootstrap-tabs.js"></script>
+</head>
+<title>${projectName} ${projectVersion}</title>
+<body>
+
+	<div class="container">
+</#macro>
+<#macro contributors>
+		<div class="page-header" id="contributors">
+			<h1>
+				Contributors <small>who made the changes</small>
+			</h1>
+		</div>
+		<div class="row">
+			<div class="span8">
+				<h3>
+					Authors <small>${authors?size}</small>
+				</h3>
+				<ol>
+					<#list authors as author>
+					<li>${author}&nbsp;&nbsp;<span class="label success">${getAuthoredCommits(author)}</span></li>
+					</#list>
+				</ol>
+			</div>
+			<div class="span8">
+				<h3>
+					Committers <small>${committers?size}</small>
+				</h3>
+				<ol>
+					<#list committers as committer>
+					<li>${committer}&nbsp;&nbsp;<span class="label success">${getCommittedCommits(committer)}</span></li>
+					</#list>
+				</ol>
+			</div>
+		</div>
+		<div class="row">
+			<div class="span8">
+				<h3>
+					Author Line Impact <small>lines touched</small>
+				</h3>
+				<ol>
+					<#list authorLineImpacts as author>
+					<#local impact = getAuthorLineImpact(author)>
+					<li>${author}&nbsp;&nbsp;<span class="label success">+${impact.add}</span>
+						<span class="label warning">${impact.edit}</span> <span
+						class="label important">-${impact.delete}</span></li>
+				    </#list>
+				</ol>
+			</div>
+			<div class="span8">
+				<h3>
+					Author File Impact <small>files touched</small>
+				</h3>
+				<ol>
+					<#list authorFileImpacts as author>
+					<#local impact = getAuthorFileImpact(author)>
+					<li>${author}&nbsp;&nbsp;<span class="label success">+${impact.add}</span>
+						<span class="label warning">${impact.edit}</span> <span
+						class="label important">-${impact.delete}</span></li>
+				    </#list>
+				</ol>
+			</div>
+		</div>
+</#macro>
+<#macro commits>
+		<div class="page-header" id="commits">
+			<h1>
+				Commits <small>biggest changes made</small>
+			</h1>
+		</div>
+		<div class="row">
+			<div class="span8">
+				<h3>Most Lines Changed</h3>
+				<ol>
+					<#list mostLines as impact>
+					<li><code>${getCommitShortName(impact.commit)}</code> by
+						${getCommitSummary(impact.commit).authorName}&nbsp;&nbsp;<span
+						class="label success">+${impact.add}</span> <span
+						class="label warning">${impact.edit}</span> <span
+						class="label important">-${impact.delete}</span></li> </#list>
+				</ol>
+			</div>
+			<div class="span8">
+				<h3>Most Files Changed</h3>
+				<ol>
+					<#list mostFiles as impact>
+					<li><code>${getCommitShortName(impact.commit)}</code> by
+						${getCommitSummary(impact.commit).authorName}&nbsp;&nbsp;<span
+						class="label success">+${impact.add}</span> <span
+						class="label warning">${impact.edit}</span> <span
+						class="label important">-${impact.delete}</span></li></#list>
+				</ol>
+			</div>
+		</div>
+</#macro>
+<#macro history>
+		<div class="page-header" id="history">
+			<h1>
+				History <small>activity by month</small>
+			</h1>
+		</div>
+		<div class="row">
+			<div class="span16">
+				<table class="zebra-striped">
+					<thead>
+						<tr>
+							<th>Month</th>
+							<th>Commits</th>
+							<th>Authors</th>
+							<th>Lines</th>
+							<th>Files</th>
+						</tr>
+					</thead>
+					<tbody>
+						<#if months.size gt 0>
+						<#list months.size - 1..0 as i>
+						<tr>
+							<td>${months.getDate(i)?string("MMMMM yyyy")}</td>
+							<td>${months.getCommits(i)}</td>
+							<td>${months.getAuthors(i)}</td>
+							<td><span class="label success">+${months.getLinesAdded(i)}</span>
+								<span class="label warning">${months.getLinesEdited(i)}</span>
+								<span class="label important">-${months.getLinesDeleted(i)}</span></td>
+							<td><span class="label success">+${months.getFilesAdded(i)}</span>
+								<span class="label warning">${months.getFilesEdited(i)}</span>
+								<span class="label important">-${months.getFilesDeleted(i)}</span></td>
+						</tr>
+						</#list>
+						</#if>
+					</tbody>
+				</table>
+			</div>
+		</div>
+</#macro>
+<#macro paths>
+		<#if scopes?size gt 0>
+		<div class="page-header" id="paths">
+			<h1>
+				Paths <small>activity by directory</small>
+			</h1>
+		</div>
+		<div class="row">
+			<div class="span16">
+				<table class="zebra-striped">
+					<thead>
+						<tr>
+							<th>Path</th>
+							<th>Commits</th>
+							<th>Lines</th>
+							<th>Files</th>
+							<th>Top Authors</th>
+						</tr>
+					</thead>
+					<tbody>
+						<#list scopes as i>
+						<tr>
+							<td><code>/${breakdown.getPath(i)}</code></td>
+							<td>${breakdown.getCommits(i)}</td>
+							<td><span class="label success">+${breakdown.getLinesAdded(i)}</span>
+								<span class="label warning">${breakdown.getLinesEdited(i)}</span>
+								<span class="label important">-${breakdown.getLinesDeleted(i)}</span></td>
+							<td><span class="label success">+${breakdown.getFilesAdded(i)}</span>
+								<span class="label warning">${breakdown.getFilesEdited(i)}</span>
+								<span class="label important">-${breakdown.getFilesDeleted(i)}</span></td>
+							<td><#list getScopeAuthors(i) as author>${author}<#if author_has_next>, </#if></#list></td>
+						</tr>
+						</#list>
+					</tbody>
+				</table>
+			</div>
+		</div>
+		</#if>
+</#macro>
+<#macro foot>
+	</div>
+</body>
+
+</html>
+</#macro>
@@ -0,0 +1,76 @@
+<#import "total-history-sections.ftl" as sections>
+<#switch section>
+<#case "header">
+<@sections.head/>
+		<div class="page-header">
+			<h1>
+				${projectName} ${projectVersion}
+			</h1>
+		</div>
+		<div class="page-header" id="danger">
+			<h1>
+				Danger Zone <small>as the history is walked</small>
+			</h1>
+		</div>
+		<div class="row">
+			<div class="span16">
+				<ul>
+<#break>
+<#case "conflict">
+					<li><code>${getCommitShortName(commit)}</code> by
+						${commit.authorName}&nbsp;&nbsp;<span
+						class="label warning">merge with content changes</span></li>
+<#break>
+<#case "dupe">
+					<li><code>${getCommitShortName(commit)}</code> by
+						${commit.authorName}&nbsp;&nbsp;<span
+						class="label important">${count} duplicate blobs</span></li>
+<#break>
+<#case "facts">
+				</ul>
+			</div>
+		</div>
+		<div class="row">
+			<div class="span12">
+				<h3>Quick Facts <small>
+					${end.authorIdent.when?string("EEEEE, MMMMM d yyyy")} -
+					${start.authorIdent.when?string("EEEEE, MMMMM d yyyy")}</small></h3>
+				<ul>
+					<li>${commits} commits</li>
+					<li>${merges} merge commits</li>
+					<li>${mergeConflictCount} merges with content changes</li>
+					<li>${dupeCommitCount} commits with duplicate blobs</li>
+					<li>${authors?size} authors</li>
+					<li>${committers?size} committers</li>
+					<li>${linesAdded} lines added</li>
+					<li>${linesEdited} lines changed</li>
+					<li>${linesDeleted} lines removed</li>
+					<li>${added} files added</li>
+					<li>${modified} files edited</li>
+					<li>${deleted} files removed</li>
+					<li>First commit was <code>${getCommitName(end)}</code> by
+						${end.authorIdent.name}
+					</li>
+					<li>Latest commit is <code>${getCommitName(start)}</code> by
+						${start.authorIdent.name}
+					</li>
+				</ul>
+			</div>
+		</div>
+<#break>
+<#case "contributors">
+<@sections.contributors/>
+<#break>
+<#case "commits">
+<@sections.commits/>
+<#break>
+<#case "history">
+<@sections.history/>
+<#break>
+<#case "paths">
+<@sections.paths/>
+<#break>
+<#case "footer">
+<@sections.foot/>
+<#break>
+</#switch>
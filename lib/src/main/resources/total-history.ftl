@@ -1,15 +1,5 @@
-<html>
-<head>
-<meta http-equiv="Content-Type" content="text/html; charset=UTF-8">
-<link rel="stylesheet" href="bootstrap.min.css">
-<link rel="stylesheet" href="core.css">
-<script src="jquery.js"></script>
-<script src="bootstrap-tabs.js"></script>
-</head>
-<title>${projectName} ${projectVersion}</title>
-<body>
-
-	<div class="container">
+<#import "total-history-sections.ftl" as sections>
+<@sections.head/>
 		<div class="page-header">
 			<h1>
 				${projectName} ${projectVersion} <small>
@@ -41,90 +31,10 @@
 				</ul>
 			</div>
 		</div>
-		<div class="page-header" id="contributors">
-			<h1>
-				Contributors <small>who made the changes</small>
-			</h1>
-		</div>
-		<div class="row">
-			<div class="span8">
-				<h3>
-					Authors <small>${authors?size}</small>
-				</h3>
-				<ol>
-					<#list authors as author>
-					<li>${author}&nbsp;&nbsp;<span class="label success">${getAuthoredCommits(author)}</span></li>
-					</#list>
-				</ol>
-			</div>
-			<div class="span8">
-				<h3>
-					Committers <small>${committers?size}</small>
-				</h3>
-				<ol>
-					<#list committers as committer>
-					<li>${committer}&nbsp;&nbsp;<span class="label success">${getCommittedCommits(committer)}</span></li>
-					</#list>
-				</ol>
-			</div>
-		</div>
-		<div class="row">
-			<div class="span8">
-				<h3>
-					Author Line Impact <small>lines touched</small>
-				</h3>
-				<ol>
-					<#list authorLineImpacts as author>
-					<#assign impact = getAuthorLineImpact(author)>
-					<li>${author}&nbsp;&nbsp;<span class="label success">+${impact.add}</span>
-						<span class="label warning">${impact.edit}</span> <span
-						class="label important">-${impact.delete}</span></li>
-				    </#list>
-				</ol>
-			</div>
-			<div class="span8">
-				<h3>
-					Author File Impact <small>files touched</small>
-				</h3>
-				<ol>
-					<#list authorFileImpacts as author>
-					<#assign impact = getAuthorFileImpact(author)>
-					<li>${author}&nbsp;&nbsp;<span class="label success">+${impact.add}</span>
-						<span class="label warning">${impact.edit}</span> <span
-						class="label important">-${impact.delete}</span></li>
-				    </#list>
-				</ol>
-			</div>
-		</div>
-		<div class="page-header" id="commits">
-			<h1>
-				Commits <small>biggest changes made</small>
-			</h1>
-		</div>
-		<div class="row">
-			<div class="span8">
-				<h3>Most Lines Changed</h3>
-				<ol>
-					<#list mostLines as impact>
-					<li><code>${getCommitShortName(impact.commit)}</code> by
-						${parseCommit(impact.commit).authorIdent.name}&nbsp;&nbsp;<span
-						class="label success">+${impact.add}</span> <span
-						class="label warning">${impact.edit}</span> <span
-						class="label important">-${impact.delete}</span></li> </#list>
-				</ol>
-			</div>
-			<div class="span8">
-				<h3>Most Files Changed</h3>
-				<ol>
-					<#list mostFiles as impact>
-					<li><code>${getCommitShortName(impact.commit)}</code> by
-						${parseCommit(impact.commit).authorIdent.name}&nbsp;&nbsp;<span
-						class="label success">+${impact.add}</span> <span
-						class="label warning">${impact.edit}</span> <span
-						class="label important">-${impact.delete}</span></li></#list>
-				</ol>
-			</div>
-		</div>
+<@sections.contributors/>
+<@sections.commits/>
+<@sections.history/>
+<@sections.paths/>
 		<div class="page-header" id="commits">
 			<h1>
 				Danger Zone
@@ -138,7 +48,7 @@
 				<ul>
 					<#list mergeConflicts as impact>
 					<li><code>${getCommitShortName(impact)}</code> by
-						${parseCommit(impact).authorIdent.name}</li> </#list>
+						${getCommitSummary(impact).authorName}</li> </#list>
 				</ul>
 			</div>
 			<div class="span8">
@@ -148,12 +58,9 @@
 				<ul>
 					<#list dupeCommits as impact>
 					<li><code>${getCommitShortName(impact)}</code> by
-						${parseCommit(impact).authorIdent.name} (${getDupeCount(impact)})</li>
+						${getCommitSummary(impact).authorName} (${getDupeCount(impact)})</li>
 					</#list>
 				</ul>
 			</div>
 		</div>
-	</div>
-</body>
-
-</html>
\ No newline at end of file
+<@sections.foot/>